@@ -0,0 +1,139 @@
+package com.valagja.search.ternarytree.prefix.benchmarks;
+
+import com.valagja.search.ternarytree.prefix.Collector;
+import com.valagja.search.ternarytree.prefix.ConcurrentTernarySearchTree;
+import com.valagja.search.ternarytree.prefix.TernarySearchTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Measures the throughput of {@link ConcurrentTernarySearchTree} against a {@link TernarySearchTree}
+ * guarded by one {@link ReentrantReadWriteLock}.
+ *
+ * {@link #find(Cursor)} only reads, the group {@code mixed} runs three readers per writer.
+ * Scale the threads with the JMH options, e.g. {@code -t 1} up to {@code -t 64} for find
+ * and {@code -tg 3,1} up to {@code -tg 48,16} for mixed.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ConcurrentBenchmark extends TreeState {
+
+    /**
+     * The thread-safe tree that is measured.
+     */
+    public enum Implementation {
+        CONCURRENT,
+        READ_WRITE_LOCK
+    }
+
+    private static final int PREFIX_COUNT = 1024;
+    private static final int PREFIX_LENGTH = 3;
+    private static final int LIMIT = 10;
+
+    @Param({"CONCURRENT", "READ_WRITE_LOCK"})
+    public Implementation implementation;
+
+    private String[] prefixes;
+    private ConcurrentTernarySearchTree<String, Collector<String>> concurrentTree;
+    private TernarySearchTree<String, Collector<String>> tree;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * The position of each thread in the prefixes and words.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int index;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            // threads should not run in lockstep over the same words
+            index = ThreadLocalRandom.current().nextInt(PREFIX_COUNT);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        createWords();
+        if (implementation == Implementation.CONCURRENT) {
+            concurrentTree = new ConcurrentTernarySearchTree<>();
+            for (String word : words) {
+                concurrentTree.put(word, newEntry(word));
+            }
+        }
+        else {
+            tree = buildTree();
+        }
+        prefixes = Dictionary.prefixes(words, PREFIX_LENGTH, PREFIX_COUNT, SEED + 2);
+    }
+
+    @Benchmark
+    public List<Collector<String>> find(Cursor cursor) {
+        cursor.index = (cursor.index + 1) & (PREFIX_COUNT - 1);
+        return findWithLimit(prefixes[cursor.index]);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public List<Collector<String>> mixedFind(Cursor cursor) {
+        cursor.index = (cursor.index + 1) & (PREFIX_COUNT - 1);
+        return findWithLimit(prefixes[cursor.index]);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public boolean mixedRemoveAndPut(Cursor cursor) {
+        String word = words[cursor.index];
+        cursor.index = (cursor.index + 1 == words.length) ? 0 : cursor.index + 1;
+        if (implementation == Implementation.CONCURRENT) {
+            boolean isRemoved = concurrentTree.remove(word, newEntry(word));
+            concurrentTree.put(word, newEntry(word));
+            return isRemoved;
+        }
+        lock.writeLock().lock();
+        try {
+            boolean isRemoved = tree.remove(word, newEntry(word));
+            tree.put(word, newEntry(word));
+            return isRemoved;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private List<Collector<String>> findWithLimit(String prefix) {
+        if (implementation == Implementation.CONCURRENT) {
+            return concurrentTree.find(prefix, LIMIT);
+        }
+        lock.readLock().lock();
+        try {
+            return tree.find(prefix, LIMIT);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+}
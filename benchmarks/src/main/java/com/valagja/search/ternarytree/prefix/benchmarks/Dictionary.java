@@ -0,0 +1,113 @@
+package com.valagja.search.ternarytree.prefix.benchmarks;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+
+/**
+ * Generates reproducible word lists for the benchmarks.
+ *
+ * All words consist of lower case ascii letters, the same seed always produces the same words.
+ */
+public final class Dictionary {
+
+    /**
+     * The order and the frequency of the generated words.
+     */
+    public enum Distribution {
+        /** distinct words in random order */
+        RANDOM,
+        /** distinct words in lexicographic order, the worst case for the lower and higher kids */
+        SORTED,
+        /** words drawn from a vocabulary with a zipf distribution, so a few words repeat very often */
+        ZIPF
+    }
+
+    private static final int MIN_LENGTH = 4;
+    private static final int MAX_LENGTH = 16;
+    private static final double ZIPF_EXPONENT = 1.0;
+
+    private Dictionary() {
+    }
+
+    /**
+     * Generates words.
+     *
+     * @param distribution the order and frequency of the words
+     * @param size the number of words
+     * @param seed the seed of the random generator
+     * @return the generated words
+     */
+    public static String[] generate(Distribution distribution, int size, long seed) {
+        Random random = new Random(seed);
+        String[] vocabulary = randomWords(random, size);
+        switch (distribution) {
+            case RANDOM:
+                return vocabulary;
+            case SORTED:
+                Arrays.sort(vocabulary);
+                return vocabulary;
+            case ZIPF:
+                return zipf(random, vocabulary, size);
+            default:
+                throw new IllegalArgumentException("unknown distribution " + distribution);
+        }
+    }
+
+    /**
+     * Cuts each word to the specified length, words that are shorter are taken as they are.
+     *
+     * @param words the words
+     * @param length the maximal length of a prefix
+     * @param count the number of prefixes
+     * @param seed the seed of the random generator
+     * @return prefixes of randomly picked words
+     */
+    public static String[] prefixes(String[] words, int length, int count, long seed) {
+        Random random = new Random(seed);
+        String[] prefixes = new String[count];
+        for (int i = 0; i < count; i++) {
+            String word = words[random.nextInt(words.length)];
+            prefixes[i] = word.length() > length ? word.substring(0, length) : word;
+        }
+        return prefixes;
+    }
+
+    private static String[] randomWords(Random random, int size) {
+        // short words repeat, 26^4 words have the minimal length, so repeated ones are drawn again
+        HashSet<String> drawn = new HashSet<>(size * 2);
+        String[] words = new String[size];
+        char[] buffer = new char[MAX_LENGTH];
+        int i = 0;
+        while (i < size) {
+            int length = MIN_LENGTH + random.nextInt(MAX_LENGTH - MIN_LENGTH + 1);
+            for (int j = 0; j < length; j++) {
+                buffer[j] = (char) ('a' + random.nextInt(26));
+            }
+            String word = new String(buffer, 0, length);
+            if (drawn.add(word)) {
+                words[i++] = word;
+            }
+        }
+        return words;
+    }
+
+    private static String[] zipf(Random random, String[] vocabulary, int size) {
+        // cumulative distribution of the ranks
+        double[] cumulative = new double[vocabulary.length];
+        double sum = 0;
+        for (int rank = 0; rank < vocabulary.length; rank++) {
+            sum += 1.0 / Math.pow(rank + 1, ZIPF_EXPONENT);
+            cumulative[rank] = sum;
+        }
+        String[] words = new String[size];
+        for (int i = 0; i < size; i++) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            words[i] = vocabulary[Math.min(index, vocabulary.length - 1)];
+        }
+        return words;
+    }
+}
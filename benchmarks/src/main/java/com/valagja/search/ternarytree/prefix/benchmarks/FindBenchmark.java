@@ -0,0 +1,84 @@
+package com.valagja.search.ternarytree.prefix.benchmarks;
+
+import com.valagja.search.ternarytree.prefix.Collector;
+import com.valagja.search.ternarytree.prefix.TernarySearchTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Measures {@link TernarySearchTree#find(String)} with prefixes of stored words.
+ *
+ * Short prefixes match large subtrees, long prefixes mostly one word.
+ * {@link #findWithLimit()} and {@link #streamWithLimit()} ask only for the first ten matches like an autocomplete box does.
+ * {@link #findParallel()} collects the same matches as {@link #find()} with the common fork-join pool.
+ * {@link #findWithAction(Blackhole)} visits the same matches without a list, its allocation rate shows with -prof gc.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class FindBenchmark extends TreeState {
+
+    private static final int PREFIX_COUNT = 1024;
+    private static final int LIMIT = 10;
+
+    @Param({"1", "3", "6"})
+    public int prefixLength;
+
+    private String[] prefixes;
+    private TernarySearchTree<String, Collector<String>> tree;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        createWords();
+        tree = buildTree();
+        prefixes = Dictionary.prefixes(words, prefixLength, PREFIX_COUNT, SEED + 2);
+        // the words are not needed anymore, only the tree
+        words = null;
+    }
+
+    @Benchmark
+    public List<Collector<String>> find() {
+        index = (index + 1) & (PREFIX_COUNT - 1);
+        return tree.find(prefixes[index]);
+    }
+
+    @Benchmark
+    public List<Collector<String>> findParallel() {
+        index = (index + 1) & (PREFIX_COUNT - 1);
+        return tree.findParallel(prefixes[index]);
+    }
+
+    @Benchmark
+    public int findWithAction(Blackhole blackhole) {
+        index = (index + 1) & (PREFIX_COUNT - 1);
+        return tree.find(prefixes[index], blackhole::consume);
+    }
+
+    @Benchmark
+    public List<Collector<String>> findWithLimit() {
+        index = (index + 1) & (PREFIX_COUNT - 1);
+        return tree.find(prefixes[index], LIMIT);
+    }
+
+    @Benchmark
+    public List<Collector<String>> streamWithLimit() {
+        index = (index + 1) & (PREFIX_COUNT - 1);
+        return tree.stream(prefixes[index]).limit(LIMIT).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,114 @@
+package com.valagja.search.ternarytree.prefix.benchmarks;
+
+import com.valagja.search.ternarytree.prefix.Collector;
+import com.valagja.search.ternarytree.prefix.TernarySearchTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link TernarySearchTree#put(String, Collector)}.
+ *
+ * {@link #put()} adds words of another dictionary of the same distribution into a tree holding the whole dictionary,
+ * once all of them are added the following calls add values to existing words.
+ * {@link #putAll()} adds all words of the other dictionary as one batch.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class PutBenchmark extends TreeState {
+
+    private String[] newWords;
+    private TernarySearchTree<String, Collector<String>> tree;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        createWords();
+        newWords = Dictionary.generate(distribution, size, SEED + 1);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpIteration() {
+        tree = buildTree();
+        index = 0;
+    }
+
+    @Benchmark
+    public TernarySearchTree<String, Collector<String>> put() {
+        String word = newWords[index];
+        index = (index + 1 == newWords.length) ? 0 : index + 1;
+        tree.put(word, newEntry(word));
+        return tree;
+    }
+
+    /**
+     * Builds the whole tree from scratch.
+     *
+     * @return the new tree
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public TernarySearchTree<String, Collector<String>> build() {
+        return buildTree();
+    }
+
+    /**
+     * Builds the whole tree from scratch with {@link TernarySearchTree#bulkLoad(Iterable)}.
+     *
+     * @return the new tree
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public TernarySearchTree<String, Collector<String>> bulkLoad() {
+        List<Map.Entry<String, Collector<String>>> pairs = new ArrayList<>(words.length);
+        for (String word : words) {
+            pairs.add(new AbstractMap.SimpleImmutableEntry<>(word, newEntry(word)));
+        }
+        TernarySearchTree<String, Collector<String>> tree = newTree();
+        tree.bulkLoad(pairs);
+        return tree;
+    }
+
+    /**
+     * Adds all words of the other dictionary to a tree holding the whole dictionary with
+     * {@link TernarySearchTree#putAll(Iterable)}.
+     * The time includes building the tree, subtract the one of {@link #build()}.
+     *
+     * @return the tree
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public TernarySearchTree<String, Collector<String>> putAll() {
+        List<Map.Entry<String, Collector<String>>> pairs = new ArrayList<>(newWords.length);
+        for (String word : newWords) {
+            pairs.add(new AbstractMap.SimpleImmutableEntry<>(word, newEntry(word)));
+        }
+        TernarySearchTree<String, Collector<String>> tree = buildTree();
+        tree.putAll(pairs);
+        return tree;
+    }
+}
@@ -0,0 +1,65 @@
+package com.valagja.search.ternarytree.prefix.benchmarks;
+
+import com.valagja.search.ternarytree.prefix.Collector;
+import com.valagja.search.ternarytree.prefix.TernarySearchTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures removing every word of the dictionary until the tree is empty.
+ *
+ * {@link #removeAll()} removes the words one by one, {@link #removeAllBatch()} with one
+ * {@link TernarySearchTree#removeAll(Iterable)} that reuses the paths of sorted words.
+ * The tree is built before each invocation, building is not measured.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class RemoveAllBenchmark extends TreeState {
+
+    private TernarySearchTree<String, Collector<String>> tree;
+    private List<Map.Entry<String, Collector<String>>> pairs;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() {
+        createWords();
+        pairs = new ArrayList<>(words.length);
+        for (String word : words) {
+            pairs.add(new AbstractMap.SimpleImmutableEntry<>(word, newEntry(word)));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setUpInvocation() {
+        tree = buildTree();
+    }
+
+    @Benchmark
+    public TernarySearchTree<String, Collector<String>> removeAll() {
+        for (String word : words) {
+            tree.remove(word, newEntry(word));
+        }
+        return tree;
+    }
+
+    @Benchmark
+    public TernarySearchTree<String, Collector<String>> removeAllBatch() {
+        tree.removeAll(pairs);
+        return tree;
+    }
+}
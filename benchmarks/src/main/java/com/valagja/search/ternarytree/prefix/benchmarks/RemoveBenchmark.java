@@ -0,0 +1,46 @@
+package com.valagja.search.ternarytree.prefix.benchmarks;
+
+import com.valagja.search.ternarytree.prefix.Collector;
+import com.valagja.search.ternarytree.prefix.TernarySearchTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link TernarySearchTree#remove(String, Collector)} on a tree of constant size.
+ *
+ * Each removed word is put back right away, so the tree does not shrink during an iteration.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class RemoveBenchmark extends TreeState {
+
+    private TernarySearchTree<String, Collector<String>> tree;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        createWords();
+        tree = buildTree();
+    }
+
+    @Benchmark
+    public boolean removeAndPut() {
+        String word = words[index];
+        index = (index + 1 == words.length) ? 0 : index + 1;
+        boolean isRemoved = tree.remove(word, newEntry(word));
+        tree.put(word, newEntry(word));
+        return isRemoved;
+    }
+}
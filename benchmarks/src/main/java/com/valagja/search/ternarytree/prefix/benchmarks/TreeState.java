@@ -0,0 +1,70 @@
+package com.valagja.search.ternarytree.prefix.benchmarks;
+
+import com.valagja.search.ternarytree.prefix.Collector;
+import com.valagja.search.ternarytree.prefix.ItemCollector;
+import com.valagja.search.ternarytree.prefix.SingleStringCollector;
+import com.valagja.search.ternarytree.prefix.TernarySearchTree;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Parameters shared by all benchmarks: the dictionary and the collector implementation.
+ */
+@State(Scope.Benchmark)
+public class TreeState {
+
+    /**
+     * The collector implementation that is stored in the tree.
+     */
+    public enum CollectorType {
+        SINGLE,
+        ITEM
+    }
+
+    static final long SEED = 42L;
+
+    @Param({"RANDOM", "SORTED", "ZIPF"})
+    public Dictionary.Distribution distribution;
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"SINGLE", "ITEM"})
+    public CollectorType collectorType;
+
+    String[] words;
+
+    void createWords() {
+        words = Dictionary.generate(distribution, size, SEED);
+    }
+
+    /**
+     * Creates a collector holding the word itself as value.
+     *
+     * @param word the word
+     * @return a new collector
+     */
+    Collector<String> newEntry(String word) {
+        switch (collectorType) {
+            case SINGLE:
+                return new SingleStringCollector(word);
+            case ITEM:
+                return new ItemCollector<>(word);
+            default:
+                throw new IllegalArgumentException("unknown collector type " + collectorType);
+        }
+    }
+
+    TernarySearchTree<String, Collector<String>> newTree() {
+        return new TernarySearchTree<>();
+    }
+
+    TernarySearchTree<String, Collector<String>> buildTree() {
+        TernarySearchTree<String, Collector<String>> tree = newTree();
+        for (String word : words) {
+            tree.put(word, newEntry(word));
+        }
+        return tree;
+    }
+}
@@ -0,0 +1,93 @@
+package com.valagja.search.ternarytree.prefix;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Statistics of an operation that changed a tree with many words at once.
+ */
+public class BatchStatistics {
+
+    private final int wordCount;
+    private final long elapsedNanos;
+    private final int changedWordCount;
+    private final long reusedNodeCount;
+
+    /**
+     * Constructs new statistics, each processed word counts as changed.
+     *
+     * @param wordCount the number of processed words
+     * @param elapsedNanos the duration of the operation in nanoseconds
+     */
+    public BatchStatistics(int wordCount, long elapsedNanos) {
+        this(wordCount, elapsedNanos, wordCount, 0);
+    }
+
+    /**
+     * Constructs new statistics of a batch of put or remove operations.
+     *
+     * @param wordCount the number of processed words
+     * @param elapsedNanos the duration of the operation in nanoseconds
+     * @param changedWordCount the number of words added to or removed from the tree
+     * @param reusedNodeCount the number of nodes taken from the path of the previous word instead of searched from the root
+     */
+    public BatchStatistics(int wordCount, long elapsedNanos, int changedWordCount, long reusedNodeCount) {
+        this.wordCount = wordCount;
+        this.elapsedNanos = elapsedNanos;
+        this.changedWordCount = changedWordCount;
+        this.reusedNodeCount = reusedNodeCount;
+    }
+
+    /**
+     * Gets the number of processed words, empty or null words are not counted.
+     *
+     * @return the number of words
+     */
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    /**
+     * Gets the number of words the tree holds more or less after the operation,
+     * a word already in the tree only gets more values and a word that keeps values is not removed.
+     *
+     * @return the number of added or removed words
+     */
+    public int getChangedWordCount() {
+        return changedWordCount;
+    }
+
+    /**
+     * Gets the number of nodes that were not searched from the root because the previous word of the sorted batch
+     * shares the prefix, 0 if the operation does not reuse paths.
+     *
+     * @return the number of reused nodes
+     */
+    public long getReusedNodeCount() {
+        return reusedNodeCount;
+    }
+
+    /**
+     * Gets the duration of the operation.
+     *
+     * @return the duration in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Gets the duration of the operation.
+     *
+     * @param unit the unit of the duration
+     * @return the duration in the specified unit
+     */
+    public long getElapsed(TimeUnit unit) {
+        return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return "BatchStatistics{wordCount=" + wordCount + ", changedWordCount=" + changedWordCount
+                + ", reusedNodeCount=" + reusedNodeCount + ", elapsedMillis=" + getElapsed(TimeUnit.MILLISECONDS) + "}";
+    }
+}
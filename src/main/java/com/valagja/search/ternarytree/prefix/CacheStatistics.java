@@ -0,0 +1,105 @@
+package com.valagja.search.ternarytree.prefix;
+
+/**
+ * Statistics of the result cache of a {@link CachingTernarySearchTree}.
+ */
+public class CacheStatistics {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long invalidationCount;
+    private final int cachedPrefixCount;
+    private final int cachedEntryCount;
+
+    /**
+     * Constructs new statistics.
+     *
+     * @param hitCount the number of finds answered from the cache
+     * @param missCount the number of finds that traversed the tree
+     * @param evictionCount the number of results removed to make room for others
+     * @param invalidationCount the number of results removed because a word below their prefix changed
+     * @param cachedPrefixCount the number of cached prefixes
+     * @param cachedEntryCount the number of collectors in all cached results
+     */
+    public CacheStatistics(long hitCount, long missCount, long evictionCount, long invalidationCount,
+            int cachedPrefixCount, int cachedEntryCount) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.invalidationCount = invalidationCount;
+        this.cachedPrefixCount = cachedPrefixCount;
+        this.cachedEntryCount = cachedEntryCount;
+    }
+
+    /**
+     * Gets the number of finds answered from the cache.
+     *
+     * @return the number of hits
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Gets the number of finds that traversed the tree.
+     *
+     * @return the number of misses
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Gets the share of finds answered from the cache.
+     *
+     * @return the hit rate between 0 and 1, 0 if there was no find yet
+     */
+    public double getHitRate() {
+        long requestCount = hitCount + missCount;
+        return (requestCount == 0) ? 0 : (double) hitCount / requestCount;
+    }
+
+    /**
+     * Gets the number of results removed to make room for others.
+     *
+     * @return the number of evictions
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Gets the number of results removed because a word starting with their prefix was put or removed.
+     *
+     * @return the number of invalidations
+     */
+    public long getInvalidationCount() {
+        return invalidationCount;
+    }
+
+    /**
+     * Gets the number of cached prefixes.
+     *
+     * @return the number of cached results
+     */
+    public int getCachedPrefixCount() {
+        return cachedPrefixCount;
+    }
+
+    /**
+     * Gets the number of collectors in all cached results, which the capacity of the cache limits.
+     *
+     * @return the number of cached collectors
+     */
+    public int getCachedEntryCount() {
+        return cachedEntryCount;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStatistics{hitCount=" + hitCount + ", missCount=" + missCount + ", evictionCount=" + evictionCount
+                + ", invalidationCount=" + invalidationCount + ", cachedPrefixCount=" + cachedPrefixCount
+                + ", cachedEntryCount=" + cachedEntryCount + "}";
+    }
+}
@@ -0,0 +1,213 @@
+package com.valagja.search.ternarytree.prefix;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link TernarySearchTree} that caches the results of find by prefix.
+ *
+ * The cache holds the least recently used results up to a capacity counted in collectors,
+ * so a few results of broad prefixes can not take more memory than many small ones.
+ * An empty result counts as one collector, so cached misses are evicted like any other result.
+ * A result larger than the capacity is not cached at all.
+ *
+ * Put and remove invalidate only the cached prefixes of the changed word, they are the only results that can change.
+ * A cached result holds the very collectors of the tree, so values added to or removed from an existing collector
+ * by put and remove are seen without invalidation, just as in the result of {@link TernarySearchTree#find(String)}.
+ * Each find returns a new list, changing it does not change the cache.
+ *
+ * This class is not thread-safe, like {@link TernarySearchTree}.
+ *
+ * @param <V> the value type a collector holds
+ * @param <Entry> an implementation of a collector
+ */
+public class CachingTernarySearchTree<V, Entry extends Collector<V>> {
+
+    private final TernarySearchTree<V, Entry> tree;
+    private final int capacity;
+
+    // access order, the least recently used result first
+    private final LinkedHashMap<String, CachedResult<Entry>> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private int cachedEntryCount;
+    // the weights of all cached results, bounded by the capacity
+    private int cachedWeight;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    private long invalidationCount;
+
+    /**
+     * Constructs a cache for a new empty tree.
+     *
+     * @param capacity the maximal number of collectors in all cached results
+     * @throws IllegalArgumentException if capacity is negative
+     */
+    public CachingTernarySearchTree(int capacity) {
+        this(new TernarySearchTree<V, Entry>(), capacity);
+    }
+
+    /**
+     * Constructs a cache for an existing tree.
+     *
+     * The tree must be changed only through this cache afterwards, otherwise cached results get stale.
+     *
+     * @param tree the tree
+     * @param capacity the maximal number of collectors in all cached results
+     * @throws IllegalArgumentException if capacity is negative
+     */
+    public CachingTernarySearchTree(TernarySearchTree<V, Entry> tree, int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must not be negative");
+        }
+        this.tree = tree;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Adds a word to the tree associated with a {@link Collector}.
+     *
+     * @param word the key
+     * @param entry a collector with values
+     * @see TernarySearchTree#put(String, Collector)
+     */
+    public void put(String word, Entry entry) {
+        tree.put(word, entry);
+        invalidate(word);
+    }
+
+    /**
+     * Removes a word from the tree.
+     *
+     * @param word to be removed
+     * @param entry the associated collector with values to be removed
+     * @return true if the node in the tree was removed
+     * @see TernarySearchTree#remove(String, Collector)
+     */
+    public boolean remove(String word, Entry entry) {
+        boolean isRemoved = tree.remove(word, entry);
+        if (isRemoved) {
+            // otherwise the collector is still there, only its values changed
+            invalidate(word);
+        }
+        return isRemoved;
+    }
+
+    /**
+     * Searches for collectors associated with words that starts with the specified prefix.
+     *
+     * @param prefix the search prefix
+     * @return a list of collectors, that contain values
+     */
+    public List<Entry> find(String prefix) {
+        return find(prefix, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Searches for at most limit collectors associated with words that starts with the specified prefix.
+     *
+     * A cached result of the same prefix answers any limit up to the one it was found with.
+     *
+     * @param prefix the search prefix
+     * @param limit the maximal number of collectors
+     * @return a list of collectors, that contain values
+     * @throws IllegalArgumentException if limit is negative
+     */
+    public List<Entry> find(String prefix, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative");
+        }
+        // empty or null not allowed
+        if (prefix == null || prefix.isEmpty() || limit == 0) {
+            return new ArrayList<>(0);
+        }
+        CachedResult<Entry> cached = cache.get(prefix);
+        if (cached != null && (cached.limit >= limit || cached.entries.size() < cached.limit)) {
+            // the cached result holds all the requested collectors
+            hitCount++;
+            return new ArrayList<>(cached.entries.subList(0, Math.min(limit, cached.entries.size())));
+        }
+        missCount++;
+        List<Entry> result = tree.find(prefix, limit);
+        store(prefix, new CachedResult<>(new ArrayList<>(result), limit));
+        return result;
+    }
+
+    /**
+     * Removes all cached results, the counters are kept.
+     */
+    public void clearCache() {
+        cache.clear();
+        cachedEntryCount = 0;
+        cachedWeight = 0;
+    }
+
+    /**
+     * Gets the counters of the cache.
+     *
+     * @return the statistics of the cache
+     */
+    public CacheStatistics getCacheStatistics() {
+        return new CacheStatistics(hitCount, missCount, evictionCount, invalidationCount, cache.size(), cachedEntryCount);
+    }
+
+    private void store(String prefix, CachedResult<Entry> result) {
+        uncache(cache.remove(prefix));
+        if (result.getWeight() > capacity) {
+            return;
+        }
+        // the least recently used results make room
+        Iterator<Map.Entry<String, CachedResult<Entry>>> iterator = cache.entrySet().iterator();
+        while (cachedWeight + result.getWeight() > capacity && iterator.hasNext()) {
+            uncache(iterator.next().getValue());
+            iterator.remove();
+            evictionCount++;
+        }
+        cache.put(prefix, result);
+        cachedEntryCount += result.entries.size();
+        cachedWeight += result.getWeight();
+    }
+
+    private void uncache(CachedResult<Entry> result) {
+        if (result != null) {
+            cachedEntryCount -= result.entries.size();
+            cachedWeight -= result.getWeight();
+        }
+    }
+
+    private void invalidate(String word) {
+        // empty or null not allowed
+        if (word == null || word.isEmpty() || cache.isEmpty()) {
+            return;
+        }
+        // only the prefixes of the word can have the word in their result
+        for (int length = 1; length <= word.length(); length++) {
+            CachedResult<Entry> cached = cache.remove(word.substring(0, length));
+            if (cached != null) {
+                uncache(cached);
+                invalidationCount++;
+            }
+        }
+    }
+
+    /**
+     * The result of a find with the limit it was found with.
+     */
+    private static class CachedResult<Entry> {
+        private final List<Entry> entries;
+        private final int limit;
+
+        private CachedResult(List<Entry> entries, int limit) {
+            this.entries = entries;
+            this.limit = limit;
+        }
+
+        private int getWeight() {
+            // an empty result still takes a slot of the cache
+            return Math.max(1, entries.size());
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.valagja.search.ternarytree.prefix;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Writes and reads collectors for a snapshot of a tree, see {@link TernarySearchTree#save(java.nio.file.Path, CollectorSerializer)}.
+ *
+ * @param <Entry> an implementation of a collector
+ */
+public interface CollectorSerializer<Entry> {
+
+    /**
+     * Writes a collector.
+     *
+     * @param entry the collector, never null
+     * @param out the output
+     * @throws IOException if writing fails
+     */
+    void write(Entry entry, DataOutput out) throws IOException;
+
+    /**
+     * Reads a collector written by {@link #write(Object, DataOutput)}.
+     *
+     * @param in the input
+     * @return a new collector
+     * @throws IOException if reading fails
+     */
+    Entry read(DataInput in) throws IOException;
+}
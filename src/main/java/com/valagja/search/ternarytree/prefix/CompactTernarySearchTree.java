@@ -0,0 +1,453 @@
+package com.valagja.search.ternarytree.prefix;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Implementation of a ternary search tree for prefix search that stores its nodes in arrays.
+ *
+ * Behaves like {@link TernarySearchTree}: put, find and remove give the same results in the same order.
+ *
+ * A node is not an object but an index into parallel arrays holding the key, the three kids and the entry.
+ * This saves the object header, the parent reference and the aggregates of {@link TernaryNode}:
+ * a char, three ints and a reference take at least 18 bytes per character of a stored word
+ * instead of about 48 bytes for a node object with compressed references,
+ * and the nodes stay close to each other in memory.
+ * The nodes do not know their parents, remove remembers the path instead.
+ *
+ * Slots of removed nodes are kept in a free list and reused by put.
+ *
+ * @param <V> the value type a collector holds
+ * @param <Entry> an implementation of a collector
+ */
+public class CompactTernarySearchTree<V, Entry extends Collector<V>> {
+
+    // index 0 is never used, so a kid 0 means no kid and new arrays need no initialization
+    private static final int NIL = 0;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    // which kid of the parent a node is
+    private static final int LOWER = 0;
+    private static final int EQUAL = 1;
+    private static final int HIGHER = 2;
+
+    private char[] keys;
+    private int[] lowerKids;
+    private int[] equalKids;
+    private int[] higherKids;
+    private Object[] entries;
+
+    private int root = NIL;
+
+    // the next slot that was never used
+    private int nextSlot = 1;
+    // head of the free slots, chained by the equal kids
+    private int freeSlot = NIL;
+    private int nodeCount;
+
+    /**
+     * Constructs an empty tree.
+     */
+    public CompactTernarySearchTree() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty tree with room for the specified number of nodes.
+     *
+     * A word needs at most one node per character, words with common prefixes share nodes.
+     *
+     * @param initialCapacity the number of nodes the tree can hold before growing
+     */
+    public CompactTernarySearchTree(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("initial capacity must not be negative");
+        }
+        int capacity = initialCapacity + 1;
+        keys = new char[capacity];
+        lowerKids = new int[capacity];
+        equalKids = new int[capacity];
+        higherKids = new int[capacity];
+        entries = new Object[capacity];
+    }
+
+    /**
+     * Adds a word to the tree associated with a {@link Collector}.
+     *
+     * If the word was previously added to this tree the specified collector
+     * is added to the existing collector.
+     *
+     * @param word the key
+     * @param entry a collector with values
+     */
+    public void put(String word, Entry entry) {
+        // empty or null not allowed
+        if (word == null || word.isEmpty()) {
+            return;
+        }
+        int parent = NIL;
+        int currentNode = root;
+        int kind = LOWER;
+        int counter = 0;
+        do {
+            char key = word.charAt(counter);
+            if (currentNode == NIL) {
+                currentNode = newNode(key);
+                if (parent == NIL) {
+                    // root was nil, creating root here
+                    root = currentNode;
+                }
+                else if (kind == LOWER) {
+                    lowerKids[parent] = currentNode;
+                }
+                else if (kind == EQUAL) {
+                    equalKids[parent] = currentNode;
+                }
+                else {
+                    higherKids[parent] = currentNode;
+                }
+            }
+            parent = currentNode;
+            if (key < keys[currentNode]) {
+                kind = LOWER;
+                currentNode = lowerKids[currentNode];
+            }
+            else if (key > keys[currentNode]) {
+                kind = HIGHER;
+                currentNode = higherKids[currentNode];
+            }
+            else {
+                kind = EQUAL;
+                currentNode = equalKids[currentNode];
+                counter++;
+            }
+        }
+        while (counter < word.length());
+        if (entries[parent] == null) {
+            entries[parent] = entry;
+        }
+        else {
+            entry(parent).add(entry);
+        }
+    }
+
+    /**
+     * Searches for collectors associated with words that starts with the specified prefix.
+     *
+     * @param prefix the search prefix
+     * @return a list of collectors, that contain values
+     */
+    public List<Entry> find(String prefix) {
+        return find(prefix, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Searches for at most limit collectors associated with words that starts with the specified prefix.
+     *
+     * @param prefix the search prefix
+     * @param limit the maximal number of collectors
+     * @return a list of collectors, that contain values
+     * @see TernarySearchTree#find(String, int)
+     */
+    public List<Entry> find(String prefix, int limit) {
+        return find(prefix, 0, limit);
+    }
+
+    /**
+     * Searches for at most limit collectors associated with words that starts with the specified prefix,
+     * skipping the first offset collectors.
+     *
+     * @param prefix the search prefix
+     * @param offset the number of collectors to skip
+     * @param limit the maximal number of collectors
+     * @return a list of collectors, that contain values
+     * @throws IllegalArgumentException if offset or limit is negative
+     * @see TernarySearchTree#find(String, int, int)
+     */
+    public List<Entry> find(String prefix, int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("offset and limit must not be negative");
+        }
+        // empty or null not allowed
+        if (prefix == null || prefix.isEmpty() || limit == 0) {
+            return new ArrayList<>(0);
+        }
+        int currentNode = get(prefix);
+        if (currentNode == NIL) {
+            // nothing found
+            return new ArrayList<>(0);
+        }
+        List<Entry> result = new ArrayList<>();
+        int skip = offset;
+        if (entries[currentNode] != null) {
+            if (skip > 0) {
+                skip--;
+            }
+            else {
+                result.add(entry(currentNode));
+            }
+        }
+        // are there more matches for the prefix?
+        // collect from subtree
+        if (equalKids[currentNode] != NIL && result.size() < limit) {
+            traversePreOrder(equalKids[currentNode], result, skip, limit);
+        }
+        return result;
+    }
+
+    private int get(String prefix) {
+        int currentNode = root;
+        int counter = 0;
+        while (currentNode != NIL) {
+            char key = prefix.charAt(counter);
+            if (key < keys[currentNode]) {
+                currentNode = lowerKids[currentNode];
+            }
+            else if (key > keys[currentNode]) {
+                currentNode = higherKids[currentNode];
+            }
+            else if (counter < prefix.length() - 1) {
+                currentNode = equalKids[currentNode];
+                counter++;
+            }
+            else {
+                return currentNode;
+            }
+        }
+        return NIL;
+    }
+
+    private void traversePreOrder(int currentNode, List<Entry> result, int skip, int limit) {
+        // avoid recursion and boxing, an array as stack
+        int[] stack = new int[32];
+        int size = 0;
+        stack[size++] = currentNode;
+        while (size > 0) {
+            currentNode = stack[--size];
+            if (entries[currentNode] != null) {
+                if (skip > 0) {
+                    skip--;
+                }
+                else {
+                    result.add(entry(currentNode));
+                    if (result.size() == limit) {
+                        // early termination, the rest of the subtree is not visited
+                        return;
+                    }
+                }
+            }
+            if (size + 3 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            if (higherKids[currentNode] != NIL) {
+                stack[size++] = higherKids[currentNode];
+            }
+            if (equalKids[currentNode] != NIL) {
+                stack[size++] = equalKids[currentNode];
+            }
+            if (lowerKids[currentNode] != NIL) {
+                stack[size++] = lowerKids[currentNode];
+            }
+        }
+    }
+
+    /**
+     * Removes a word from this tree.
+     *
+     * If the word was previously added to this tree the specified {@link Collector}
+     * is removed from the existing collector.
+     *
+     * If the existing collector is then empty the existing collector is removed.
+     *
+     * @param word to be removed
+     * @param entry the associated collector with values to be removed
+     * @return true if the node in the tree was removed (existing collector was empty after removing the specified collector)
+     */
+    public boolean remove(String word, Entry entry) {
+        // empty or null not allowed
+        if (word == null || word.isEmpty()) {
+            return false;
+        }
+        // search for the node to be removed, remember the way down as there are no parents
+        int[] path = new int[32];
+        int depth = 0;
+        int currentNode = root;
+        int counter = 0;
+        while (currentNode != NIL) {
+            if (depth == path.length) {
+                path = Arrays.copyOf(path, depth * 2);
+            }
+            path[depth] = currentNode;
+            char key = word.charAt(counter);
+            if (key < keys[currentNode]) {
+                currentNode = lowerKids[currentNode];
+            }
+            else if (key > keys[currentNode]) {
+                currentNode = higherKids[currentNode];
+            }
+            else if (counter < word.length() - 1) {
+                currentNode = equalKids[currentNode];
+                counter++;
+            }
+            else {
+                break;
+            }
+            depth++;
+        }
+        if (currentNode == NIL || entries[currentNode] == null) {
+            // nothing found to remove
+            return false;
+        }
+        // remove found node
+        boolean isEmpty = entry(currentNode).remove(entry);
+        if (!isEmpty) {
+            // node is not empty, do not remove this node!
+            return false;
+        }
+        entries[currentNode] = null;
+
+        // the path ends with the current node, avoid recursion
+        while (depth >= 0 && killNode(path[depth], depth > 0 ? path[depth - 1] : NIL)) {
+            depth--;
+        }
+        return true;
+    }
+
+    /**
+     * Removes the node if it is not needed anymore.
+     *
+     * @param currentNode the node
+     * @param parent the parent of the node or nil if the node is the root
+     * @return true if the parent has to be checked as well
+     */
+    private boolean killNode(int currentNode, int parent) {
+        int lowerKid = lowerKids[currentNode];
+        int equalKid = equalKids[currentNode];
+        int higherKid = higherKids[currentNode];
+        // current node has no value and has no children at all
+        if (entries[currentNode] == null && lowerKid == NIL && equalKid == NIL && higherKid == NIL) {
+            replaceKid(parent, currentNode, NIL);
+            freeNode(currentNode);
+            // continue with parent
+            return parent != NIL;
+        }
+        if (equalKid != NIL || entries[currentNode] != null) {
+            // can't remove any node
+            return false;
+        }
+        // current node has no equal kid and has no value but one or two children
+        if (lowerKid == NIL) {
+            replaceKid(parent, currentNode, higherKid);
+            freeNode(currentNode);
+            return false;
+        }
+        if (higherKid == NIL) {
+            replaceKid(parent, currentNode, lowerKid);
+            freeNode(currentNode);
+            return false;
+        }
+        // there are two kids - which one will be the kid of the current parent?
+        int higherDif = keys[higherKid] - keys[currentNode];
+        int lowerDif = keys[currentNode] - keys[lowerKid];
+        int replacement;
+        if (lowerDif <= higherDif) {
+            // search for the max in lower
+            int maxParent = currentNode;
+            replacement = lowerKid;
+            while (higherKids[replacement] != NIL) {
+                maxParent = replacement;
+                replacement = higherKids[replacement];
+            }
+            replaceKid(maxParent, replacement, lowerKids[replacement]);
+        }
+        else {
+            // search for the min in higher
+            int minParent = currentNode;
+            replacement = higherKid;
+            while (lowerKids[replacement] != NIL) {
+                minParent = replacement;
+                replacement = lowerKids[replacement];
+            }
+            replaceKid(minParent, replacement, higherKids[replacement]);
+        }
+        entries[currentNode] = entries[replacement];
+        keys[currentNode] = keys[replacement];
+        equalKids[currentNode] = equalKids[replacement];
+        freeNode(replacement);
+        return false;
+    }
+
+    private void replaceKid(int parent, int currentNode, int newNode) {
+        if (parent == NIL) {
+            // current node is root
+            root = newNode;
+        }
+        else if (lowerKids[parent] == currentNode) {
+            lowerKids[parent] = newNode;
+        }
+        else if (equalKids[parent] == currentNode) {
+            equalKids[parent] = newNode;
+        }
+        else if (higherKids[parent] == currentNode) {
+            higherKids[parent] = newNode;
+        }
+    }
+
+    /**
+     * Gets the number of nodes in this tree.
+     *
+     * @return the number of nodes
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Shrinks the arrays to the slots in use, free slots in between are kept.
+     */
+    public void trimToSize() {
+        resize(nextSlot);
+    }
+
+    private int newNode(char key) {
+        int node;
+        if (freeSlot != NIL) {
+            node = freeSlot;
+            freeSlot = equalKids[node];
+            equalKids[node] = NIL;
+        }
+        else {
+            if (nextSlot == keys.length) {
+                resize(Math.max(DEFAULT_CAPACITY, keys.length + (keys.length >> 1)));
+            }
+            node = nextSlot++;
+        }
+        keys[node] = key;
+        nodeCount++;
+        return node;
+    }
+
+    private void freeNode(int node) {
+        entries[node] = null;
+        lowerKids[node] = NIL;
+        higherKids[node] = NIL;
+        equalKids[node] = freeSlot;
+        freeSlot = node;
+        nodeCount--;
+    }
+
+    private void resize(int capacity) {
+        keys = Arrays.copyOf(keys, capacity);
+        lowerKids = Arrays.copyOf(lowerKids, capacity);
+        equalKids = Arrays.copyOf(equalKids, capacity);
+        higherKids = Arrays.copyOf(higherKids, capacity);
+        entries = Arrays.copyOf(entries, capacity);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Entry entry(int node) {
+        return (Entry) entries[node];
+    }
+}
@@ -0,0 +1,88 @@
+package com.valagja.search.ternarytree.prefix;
+
+/**
+ * The node of the {@link CompressedTernarySearchTree}.
+ *
+ * A node holds a segment of one or more characters. It stands for a chain of {@link TernaryNode}s
+ * linked by equal kids, where only the first one has lower and higher kids and only the last one an entry.
+ *
+ * @param <V> type of the value of the collector
+ * @param <Entry> type of the collector
+ */
+public class CompressedTernaryNode<V, Entry extends Collector<V>> {
+
+    private char[] segment;
+
+    private Entry entry;
+
+    private CompressedTernaryNode<V, Entry> lowerKid;
+    private CompressedTernaryNode<V, Entry> equalKid;
+    private CompressedTernaryNode<V, Entry> higherKid;
+
+    public CompressedTernaryNode(char[] segment) {
+        this.segment = segment;
+    }
+
+    /**
+     * Gets the first character, the one compared with lower and higher kids.
+     *
+     * @return the first character of the segment
+     */
+    public char getKey() {
+        return segment[0];
+    }
+
+    public char[] getSegment() {
+        return segment;
+    }
+
+    public void setSegment(char[] segment) {
+        this.segment = segment;
+    }
+
+    public Entry getEntry() {
+        return entry;
+    }
+
+    public void setEntry(Entry entry) {
+        this.entry = entry;
+    }
+
+    public CompressedTernaryNode<V, Entry> getLowerKid() {
+        return lowerKid;
+    }
+
+    public void setLowerKid(CompressedTernaryNode<V, Entry> lowerKid) {
+        this.lowerKid = lowerKid;
+    }
+
+    public CompressedTernaryNode<V, Entry> getEqualKid() {
+        return equalKid;
+    }
+
+    public void setEqualKid(CompressedTernaryNode<V, Entry> equalKid) {
+        this.equalKid = equalKid;
+    }
+
+    public CompressedTernaryNode<V, Entry> getHigherKid() {
+        return higherKid;
+    }
+
+    public void setHigherKid(CompressedTernaryNode<V, Entry> higherKid) {
+        this.higherKid = higherKid;
+    }
+
+    public void replaceKid(CompressedTernaryNode<V, Entry> currentNode, CompressedTernaryNode<V, Entry> newNode) {
+        if (lowerKid == currentNode) {
+            lowerKid = newNode;
+            return;
+        }
+        if (equalKid == currentNode) {
+            equalKid = newNode;
+            return;
+        }
+        if (higherKid == currentNode) {
+            higherKid = newNode;
+        }
+    }
+}
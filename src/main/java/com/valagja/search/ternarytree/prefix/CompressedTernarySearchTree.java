@@ -0,0 +1,465 @@
+package com.valagja.search.ternarytree.prefix;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Implementation of a ternary search tree for prefix search with path compression.
+ *
+ * Behaves like {@link TernarySearchTree}: put, find and remove give the same results in the same order.
+ *
+ * A chain of nodes linked by equal kids, where none but the first has lower or higher kids
+ * and none but the last has an entry, is stored as one {@link CompressedTernaryNode} holding the characters
+ * of the chain as segment. Long unique tails of words take one node instead of one node per character.
+ *
+ * Put splits a segment where a new word leaves it, remove merges a node with its equal kid
+ * as soon as the chain condition holds again, so the tree always has the fewest possible nodes.
+ *
+ * @param <V> the value type a collector holds
+ * @param <Entry> an implementation of a collector
+ */
+public class CompressedTernarySearchTree<V, Entry extends Collector<V>> {
+
+    // which kid of the parent a node is
+    private static final int ROOT = 0;
+    private static final int LOWER = 1;
+    private static final int EQUAL = 2;
+    private static final int HIGHER = 3;
+
+    private CompressedTernaryNode<V, Entry> root;
+
+    private int nodeCount;
+
+    /**
+     * Adds a word to the tree associated with a {@link Collector}.
+     *
+     * If the word was previously added to this tree the specified collector
+     * is added to the existing collector.
+     *
+     * @param word the key
+     * @param entry a collector with values
+     */
+    public void put(String word, Entry entry) {
+        // empty or null not allowed
+        if (word == null || word.isEmpty()) {
+            return;
+        }
+        CompressedTernaryNode<V, Entry> parent = null;
+        int kind = ROOT;
+        CompressedTernaryNode<V, Entry> currentNode = root;
+        int counter = 0;
+        while (currentNode != null) {
+            char key = word.charAt(counter);
+            char[] segment = currentNode.getSegment();
+            if (key < segment[0]) {
+                parent = currentNode;
+                currentNode = currentNode.getLowerKid();
+                kind = LOWER;
+                continue;
+            }
+            if (key > segment[0]) {
+                parent = currentNode;
+                currentNode = currentNode.getHigherKid();
+                kind = HIGHER;
+                continue;
+            }
+            int matched = 1;
+            counter++;
+            while (matched < segment.length && counter < word.length() && word.charAt(counter) == segment[matched]) {
+                matched++;
+                counter++;
+            }
+            if (matched < segment.length) {
+                // the word leaves the segment, either it ends or the next character differs
+                split(currentNode, matched);
+            }
+            if (counter == word.length()) {
+                if (currentNode.getEntry() == null) {
+                    currentNode.setEntry(entry);
+                }
+                else {
+                    currentNode.getEntry().add(entry);
+                }
+                return;
+            }
+            parent = currentNode;
+            currentNode = currentNode.getEqualKid();
+            kind = EQUAL;
+        }
+        // the rest of the word becomes one node
+        char[] segment = new char[word.length() - counter];
+        word.getChars(counter, word.length(), segment, 0);
+        currentNode = new CompressedTernaryNode<>(segment);
+        currentNode.setEntry(entry);
+        nodeCount++;
+        replaceKid(parent, kind, currentNode);
+    }
+
+    /**
+     * Searches for collectors associated with words that starts with the specified prefix.
+     *
+     * @param prefix the search prefix
+     * @return a list of collectors, that contain values
+     */
+    public List<Entry> find(String prefix) {
+        return find(prefix, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Searches for at most limit collectors associated with words that starts with the specified prefix.
+     *
+     * @param prefix the search prefix
+     * @param limit the maximal number of collectors
+     * @return a list of collectors, that contain values
+     * @see TernarySearchTree#find(String, int)
+     */
+    public List<Entry> find(String prefix, int limit) {
+        return find(prefix, 0, limit);
+    }
+
+    /**
+     * Searches for at most limit collectors associated with words that starts with the specified prefix,
+     * skipping the first offset collectors.
+     *
+     * @param prefix the search prefix
+     * @param offset the number of collectors to skip
+     * @param limit the maximal number of collectors
+     * @return a list of collectors, that contain values
+     * @throws IllegalArgumentException if offset or limit is negative
+     * @see TernarySearchTree#find(String, int, int)
+     */
+    public List<Entry> find(String prefix, int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("offset and limit must not be negative");
+        }
+        // empty or null not allowed
+        if (prefix == null || prefix.isEmpty() || limit == 0) {
+            return new ArrayList<>(0);
+        }
+        CompressedTernaryNode<V, Entry> currentNode = get(prefix);
+        if (currentNode == null) {
+            // nothing found
+            return new ArrayList<>(0);
+        }
+        List<Entry> result = new ArrayList<>();
+        // the prefix ends somewhere in the segment, the rest of the segment has no other words
+        int skip = collect(currentNode.getEntry(), result, offset, limit);
+        // are there more matches for the prefix?
+        // collect from subtree
+        if (currentNode.getEqualKid() != null && result.size() < limit) {
+            traversePreOrder(currentNode.getEqualKid(), result, skip, limit);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the number of nodes in this tree.
+     *
+     * @return the number of nodes
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Searches the node whose segment contains the last character of the prefix.
+     */
+    private CompressedTernaryNode<V, Entry> get(String prefix) {
+        CompressedTernaryNode<V, Entry> currentNode = root;
+        int counter = 0;
+        while (currentNode != null) {
+            char key = prefix.charAt(counter);
+            char[] segment = currentNode.getSegment();
+            if (key < segment[0]) {
+                currentNode = currentNode.getLowerKid();
+            }
+            else if (key > segment[0]) {
+                currentNode = currentNode.getHigherKid();
+            }
+            else {
+                counter++;
+                for (int matched = 1; matched < segment.length && counter < prefix.length(); matched++, counter++) {
+                    if (prefix.charAt(counter) != segment[matched]) {
+                        return null;
+                    }
+                }
+                if (counter == prefix.length()) {
+                    return currentNode;
+                }
+                currentNode = currentNode.getEqualKid();
+            }
+        }
+        return null;
+    }
+
+    private void traversePreOrder(CompressedTernaryNode<V, Entry> currentNode, List<Entry> result, int skip, int limit) {
+        // avoid recursion
+        // a node is pushed a second time to visit its entry after the lower kids,
+        // where the last character of an uncompressed chain would be visited
+        Deque<CompressedTernaryNode<V, Entry>> deque = new ArrayDeque<>();
+        Deque<Boolean> isEntryOnly = new ArrayDeque<>();
+        deque.push(currentNode);
+        isEntryOnly.push(Boolean.FALSE);
+        while (!deque.isEmpty()) {
+            currentNode = deque.pop();
+            if (isEntryOnly.pop()) {
+                skip = collect(currentNode.getEntry(), result, skip, limit);
+                if (result.size() == limit) {
+                    return;
+                }
+                continue;
+            }
+            boolean isCompressed = currentNode.getSegment().length > 1;
+            if (!isCompressed) {
+                skip = collect(currentNode.getEntry(), result, skip, limit);
+                if (result.size() == limit) {
+                    // early termination, the rest of the subtree is not visited
+                    return;
+                }
+            }
+            if (currentNode.getHigherKid() != null) {
+                deque.push(currentNode.getHigherKid());
+                isEntryOnly.push(Boolean.FALSE);
+            }
+            if (currentNode.getEqualKid() != null) {
+                deque.push(currentNode.getEqualKid());
+                isEntryOnly.push(Boolean.FALSE);
+            }
+            if (isCompressed && currentNode.getEntry() != null) {
+                deque.push(currentNode);
+                isEntryOnly.push(Boolean.TRUE);
+            }
+            if (currentNode.getLowerKid() != null) {
+                deque.push(currentNode.getLowerKid());
+                isEntryOnly.push(Boolean.FALSE);
+            }
+        }
+    }
+
+    /**
+     * Adds the entry to the result unless it is null or still to be skipped.
+     *
+     * @return the number of entries still to be skipped
+     */
+    private int collect(Entry entry, List<Entry> result, int skip, int limit) {
+        if (entry == null) {
+            return skip;
+        }
+        if (skip > 0) {
+            return skip - 1;
+        }
+        if (result.size() < limit) {
+            result.add(entry);
+        }
+        return 0;
+    }
+
+    /**
+     * Removes a word from this tree.
+     *
+     * If the word was previously added to this tree the specified {@link Collector}
+     * is removed from the existing collector.
+     *
+     * If the existing collector is then empty the existing collector is removed.
+     *
+     * @param word to be removed
+     * @param entry the associated collector with values to be removed
+     * @return true if the node in the tree was removed (existing collector was empty after removing the specified collector)
+     */
+    public boolean remove(String word, Entry entry) {
+        // empty or null not allowed
+        if (word == null || word.isEmpty()) {
+            return false;
+        }
+        // search for the node to be removed, remember the way down as there are no parents
+        List<CompressedTernaryNode<V, Entry>> path = new ArrayList<>();
+        List<Integer> kinds = new ArrayList<>();
+        CompressedTernaryNode<V, Entry> currentNode = root;
+        int kind = ROOT;
+        int counter = 0;
+        while (currentNode != null) {
+            path.add(currentNode);
+            kinds.add(kind);
+            char key = word.charAt(counter);
+            char[] segment = currentNode.getSegment();
+            if (key < segment[0]) {
+                currentNode = currentNode.getLowerKid();
+                kind = LOWER;
+                continue;
+            }
+            if (key > segment[0]) {
+                currentNode = currentNode.getHigherKid();
+                kind = HIGHER;
+                continue;
+            }
+            int matched = 1;
+            counter++;
+            while (matched < segment.length && counter < word.length()) {
+                if (word.charAt(counter) != segment[matched]) {
+                    // nothing found to remove
+                    return false;
+                }
+                matched++;
+                counter++;
+            }
+            if (counter == word.length()) {
+                if (matched < segment.length) {
+                    // the word ends within the segment, there is no entry
+                    return false;
+                }
+                break;
+            }
+            currentNode = currentNode.getEqualKid();
+            kind = EQUAL;
+        }
+        if (currentNode == null || currentNode.getEntry() == null) {
+            // nothing found to remove, the word might only be a prefix of other words
+            return false;
+        }
+        // remove found node
+        boolean isEmpty = currentNode.getEntry().remove(entry);
+        if (!isEmpty) {
+            // node is not empty, do not remove this node!
+            return false;
+        }
+        currentNode.setEntry(null);
+        if (currentNode.getEqualKid() != null) {
+            // the node is still needed for longer words, but might be merged with them now
+            mergeWithEqualKid(currentNode);
+            return true;
+        }
+        killNode(path, kinds);
+        return true;
+    }
+
+    /**
+     * Removes the last node of the path that has neither an entry nor an equal kid,
+     * continues with its parent if it was its equal kid.
+     */
+    private void killNode(List<CompressedTernaryNode<V, Entry>> path, List<Integer> kinds) {
+        // avoid recursion
+        for (int depth = path.size() - 1; depth >= 0; depth--) {
+            CompressedTernaryNode<V, Entry> currentNode = path.get(depth);
+            int kind = kinds.get(depth);
+            CompressedTernaryNode<V, Entry> parent = (depth > 0) ? path.get(depth - 1) : null;
+            if (currentNode.getEntry() != null || currentNode.getEqualKid() != null) {
+                // can't remove any node
+                return;
+            }
+            if (currentNode.getLowerKid() == null && currentNode.getHigherKid() == null) {
+                replaceKid(parent, kind, null);
+                nodeCount--;
+                if (kind != EQUAL) {
+                    // one sibling less, the remaining one might be merged with the node above
+                    mergeAbove(path, kinds, depth);
+                    return;
+                }
+                // continue with parent, it lost its equal kid
+                continue;
+            }
+            if (currentNode.getLowerKid() == null) {
+                replaceKid(parent, kind, currentNode.getHigherKid());
+                nodeCount--;
+                mergeAbove(path, kinds, depth);
+                return;
+            }
+            if (currentNode.getHigherKid() == null) {
+                replaceKid(parent, kind, currentNode.getLowerKid());
+                nodeCount--;
+                mergeAbove(path, kinds, depth);
+                return;
+            }
+            // there are two kids - which one will be the kid of the current parent?
+            CompressedTernaryNode<V, Entry> replacement;
+            int higherDif = currentNode.getHigherKid().getKey() - currentNode.getKey();
+            int lowerDif = currentNode.getKey() - currentNode.getLowerKid().getKey();
+            if (lowerDif <= higherDif) {
+                // search for the max in lower
+                CompressedTernaryNode<V, Entry> maxParent = currentNode;
+                replacement = currentNode.getLowerKid();
+                while (replacement.getHigherKid() != null) {
+                    maxParent = replacement;
+                    replacement = replacement.getHigherKid();
+                }
+                maxParent.replaceKid(replacement, replacement.getLowerKid());
+            }
+            else {
+                // search for the min in higher
+                CompressedTernaryNode<V, Entry> minParent = currentNode;
+                replacement = currentNode.getHigherKid();
+                while (replacement.getLowerKid() != null) {
+                    minParent = replacement;
+                    replacement = replacement.getLowerKid();
+                }
+                minParent.replaceKid(replacement, replacement.getHigherKid());
+            }
+            currentNode.setSegment(replacement.getSegment());
+            currentNode.setEntry(replacement.getEntry());
+            currentNode.setEqualKid(replacement.getEqualKid());
+            nodeCount--;
+            return;
+        }
+    }
+
+    /**
+     * Merges the node, whose equal kid is the top of the siblings the node at depth belongs to,
+     * with its equal kid.
+     */
+    private void mergeAbove(List<CompressedTernaryNode<V, Entry>> path, List<Integer> kinds, int depth) {
+        while (kinds.get(depth) == LOWER || kinds.get(depth) == HIGHER) {
+            depth--;
+        }
+        if (kinds.get(depth) == EQUAL) {
+            mergeWithEqualKid(path.get(depth - 1));
+        }
+    }
+
+    private void mergeWithEqualKid(CompressedTernaryNode<V, Entry> currentNode) {
+        CompressedTernaryNode<V, Entry> equalKid = currentNode.getEqualKid();
+        if (currentNode.getEntry() != null || equalKid == null
+                || equalKid.getLowerKid() != null || equalKid.getHigherKid() != null) {
+            return;
+        }
+        char[] segment = currentNode.getSegment();
+        char[] merged = Arrays.copyOf(segment, segment.length + equalKid.getSegment().length);
+        System.arraycopy(equalKid.getSegment(), 0, merged, segment.length, equalKid.getSegment().length);
+        currentNode.setSegment(merged);
+        currentNode.setEntry(equalKid.getEntry());
+        currentNode.setEqualKid(equalKid.getEqualKid());
+        nodeCount--;
+    }
+
+    /**
+     * Splits the segment of the node, the characters from the specified index on move to a new equal kid.
+     */
+    private void split(CompressedTernaryNode<V, Entry> currentNode, int index) {
+        char[] segment = currentNode.getSegment();
+        CompressedTernaryNode<V, Entry> tail = new CompressedTernaryNode<>(Arrays.copyOfRange(segment, index, segment.length));
+        tail.setEntry(currentNode.getEntry());
+        tail.setEqualKid(currentNode.getEqualKid());
+        currentNode.setSegment(Arrays.copyOf(segment, index));
+        currentNode.setEntry(null);
+        currentNode.setEqualKid(tail);
+        nodeCount++;
+    }
+
+    private void replaceKid(CompressedTernaryNode<V, Entry> parent, int kind, CompressedTernaryNode<V, Entry> newNode) {
+        switch (kind) {
+            case LOWER:
+                parent.setLowerKid(newNode);
+                break;
+            case EQUAL:
+                parent.setEqualKid(newNode);
+                break;
+            case HIGHER:
+                parent.setHigherKid(newNode);
+                break;
+            default:
+                // current node is root
+                root = newNode;
+        }
+    }
+}
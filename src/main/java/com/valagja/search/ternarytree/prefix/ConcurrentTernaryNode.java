@@ -0,0 +1,104 @@
+package com.valagja.search.ternarytree.prefix;
+
+/**
+ * The node of the {@link ConcurrentTernarySearchTree}.
+ *
+ * The key never changes, the links and the entry are volatile so readers see nodes fully built.
+ * Writers lock the node itself before changing it.
+ *
+ * @param <V> type of the value of the collector
+ * @param <Entry> type of the collector
+ */
+class ConcurrentTernaryNode<V, Entry extends Collector<V>> {
+
+    private final char key;
+
+    private volatile Entry entry;
+
+    private volatile ConcurrentTernaryNode<V, Entry> lowerKid;
+    private volatile ConcurrentTernaryNode<V, Entry> equalKid;
+    private volatile ConcurrentTernaryNode<V, Entry> higherKid;
+
+    private volatile ConcurrentTernaryNode<V, Entry> parent;
+
+    // set once the node is unlinked, no writer may link anything to it afterwards
+    private volatile boolean isRemoved;
+
+    ConcurrentTernaryNode(char key, ConcurrentTernaryNode<V, Entry> parent) {
+        this.key = key;
+        this.parent = parent;
+    }
+
+    char getKey() {
+        return key;
+    }
+
+    Entry getEntry() {
+        return entry;
+    }
+
+    void setEntry(Entry entry) {
+        this.entry = entry;
+    }
+
+    ConcurrentTernaryNode<V, Entry> getLowerKid() {
+        return lowerKid;
+    }
+
+    void setLowerKid(ConcurrentTernaryNode<V, Entry> lowerKid) {
+        this.lowerKid = lowerKid;
+    }
+
+    ConcurrentTernaryNode<V, Entry> getEqualKid() {
+        return equalKid;
+    }
+
+    void setEqualKid(ConcurrentTernaryNode<V, Entry> equalKid) {
+        this.equalKid = equalKid;
+    }
+
+    ConcurrentTernaryNode<V, Entry> getHigherKid() {
+        return higherKid;
+    }
+
+    void setHigherKid(ConcurrentTernaryNode<V, Entry> higherKid) {
+        this.higherKid = higherKid;
+    }
+
+    ConcurrentTernaryNode<V, Entry> getParent() {
+        return parent;
+    }
+
+    void setParent(ConcurrentTernaryNode<V, Entry> parent) {
+        this.parent = parent;
+    }
+
+    boolean isRemoved() {
+        return isRemoved;
+    }
+
+    void setRemoved() {
+        this.isRemoved = true;
+    }
+
+    /**
+     * Replaces a kid.
+     *
+     * @return true if the current node was a kid of this node
+     */
+    boolean replaceKid(ConcurrentTernaryNode<V, Entry> currentNode, ConcurrentTernaryNode<V, Entry> newNode) {
+        if (lowerKid == currentNode) {
+            lowerKid = newNode;
+            return true;
+        }
+        if (equalKid == currentNode) {
+            equalKid = newNode;
+            return true;
+        }
+        if (higherKid == currentNode) {
+            higherKid = newNode;
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,344 @@
+package com.valagja.search.ternarytree.prefix;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Implementation of a thread-safe ternary search tree for prefix search.
+ *
+ * Behaves like {@link TernarySearchTree} if used by one thread.
+ *
+ * Readers do not lock at all: find follows volatile links and only ever sees fully built nodes,
+ * a new part of a word is built privately and published with a single volatile write.
+ * The result of find is weakly consistent, it reflects each word as it was at some point during the call.
+ *
+ * Writers lock only the nodes they change, so writers of words with different prefixes do not block each other.
+ * When several nodes are locked, a parent is always locked before its kid.
+ * Remove never changes the key of a node: a node without entry is unlinked if it has at most one lower or higher kid,
+ * otherwise it stays in the tree as a routing node until one of its kids is removed.
+ * Readers in the middle of a traversal of an unlinked node just finish the old path.
+ *
+ * The collectors are shared with the readers: the tree synchronizes on a collector while adding to or
+ * removing from it, a reader needs to synchronize on it as well unless the collector is thread-safe.
+ *
+ * @param <V> the value type a collector holds
+ * @param <Entry> an implementation of a collector
+ */
+public class ConcurrentTernarySearchTree<V, Entry extends Collector<V>> {
+
+    // which kid of the parent a node is
+    private static final int LOWER = 0;
+    private static final int EQUAL = 1;
+    private static final int HIGHER = 2;
+
+    // the root is the equal kid of the head, so every node has a parent to lock
+    private final ConcurrentTernaryNode<V, Entry> head = new ConcurrentTernaryNode<>((char) 0, null);
+
+    /**
+     * Adds a word to the tree associated with a {@link Collector}.
+     *
+     * If the word was previously added to this tree the specified collector
+     * is added to the existing collector.
+     *
+     * @param word the key
+     * @param entry a collector with values
+     */
+    public void put(String word, Entry entry) {
+        // empty or null not allowed
+        if (word == null || word.isEmpty()) {
+            return;
+        }
+        while (!tryPut(word, entry)) {
+            // a node on the way was removed meanwhile, start again
+        }
+    }
+
+    private boolean tryPut(String word, Entry entry) {
+        ConcurrentTernaryNode<V, Entry> parent = head;
+        int kind = EQUAL;
+        ConcurrentTernaryNode<V, Entry> currentNode = head.getEqualKid();
+        int counter = 0;
+        while (true) {
+            if (currentNode == null) {
+                synchronized (parent) {
+                    if (parent.isRemoved()) {
+                        return false;
+                    }
+                    currentNode = getKid(parent, kind);
+                    if (currentNode == null) {
+                        setKid(parent, kind, newChain(parent, word, counter, entry));
+                        return true;
+                    }
+                }
+                // another writer linked a node meanwhile, continue with it
+            }
+            char key = word.charAt(counter);
+            if (key < currentNode.getKey()) {
+                parent = currentNode;
+                kind = LOWER;
+                currentNode = currentNode.getLowerKid();
+            }
+            else if (key > currentNode.getKey()) {
+                parent = currentNode;
+                kind = HIGHER;
+                currentNode = currentNode.getHigherKid();
+            }
+            else if (counter < word.length() - 1) {
+                parent = currentNode;
+                kind = EQUAL;
+                currentNode = currentNode.getEqualKid();
+                counter++;
+            }
+            else {
+                synchronized (currentNode) {
+                    if (currentNode.isRemoved()) {
+                        return false;
+                    }
+                    Entry existingEntry = currentNode.getEntry();
+                    if (existingEntry == null) {
+                        currentNode.setEntry(entry);
+                    }
+                    else {
+                        synchronized (existingEntry) {
+                            existingEntry.add(entry);
+                        }
+                    }
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Builds the nodes of the rest of the word, not yet visible to other threads.
+     *
+     * @return the first node of the chain
+     */
+    private ConcurrentTernaryNode<V, Entry> newChain(ConcurrentTernaryNode<V, Entry> parent, String word, int counter, Entry entry) {
+        ConcurrentTernaryNode<V, Entry> first = new ConcurrentTernaryNode<>(word.charAt(counter), parent);
+        ConcurrentTernaryNode<V, Entry> last = first;
+        for (int i = counter + 1; i < word.length(); i++) {
+            ConcurrentTernaryNode<V, Entry> next = new ConcurrentTernaryNode<>(word.charAt(i), last);
+            last.setEqualKid(next);
+            last = next;
+        }
+        last.setEntry(entry);
+        return first;
+    }
+
+    /**
+     * Searches for collectors associated with words that starts with the specified prefix.
+     *
+     * Does not lock, see the class description for consistency.
+     *
+     * @param prefix the search prefix
+     * @return a list of collectors, that contain values
+     */
+    public List<Entry> find(String prefix) {
+        return find(prefix, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Searches for at most limit collectors associated with words that starts with the specified prefix.
+     *
+     * Does not lock, see the class description for consistency.
+     *
+     * @param prefix the search prefix
+     * @param limit the maximal number of collectors
+     * @return a list of collectors, that contain values
+     * @throws IllegalArgumentException if limit is negative
+     */
+    public List<Entry> find(String prefix, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative");
+        }
+        // empty or null not allowed
+        if (prefix == null || prefix.isEmpty() || limit == 0) {
+            return new ArrayList<>(0);
+        }
+        ConcurrentTernaryNode<V, Entry> currentNode = get(prefix);
+        if (currentNode == null) {
+            // nothing found
+            return new ArrayList<>(0);
+        }
+        List<Entry> result = new ArrayList<>();
+        // read each volatile field once, a writer might change it in between
+        Entry entry = currentNode.getEntry();
+        if (entry != null) {
+            result.add(entry);
+        }
+        // are there more matches for the prefix?
+        // collect from subtree
+        ConcurrentTernaryNode<V, Entry> equalKid = currentNode.getEqualKid();
+        if (equalKid != null && result.size() < limit) {
+            traversePreOrder(equalKid, result, limit);
+        }
+        return result;
+    }
+
+    private ConcurrentTernaryNode<V, Entry> get(String prefix) {
+        ConcurrentTernaryNode<V, Entry> currentNode = head.getEqualKid();
+        int counter = 0;
+        while (currentNode != null) {
+            char key = prefix.charAt(counter);
+            if (key < currentNode.getKey()) {
+                currentNode = currentNode.getLowerKid();
+            }
+            else if (key > currentNode.getKey()) {
+                currentNode = currentNode.getHigherKid();
+            }
+            else if (counter < prefix.length() - 1) {
+                currentNode = currentNode.getEqualKid();
+                counter++;
+            }
+            else {
+                return currentNode;
+            }
+        }
+        return null;
+    }
+
+    private void traversePreOrder(ConcurrentTernaryNode<V, Entry> currentNode, List<Entry> result, int limit) {
+        // avoid recursion
+        Deque<ConcurrentTernaryNode<V, Entry>> deque = new ArrayDeque<>();
+        deque.push(currentNode);
+        while (!deque.isEmpty()) {
+            currentNode = deque.pop();
+            Entry entry = currentNode.getEntry();
+            if (entry != null) {
+                result.add(entry);
+                if (result.size() == limit) {
+                    // early termination, the rest of the subtree is not visited
+                    return;
+                }
+            }
+            ConcurrentTernaryNode<V, Entry> kid = currentNode.getHigherKid();
+            if (kid != null) {
+                deque.push(kid);
+            }
+            kid = currentNode.getEqualKid();
+            if (kid != null) {
+                deque.push(kid);
+            }
+            kid = currentNode.getLowerKid();
+            if (kid != null) {
+                deque.push(kid);
+            }
+        }
+    }
+
+    /**
+     * Removes a word from this tree.
+     *
+     * If the word was previously added to this tree the specified {@link Collector}
+     * is removed from the existing collector.
+     *
+     * If the existing collector is then empty the existing collector is removed.
+     *
+     * @param word to be removed
+     * @param entry the associated collector with values to be removed
+     * @return true if the node in the tree was removed (existing collector was empty after removing the specified collector)
+     */
+    public boolean remove(String word, Entry entry) {
+        // empty or null not allowed
+        if (word == null || word.isEmpty()) {
+            return false;
+        }
+        while (true) {
+            ConcurrentTernaryNode<V, Entry> currentNode = get(word);
+            if (currentNode == null) {
+                // nothing found to remove
+                return false;
+            }
+            synchronized (currentNode) {
+                if (currentNode.isRemoved()) {
+                    // unlinked meanwhile, the word might have been put again on a new path
+                    continue;
+                }
+                Entry existingEntry = currentNode.getEntry();
+                if (existingEntry == null) {
+                    // nothing found to remove, the word is only a prefix of other words
+                    return false;
+                }
+                boolean isEmpty;
+                synchronized (existingEntry) {
+                    isEmpty = existingEntry.remove(entry);
+                }
+                if (!isEmpty) {
+                    // node is not empty, do not remove this node!
+                    return false;
+                }
+                currentNode.setEntry(null);
+            }
+            killNode(currentNode);
+            return true;
+        }
+    }
+
+    private void killNode(ConcurrentTernaryNode<V, Entry> currentNode) {
+        // avoid recursion
+        while (currentNode != head) {
+            ConcurrentTernaryNode<V, Entry> parent = currentNode.getParent();
+            ConcurrentTernaryNode<V, Entry> kid;
+            synchronized (parent) {
+                synchronized (currentNode) {
+                    if (currentNode.isRemoved()) {
+                        return;
+                    }
+                    if (currentNode.getParent() != parent) {
+                        // the parent was unlinked meanwhile, try again with the new one
+                        continue;
+                    }
+                    if (currentNode.getEntry() != null || currentNode.getEqualKid() != null) {
+                        // can't remove any node
+                        return;
+                    }
+                    ConcurrentTernaryNode<V, Entry> lowerKid = currentNode.getLowerKid();
+                    ConcurrentTernaryNode<V, Entry> higherKid = currentNode.getHigherKid();
+                    if (lowerKid != null && higherKid != null) {
+                        // stays as routing node, changing its key would confuse readers
+                        return;
+                    }
+                    kid = (lowerKid != null) ? lowerKid : higherKid;
+                    if (kid != null) {
+                        kid.setParent(parent);
+                    }
+                    parent.replaceKid(currentNode, kid);
+                    currentNode.setRemoved();
+                }
+            }
+            if (kid != null) {
+                // current node is removed, the parent did not lose a kid
+                return;
+            }
+            // continue with parent
+            currentNode = parent;
+        }
+    }
+
+    private ConcurrentTernaryNode<V, Entry> getKid(ConcurrentTernaryNode<V, Entry> parent, int kind) {
+        switch (kind) {
+            case LOWER:
+                return parent.getLowerKid();
+            case HIGHER:
+                return parent.getHigherKid();
+            default:
+                return parent.getEqualKid();
+        }
+    }
+
+    private void setKid(ConcurrentTernaryNode<V, Entry> parent, int kind, ConcurrentTernaryNode<V, Entry> kid) {
+        switch (kind) {
+            case LOWER:
+                parent.setLowerKid(kid);
+                break;
+            case HIGHER:
+                parent.setHigherKid(kid);
+                break;
+            default:
+                parent.setEqualKid(kid);
+        }
+    }
+}
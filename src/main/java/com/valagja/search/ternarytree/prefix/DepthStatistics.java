@@ -0,0 +1,86 @@
+package com.valagja.search.ternarytree.prefix;
+
+/**
+ * Statistics about the shape of a {@link TernarySearchTree}.
+ *
+ * The depth of a node is the number of nodes visited from the root to the node, the root has depth 1.
+ * The nodes linked by lower and higher kids form a binary search tree of siblings,
+ * the sibling depth of a node is its depth within that binary search tree.
+ */
+public class DepthStatistics {
+
+    private final int nodeCount;
+    private final int wordCount;
+    private final int maxDepth;
+    private final long totalWordDepth;
+    private final int maxSiblingDepth;
+
+    /**
+     * Constructs new statistics.
+     *
+     * @param nodeCount the number of nodes
+     * @param wordCount the number of nodes with an entry
+     * @param maxDepth the maximal depth of a node
+     * @param totalWordDepth the sum of the depths of all nodes with an entry
+     * @param maxSiblingDepth the maximal sibling depth of a node
+     */
+    public DepthStatistics(int nodeCount, int wordCount, int maxDepth, long totalWordDepth, int maxSiblingDepth) {
+        this.nodeCount = nodeCount;
+        this.wordCount = wordCount;
+        this.maxDepth = maxDepth;
+        this.totalWordDepth = totalWordDepth;
+        this.maxSiblingDepth = maxSiblingDepth;
+    }
+
+    /**
+     * Gets the number of nodes.
+     *
+     * @return the number of nodes
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Gets the number of words, that is the number of nodes with an entry.
+     *
+     * @return the number of words
+     */
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    /**
+     * Gets the maximal depth, the number of nodes on the longest path from the root.
+     *
+     * @return the maximal depth or 0 if the tree is empty
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Gets the average number of nodes visited to find a word.
+     *
+     * @return the average depth of the words or 0 if the tree is empty
+     */
+    public double getAverageWordDepth() {
+        return (wordCount == 0) ? 0 : (double) totalWordDepth / wordCount;
+    }
+
+    /**
+     * Gets the maximal depth within a binary search tree of siblings,
+     * the number of lower and higher kids followed for one character plus one.
+     *
+     * @return the maximal sibling depth or 0 if the tree is empty
+     */
+    public int getMaxSiblingDepth() {
+        return maxSiblingDepth;
+    }
+
+    @Override
+    public String toString() {
+        return "DepthStatistics{nodeCount=" + nodeCount + ", wordCount=" + wordCount + ", maxDepth=" + maxDepth
+                + ", averageWordDepth=" + getAverageWordDepth() + ", maxSiblingDepth=" + maxSiblingDepth + "}";
+    }
+}
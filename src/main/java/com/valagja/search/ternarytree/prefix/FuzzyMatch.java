@@ -0,0 +1,52 @@
+package com.valagja.search.ternarytree.prefix;
+
+/**
+ * A word found by {@link TernarySearchTree#findFuzzy(String, int)} with its collector
+ * and its edit distance to the search prefix.
+ *
+ * @param <Entry> type of the collector
+ */
+public class FuzzyMatch<Entry> {
+
+    private final String word;
+    private final Entry entry;
+    private final int distance;
+
+    public FuzzyMatch(String word, Entry entry, int distance) {
+        this.word = word;
+        this.entry = entry;
+        this.distance = distance;
+    }
+
+    /**
+     * Gets the found word.
+     *
+     * @return the word
+     */
+    public String getWord() {
+        return word;
+    }
+
+    /**
+     * Gets the collector associated with the word.
+     *
+     * @return the collector
+     */
+    public Entry getEntry() {
+        return entry;
+    }
+
+    /**
+     * Gets the smallest edit distance between the search prefix and a prefix of the word.
+     *
+     * @return the edit distance, 0 if the word starts with the search prefix
+     */
+    public int getDistance() {
+        return distance;
+    }
+
+    @Override
+    public String toString() {
+        return "FuzzyMatch{word=" + word + ", distance=" + distance + "}";
+    }
+}
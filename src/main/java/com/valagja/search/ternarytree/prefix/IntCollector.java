@@ -0,0 +1,286 @@
+package com.valagja.search.ternarytree.prefix;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+/**
+ *  Implements {@link Collector}.
+ *
+ *  Holds many int ids as set like {@link ItemCollector}, but as a sorted int array instead of boxed integers
+ *  in a hash set. Adding and removing the ids of another IntCollector merges the sorted arrays in place,
+ *  memory is only allocated if the array has to grow.
+ *
+ *  The ids can be read without boxing by {@link #intIterator()}, {@link #forEachId(IntConsumer)},
+ *  {@link #getId(int)} and {@link #toArray()}. {@link #getValues()} is a boxing view for compatibility.
+ */
+public class IntCollector implements Collector<Integer> {
+
+    private int[] ids;
+    private int size;
+
+    /**
+     * Constructs a new IntCollector containing the specified id.
+     *
+     * @param id the first id of this collector
+     */
+    public IntCollector(int id) {
+        ids = new int[]{id};
+        size = 1;
+    }
+
+    /**
+     * Constructs a new IntCollector containing the specified ids.
+     *
+     * @param ids the ids in any order, duplicates are removed
+     */
+    public IntCollector(int... ids) {
+        this.ids = ids.clone();
+        Arrays.sort(this.ids);
+        size = distinct(this.ids, this.ids.length);
+    }
+
+    /**
+     * Adds the content of the specified collector.
+     *
+     * @param anotherCollector the collector which content is added
+     */
+    @Override
+    public void add(Collector<Integer> anotherCollector) {
+        if (anotherCollector instanceof IntCollector) {
+            IntCollector another = (IntCollector) anotherCollector;
+            merge(another.ids, another.size);
+            return;
+        }
+        Collection<Integer> values = anotherCollector.getValues();
+        int[] others = new int[values.size()];
+        int count = 0;
+        for (Integer value : values) {
+            others[count++] = value;
+        }
+        Arrays.sort(others);
+        merge(others, distinct(others, count));
+    }
+
+    /**
+     * Gets all stored ids as a view that boxes each id.
+     *
+     * @return the stored ids in ascending order
+     */
+    @Override
+    public Collection<Integer> getValues() {
+        return new AbstractCollection<Integer>() {
+            @Override
+            public Iterator<Integer> iterator() {
+                return intIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return (o instanceof Integer) && IntCollector.this.contains((Integer) o);
+            }
+        };
+    }
+
+    /**
+     * Gets the lowest id.
+     *
+     * @return the lowest id or null if this collector is empty
+     */
+    @Override
+    public Integer getValue() {
+        return (size == 0) ? null : ids[0];
+    }
+
+    /**
+     * Removes the content of the specified collector.
+     *
+     * @param anotherCollector the collector which content is removed
+     * @return true if this collector is empty after this action else false
+     */
+    @Override
+    public boolean remove(Collector<Integer> anotherCollector) {
+        if (anotherCollector instanceof IntCollector) {
+            IntCollector another = (IntCollector) anotherCollector;
+            subtract(another.ids, another.size);
+        }
+        else {
+            for (Integer value : anotherCollector.getValues()) {
+                int index = Arrays.binarySearch(ids, 0, size, value);
+                if (index >= 0) {
+                    System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+                    size--;
+                }
+            }
+        }
+        return size == 0;
+    }
+
+    /**
+     * Gets the number of ids.
+     *
+     * @return the number of ids
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets the id at the specified index, the ids are in ascending order.
+     *
+     * @param index the index
+     * @return the id
+     * @throws IndexOutOfBoundsException if the index is negative or not lower than the size
+     */
+    public int getId(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+        return ids[index];
+    }
+
+    /**
+     * Tells if the id is stored.
+     *
+     * @param id the id
+     * @return true if the id is stored
+     */
+    public boolean contains(int id) {
+        return Arrays.binarySearch(ids, 0, size, id) >= 0;
+    }
+
+    /**
+     * Iterates over the ids in ascending order without boxing.
+     *
+     * @return an iterator over the ids
+     */
+    public PrimitiveIterator.OfInt intIterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int index;
+
+            @Override
+            public int nextInt() {
+                if (index >= size) {
+                    throw new NoSuchElementException();
+                }
+                return ids[index++];
+            }
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+        };
+    }
+
+    /**
+     * Performs the action for each id in ascending order without boxing.
+     *
+     * @param action the action
+     */
+    public void forEachId(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            action.accept(ids[i]);
+        }
+    }
+
+    /**
+     * Copies the ids.
+     *
+     * @return the ids in ascending order
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(ids, size);
+    }
+
+    /**
+     * Shrinks the internal array to the number of ids.
+     */
+    public void trimToSize() {
+        if (ids.length > size) {
+            ids = Arrays.copyOf(ids, size);
+        }
+    }
+
+    /**
+     * Merges sorted distinct ids into the sorted ids of this collector.
+     */
+    private void merge(int[] others, int otherSize) {
+        if (otherSize == 0) {
+            return;
+        }
+        int total = size + otherSize;
+        if (ids.length < total) {
+            ids = Arrays.copyOf(ids, Math.max(total, ids.length + (ids.length >> 1)));
+        }
+        // merge from the end, so no id is overwritten before it is read
+        int i = size - 1;
+        int j = otherSize - 1;
+        int k = total - 1;
+        while (j >= 0) {
+            if (i >= 0 && ids[i] > others[j]) {
+                ids[k--] = ids[i--];
+            }
+            else if (i >= 0 && ids[i] == others[j]) {
+                // duplicate, keep one
+                ids[k--] = ids[i--];
+                j--;
+            }
+            else {
+                ids[k--] = others[j--];
+            }
+        }
+        // the ids left in front are already in place, shift them with the rest if there were duplicates
+        int gap = k - i;
+        if (gap > 0) {
+            System.arraycopy(ids, k + 1, ids, i + 1, total - k - 1);
+        }
+        size = total - gap;
+    }
+
+    /**
+     * Removes sorted distinct ids from the sorted ids of this collector.
+     */
+    private void subtract(int[] others, int otherSize) {
+        int kept = 0;
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            int id = ids[i];
+            while (j < otherSize && others[j] < id) {
+                j++;
+            }
+            if (j < otherSize && others[j] == id) {
+                continue;
+            }
+            ids[kept++] = id;
+        }
+        size = kept;
+    }
+
+    /**
+     * Removes duplicates from the beginning of a sorted array.
+     *
+     * @return the number of distinct ids
+     */
+    private static int distinct(int[] sorted, int length) {
+        if (length == 0) {
+            return 0;
+        }
+        int count = 1;
+        for (int i = 1; i < length; i++) {
+            if (sorted[i] != sorted[count - 1]) {
+                sorted[count++] = sorted[i];
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,41 @@
+package com.valagja.search.ternarytree.prefix;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Implements {@link CollectorSerializer} for {@link IntCollector}.
+ *
+ * The ids are written as their number followed by the ids in ascending order.
+ */
+public class IntCollectorSerializer implements CollectorSerializer<IntCollector> {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    @Override
+    public void write(IntCollector entry, DataOutput out) throws IOException {
+        out.writeInt(entry.size());
+        for (int i = 0; i < entry.size(); i++) {
+            out.writeInt(entry.getId(i));
+        }
+    }
+
+    @Override
+    public IntCollector read(DataInput in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            throw new IOException("negative size " + size);
+        }
+        // grows while reading, a corrupt size runs into the end of the input instead of allocating it all
+        int[] ids = new int[Math.min(size, INITIAL_CAPACITY)];
+        for (int i = 0; i < size; i++) {
+            if (i == ids.length) {
+                ids = Arrays.copyOf(ids, (int) Math.min((long) ids.length * 2, size));
+            }
+            ids[i] = in.readInt();
+        }
+        return new IntCollector(ids);
+    }
+}
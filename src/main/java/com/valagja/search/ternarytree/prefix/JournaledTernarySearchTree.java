@@ -0,0 +1,583 @@
+package com.valagja.search.ternarytree.prefix;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * A {@link TernarySearchTree} whose put and remove calls are durable.
+ *
+ * Each change is appended as a binary record to a log file before put or remove returns.
+ * Writers that arrive while the log is being forced to disk are committed together by the next force,
+ * so many concurrent writers share one fsync (group commit).
+ * If a write or force fails, the writer that started it gets the exception, the partial batch is cut off the log
+ * and the next writer writes it again in front of its own records.
+ *
+ * The directory holds snapshots written by {@link TernarySearchTree#save(Path, CollectorSerializer)}
+ * and logs, both numbered by generation. Snapshot n contains every change of the logs before n.
+ * {@link #open(Path, CollectorSerializer)} loads the newest snapshot and replays the logs from its generation on.
+ * A record torn by a crash at the end of the last log is dropped.
+ *
+ * {@link #compact()} starts a new log generation and writes the snapshot of that generation,
+ * then deletes the older files. It runs in the background once the log grows beyond the threshold
+ * set by {@link #setCompactionThreshold(long)}. Only the switch to the new log holds up put and remove:
+ * the snapshot is rebuilt from the older snapshot and logs, which do not change anymore,
+ * so put, remove and find go on while it is written. That takes the memory of a second tree.
+ *
+ * All methods are thread-safe, a change is visible to find as soon as it is applied,
+ * even before its record is durable.
+ *
+ * @param <V> the value type a collector holds
+ * @param <Entry> an implementation of a collector
+ */
+public class JournaledTernarySearchTree<V, Entry extends Collector<V>> implements Closeable {
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String LOG_PREFIX = "log-";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+
+    private final TernarySearchTree<V, Entry> tree;
+    private final Path directory;
+    private final CollectorSerializer<Entry> serializer;
+    private final LogOpener logOpener;
+
+    // guards the log and everything below, never held while waiting for this
+    private final Object logLock = new Object();
+    private FileChannel log;
+    private long generation;
+    // records appended but not yet written to the log
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long appendedSequence;
+    private long durableSequence;
+    private boolean isSyncing;
+    private long logSize;
+    // set if a failed batch could not be cut off the log, no record may follow it
+    private IOException logFailure;
+
+    // serializes compactions, held while a snapshot is written
+    private final Object compactionLock = new Object();
+    // the generation of the newest snapshot, 0 if there is none
+    private long snapshotGeneration;
+
+    private long compactionThreshold;
+    private ExecutorService compactor;
+    private boolean isCompacting;
+    private IOException compactionFailure;
+
+    private JournaledTernarySearchTree(TernarySearchTree<V, Entry> tree, Path directory, CollectorSerializer<Entry> serializer,
+            LogOpener logOpener, FileChannel log, long snapshotGeneration, long generation) throws IOException {
+        this.tree = tree;
+        this.directory = directory;
+        this.serializer = serializer;
+        this.logOpener = logOpener;
+        this.log = log;
+        this.snapshotGeneration = snapshotGeneration;
+        this.generation = generation;
+        this.logSize = log.size();
+    }
+
+    /**
+     * Opens the tree stored in a directory, an empty directory gives an empty tree.
+     *
+     * @param directory the directory of the snapshots and logs, created if it does not exist
+     * @param serializer writes and reads the collectors
+     * @param <V> the value type a collector holds
+     * @param <Entry> an implementation of a collector
+     * @return the tree with all durable changes
+     * @throws IOException if reading fails or a file is corrupt
+     */
+    public static <V, Entry extends Collector<V>> JournaledTernarySearchTree<V, Entry> open(Path directory,
+            CollectorSerializer<Entry> serializer) throws IOException {
+        return open(directory, serializer, FileChannel::open);
+    }
+
+    static <V, Entry extends Collector<V>> JournaledTernarySearchTree<V, Entry> open(Path directory,
+            CollectorSerializer<Entry> serializer, LogOpener logOpener) throws IOException {
+        Files.createDirectories(directory);
+        List<Long> snapshots = generations(directory, SNAPSHOT_PREFIX);
+        long snapshotGeneration = snapshots.isEmpty() ? 0 : snapshots.get(snapshots.size() - 1);
+        long generation = snapshotGeneration;
+        TernarySearchTree<V, Entry> tree = loadSnapshot(directory, serializer, snapshotGeneration);
+
+        List<Long> logs = generations(directory, LOG_PREFIX);
+        for (int i = 0; i < logs.size(); i++) {
+            if (logs.get(i) >= generation) {
+                boolean isLast = i == logs.size() - 1;
+                replay(tree, directory.resolve(LOG_PREFIX + logs.get(i)), serializer, isLast);
+                generation = logs.get(i);
+            }
+        }
+        // only the loaded snapshot contains the older files, a newer log without its snapshot does not
+        forceDirectory(directory);
+        deleteOlderThan(directory, snapshotGeneration);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SNAPSHOT_PREFIX + "*" + TEMPORARY_SUFFIX)) {
+            for (Path file : files) {
+                // left by a compaction that did not finish
+                Files.delete(file);
+            }
+        }
+        FileChannel log = logOpener.open(directory.resolve(LOG_PREFIX + generation),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            // a record forced to a log is only durable if the log itself is
+            forceDirectory(directory);
+            log.position(log.size());
+        }
+        catch (IOException e) {
+            log.close();
+            throw e;
+        }
+        return new JournaledTernarySearchTree<>(tree, directory, serializer, logOpener, log, snapshotGeneration, generation);
+    }
+
+    /**
+     * Adds a word associated with a {@link Collector} and returns once the change is durable.
+     *
+     * @param word the key
+     * @param entry a collector with values
+     * @throws IOException if the log can not be written, the change is then applied but might be lost
+     * @see TernarySearchTree#put(String, Collector)
+     */
+    public void put(String word, Entry entry) throws IOException {
+        // empty or null not allowed
+        if (word == null || word.isEmpty()) {
+            return;
+        }
+        byte[] record = encode(PUT, word, entry);
+        long sequence;
+        synchronized (this) {
+            tree.put(word, entry);
+            sequence = append(record);
+        }
+        awaitDurable(sequence);
+        compactIfNeeded();
+    }
+
+    /**
+     * Removes a word and returns once the change is durable.
+     *
+     * @param word to be removed
+     * @param entry the associated collector with values to be removed
+     * @return true if the node in the tree was removed
+     * @throws IOException if the log can not be written, the change is then applied but might be lost
+     * @see TernarySearchTree#remove(String, Collector)
+     */
+    public boolean remove(String word, Entry entry) throws IOException {
+        // empty or null not allowed
+        if (word == null || word.isEmpty()) {
+            return false;
+        }
+        byte[] record = encode(REMOVE, word, entry);
+        long sequence;
+        boolean isRemoved;
+        synchronized (this) {
+            isRemoved = tree.remove(word, entry);
+            sequence = append(record);
+        }
+        awaitDurable(sequence);
+        compactIfNeeded();
+        return isRemoved;
+    }
+
+    /**
+     * Searches for collectors associated with words that starts with the specified prefix.
+     *
+     * @param prefix the search prefix
+     * @return a list of collectors, that contain values
+     */
+    public synchronized List<Entry> find(String prefix) {
+        return tree.find(prefix);
+    }
+
+    /**
+     * Searches for at most limit collectors associated with words that starts with the specified prefix.
+     *
+     * @param prefix the search prefix
+     * @param limit the maximal number of collectors
+     * @return a list of collectors, that contain values
+     */
+    public synchronized List<Entry> find(String prefix, int limit) {
+        return tree.find(prefix, limit);
+    }
+
+    /**
+     * Sets the size of the log that starts a compaction in the background.
+     *
+     * @param bytes the size of the log in bytes or 0 to never compact automatically
+     * @throws IllegalArgumentException if bytes is negative
+     */
+    public void setCompactionThreshold(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("threshold must not be negative");
+        }
+        synchronized (logLock) {
+            compactionThreshold = bytes;
+        }
+    }
+
+    /**
+     * Writes the tree as new snapshot and deletes the logs it contains.
+     *
+     * @throws IOException if writing fails, the older snapshot and logs are then kept
+     */
+    public void compact() throws IOException {
+        synchronized (compactionLock) {
+            long oldGeneration;
+            synchronized (logLock) {
+                // only a compaction changes the generation
+                oldGeneration = generation;
+            }
+            long newGeneration = oldGeneration + 1;
+            FileChannel newLog = logOpener.open(directory.resolve(LOG_PREFIX + newGeneration),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            try {
+                forceDirectory(directory);
+                synchronized (this) {
+                    // everything appended so far belongs to the old log
+                    awaitDurable(appendedSequence());
+                    synchronized (logLock) {
+                        log.close();
+                        log = newLog;
+                        generation = newGeneration;
+                        logSize = 0;
+                    }
+                }
+            }
+            catch (IOException e) {
+                newLog.close();
+                throw e;
+            }
+
+            // the tree as it was at the switch, from files no writer touches anymore
+            TernarySearchTree<V, Entry> frozen = loadSnapshot(directory, serializer, snapshotGeneration);
+            for (long older : generations(directory, LOG_PREFIX)) {
+                if (older >= snapshotGeneration && older <= oldGeneration) {
+                    replay(frozen, directory.resolve(LOG_PREFIX + older), serializer, false);
+                }
+            }
+            Path temporary = directory.resolve(SNAPSHOT_PREFIX + newGeneration + TEMPORARY_SUFFIX);
+            frozen.save(temporary, serializer);
+            Files.move(temporary, directory.resolve(SNAPSHOT_PREFIX + newGeneration), StandardCopyOption.ATOMIC_MOVE);
+            // the older files must not be gone before the new snapshot is in place
+            forceDirectory(directory);
+            deleteOlderThan(directory, newGeneration);
+            snapshotGeneration = newGeneration;
+        }
+    }
+
+    /**
+     * Waits for a running compaction and closes the log.
+     *
+     * @throws IOException if closing fails or the last compaction in the background failed
+     */
+    @Override
+    public void close() throws IOException {
+        ExecutorService executor;
+        synchronized (logLock) {
+            executor = compactor;
+        }
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for the compaction");
+            }
+        }
+        synchronized (this) {
+            awaitDurable(appendedSequence());
+            synchronized (logLock) {
+                log.close();
+                if (compactionFailure != null) {
+                    throw compactionFailure;
+                }
+            }
+        }
+    }
+
+    private long appendedSequence() {
+        synchronized (logLock) {
+            return appendedSequence;
+        }
+    }
+
+    /**
+     * @return the sequence number of the record
+     */
+    private long append(byte[] record) {
+        synchronized (logLock) {
+            pending.write(record, 0, record.length);
+            return ++appendedSequence;
+        }
+    }
+
+    /**
+     * Waits until the record with the sequence number is forced to disk, forcing it itself if no other thread does.
+     *
+     * If the write or the force fails, the log is cut back to its size before the batch
+     * and the batch is put back in front of the pending records, so the next writer retries it.
+     */
+    private void awaitDurable(long sequence) throws IOException {
+        byte[] batch;
+        long batchSequence;
+        long batchStart;
+        FileChannel target;
+        synchronized (logLock) {
+            while (durableSequence < sequence && isSyncing) {
+                try {
+                    logLock.wait();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("interrupted while waiting for the log");
+                }
+            }
+            if (durableSequence >= sequence) {
+                // committed by another writer
+                return;
+            }
+            if (logFailure != null) {
+                throw new IOException("log " + generation + " is unusable", logFailure);
+            }
+            // commit all records appended so far, not only the own one
+            isSyncing = true;
+            batch = pending.toByteArray();
+            pending.reset();
+            batchSequence = appendedSequence;
+            batchStart = logSize;
+            target = log;
+        }
+        boolean isWritten = false;
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(batch);
+            while (buffer.hasRemaining()) {
+                target.write(buffer);
+            }
+            target.force(false);
+            isWritten = true;
+        }
+        finally {
+            IOException truncateFailure = null;
+            if (!isWritten) {
+                try {
+                    // a partial record must not stay in front of the following ones
+                    target.truncate(batchStart);
+                }
+                catch (IOException e) {
+                    truncateFailure = e;
+                }
+            }
+            synchronized (logLock) {
+                isSyncing = false;
+                if (isWritten) {
+                    durableSequence = batchSequence;
+                    logSize += batch.length;
+                }
+                else {
+                    // keep the order of the records, the failed batch goes first
+                    byte[] later = pending.toByteArray();
+                    pending.reset();
+                    pending.write(batch, 0, batch.length);
+                    pending.write(later, 0, later.length);
+                    if (truncateFailure != null) {
+                        logFailure = truncateFailure;
+                    }
+                }
+                logLock.notifyAll();
+            }
+        }
+    }
+
+    private void compactIfNeeded() {
+        synchronized (logLock) {
+            if (compactionThreshold == 0 || logSize < compactionThreshold || isCompacting) {
+                return;
+            }
+            isCompacting = true;
+            if (compactor == null) {
+                compactor = Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "ternary-search-tree-compactor");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            compactor.execute(() -> {
+                IOException failure = null;
+                try {
+                    compact();
+                }
+                catch (IOException e) {
+                    failure = e;
+                }
+                synchronized (logLock) {
+                    isCompacting = false;
+                    compactionFailure = failure;
+                }
+            });
+        }
+    }
+
+    /**
+     * Encodes a change as length, payload and CRC32 of the payload.
+     */
+    private byte[] encode(byte type, String word, Entry entry) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(16 + 2 * word.length());
+        DataOutputStream out = new DataOutputStream(payload);
+        out.writeByte(type);
+        out.writeInt(word.length());
+        out.writeChars(word);
+        serializer.write(entry, out);
+        out.flush();
+        byte[] bytes = payload.toByteArray();
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes);
+
+        ByteArrayOutputStream record = new ByteArrayOutputStream(bytes.length + 12);
+        DataOutputStream recordOut = new DataOutputStream(record);
+        recordOut.writeInt(bytes.length);
+        recordOut.write(bytes);
+        recordOut.writeLong(checksum.getValue());
+        recordOut.flush();
+        return record.toByteArray();
+    }
+
+    private static <V, Entry extends Collector<V>> TernarySearchTree<V, Entry> loadSnapshot(Path directory,
+            CollectorSerializer<Entry> serializer, long generation) throws IOException {
+        if (generation == 0) {
+            // no compaction has run yet
+            return new TernarySearchTree<>();
+        }
+        return TernarySearchTree.load(directory.resolve(SNAPSHOT_PREFIX + generation), serializer);
+    }
+
+    private static <V, Entry extends Collector<V>> void replay(TernarySearchTree<V, Entry> tree, Path path,
+            CollectorSerializer<Entry> serializer, boolean isLast) throws IOException {
+        long validSize = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            while (true) {
+                byte[] payload;
+                try {
+                    int length = in.readInt();
+                    if (length < 0 || validSize + 12 + length > channel.size()) {
+                        throw new EOFException("record longer than the log");
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    CRC32 checksum = new CRC32();
+                    checksum.update(payload);
+                    if (in.readLong() != checksum.getValue()) {
+                        throw new EOFException("checksum mismatch");
+                    }
+                }
+                catch (EOFException e) {
+                    if (validSize == channel.size()) {
+                        // all records replayed
+                        return;
+                    }
+                    if (!isLast) {
+                        throw new IOException("corrupt log " + path + " at " + validSize, e);
+                    }
+                    // the last record was torn by a crash, it was never acknowledged
+                    channel.truncate(validSize);
+                    channel.force(false);
+                    return;
+                }
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                byte type = record.readByte();
+                char[] word = new char[record.readInt()];
+                for (int i = 0; i < word.length; i++) {
+                    word[i] = record.readChar();
+                }
+                Entry entry = serializer.read(record);
+                if (type == PUT) {
+                    tree.put(new String(word), entry);
+                }
+                else if (type == REMOVE) {
+                    tree.remove(new String(word), entry);
+                }
+                else {
+                    throw new IOException("unknown record type " + type + " in " + path);
+                }
+                validSize += 12 + payload.length;
+            }
+        }
+    }
+
+    /**
+     * @return the generations of the complete files with the prefix in ascending order
+     */
+    private static List<Long> generations(Path directory, String prefix) throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TEMPORARY_SUFFIX)) {
+                    continue;
+                }
+                try {
+                    generations.add(Long.parseLong(name.substring(prefix.length())));
+                }
+                catch (NumberFormatException e) {
+                    // not one of our files
+                }
+            }
+        }
+        Collections.sort(generations);
+        return generations;
+    }
+
+    /**
+     * Forces the entries of the directory to disk, a created, moved or deleted file is durable only after that.
+     */
+    private static void forceDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    private static void deleteOlderThan(Path directory, long generation) throws IOException {
+        for (String prefix : new String[]{SNAPSHOT_PREFIX, LOG_PREFIX}) {
+            for (long older : generations(directory, prefix)) {
+                if (older < generation) {
+                    Files.deleteIfExists(directory.resolve(prefix + older));
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens the log files, tests open channels that fail on demand.
+     */
+    interface LogOpener {
+
+        FileChannel open(Path path, OpenOption... options) throws IOException;
+    }
+}
@@ -0,0 +1,380 @@
+package com.valagja.search.ternarytree.prefix;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Implementation of a read-only ternary search tree for prefix search served from a memory-mapped file.
+ *
+ * The file is written by {@link #build(TernarySearchTree, Path, CollectorSerializer)} from a {@link TernarySearchTree}.
+ * It holds the nodes in pre-order as fixed-width records of the key, the indexes of the lower, equal and higher kid
+ * and the offset of the entry in the values region that follows the nodes.
+ * The tree reads the records straight from the mapped file, no node object is created,
+ * so opening is fast, the heap does not grow with the tree and processes mapping the same file share the page cache.
+ * Only the collectors of a result are read by the {@link CollectorSerializer}, each time they are found.
+ *
+ * Unlike {@link TernarySearchTree#save(Path, CollectorSerializer)} there is no checksum, it would have to read the whole file on open.
+ *
+ * The result of find has the same order as in the tree the file was built from.
+ * Any number of threads can search at the same time.
+ *
+ * @param <V> the value type a collector holds
+ * @param <Entry> an implementation of a collector
+ */
+public class MappedTernarySearchTree<V, Entry extends Collector<V>> {
+
+    static final int MAGIC = 0x5453544D;
+    static final int VERSION = 1;
+
+    // magic, version, node count and size of the values region
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 4;
+
+    // key with padding, lower, equal and higher kid, entry offset
+    private static final int RECORD_SIZE = 2 + 2 + 4 + 4 + 4 + 4;
+    private static final int KEY = 0;
+    private static final int LOWER_KID = 4;
+    private static final int EQUAL_KID = 8;
+    private static final int HIGHER_KID = 12;
+    private static final int ENTRY = 16;
+
+    // the root has index 0 and is nobody's kid, so 0 means no kid
+    private static final int NIL = 0;
+    private static final int NO_ENTRY = -1;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final ByteBuffer nodes;
+    private final ByteBuffer values;
+    private final int nodeCount;
+    private final CollectorSerializer<Entry> serializer;
+
+    private MappedTernarySearchTree(ByteBuffer nodes, ByteBuffer values, int nodeCount, CollectorSerializer<Entry> serializer) {
+        this.nodes = nodes;
+        this.values = values;
+        this.nodeCount = nodeCount;
+        this.serializer = serializer;
+    }
+
+    /**
+     * Writes the nodes and collectors of a tree into a file that can be opened by {@link #open(Path, CollectorSerializer)}.
+     *
+     * @param tree the tree, not changed
+     * @param path the file, replaced if it exists
+     * @param serializer writes each collector
+     * @param <V> the value type a collector holds
+     * @param <Entry> an implementation of a collector
+     * @throws IOException if writing fails or the tree is too large to be mapped
+     */
+    public static <V, Entry extends Collector<V>> void build(TernarySearchTree<V, Entry> tree, Path path,
+            CollectorSerializer<Entry> serializer) throws IOException {
+        TernaryNode<V, Entry> root = tree.getRoot();
+        int nodeCount = tree.getDepthStatistics().getNodeCount();
+        long nodesSize = (long) nodeCount * RECORD_SIZE;
+        if (nodesSize > Integer.MAX_VALUE) {
+            throw new IOException("too many nodes to be mapped: " + nodeCount);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer records = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE, nodesSize);
+            // the values follow the records, written while the records are filled
+            channel.position(HEADER_SIZE + nodesSize);
+            // not closed, that would close the channel before the header is written
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+            if (root != null) {
+                // avoid recursion, the position of the kid field of the parent is pushed along with each node
+                Deque<TernaryNode<V, Entry>> deque = new ArrayDeque<>();
+                Deque<Integer> kidFields = new ArrayDeque<>();
+                deque.push(root);
+                kidFields.push(-1);
+                int index = 0;
+                while (!deque.isEmpty()) {
+                    TernaryNode<V, Entry> currentNode = deque.pop();
+                    int kidField = kidFields.pop();
+                    if (kidField >= 0) {
+                        records.putInt(kidField, index);
+                    }
+                    int base = index * RECORD_SIZE;
+                    records.putChar(base + KEY, currentNode.getKey());
+                    records.putInt(base + LOWER_KID, NIL);
+                    records.putInt(base + EQUAL_KID, NIL);
+                    records.putInt(base + HIGHER_KID, NIL);
+                    if (currentNode.getEntry() == null) {
+                        records.putInt(base + ENTRY, NO_ENTRY);
+                    }
+                    else {
+                        records.putInt(base + ENTRY, out.size());
+                        serializer.write(currentNode.getEntry(), out);
+                        // the size stops counting at the maximal int
+                        if (out.size() == Integer.MAX_VALUE) {
+                            throw new IOException("too many values to be mapped");
+                        }
+                    }
+                    if (currentNode.getHigherKid() != null) {
+                        deque.push(currentNode.getHigherKid());
+                        kidFields.push(base + HIGHER_KID);
+                    }
+                    if (currentNode.getEqualKid() != null) {
+                        deque.push(currentNode.getEqualKid());
+                        kidFields.push(base + EQUAL_KID);
+                    }
+                    if (currentNode.getLowerKid() != null) {
+                        deque.push(currentNode.getLowerKid());
+                        kidFields.push(base + LOWER_KID);
+                    }
+                    index++;
+                }
+            }
+            out.flush();
+            records.force();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(nodeCount).putInt(out.size());
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Maps a file written by {@link #build(TernarySearchTree, Path, CollectorSerializer)}.
+     *
+     * Only the header is read, the nodes are read from the page cache as they are searched.
+     * The file must not be changed while the tree is used.
+     *
+     * @param path the file
+     * @param serializer reads the collectors of a result
+     * @param <V> the value type a collector holds
+     * @param <Entry> an implementation of a collector
+     * @return the read-only tree
+     * @throws IOException if reading fails, the version is not supported or the size of the file does not match
+     */
+    public static <V, Entry extends Collector<V>> MappedTernarySearchTree<V, Entry> open(Path path,
+            CollectorSerializer<Entry> serializer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    throw new IOException("file too short for the header");
+                }
+            }
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException("not a mapped ternary search tree");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("unsupported version " + version);
+            }
+            int nodeCount = header.getInt();
+            int valuesSize = header.getInt();
+            long nodesSize = (long) nodeCount * RECORD_SIZE;
+            if (nodeCount < 0 || valuesSize < 0 || channel.size() != HEADER_SIZE + nodesSize + valuesSize) {
+                throw new IOException("corrupt file, the size does not match the header");
+            }
+            // the mapping stays valid after the channel is closed
+            ByteBuffer nodes = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, nodesSize);
+            ByteBuffer values = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + nodesSize, valuesSize);
+            return new MappedTernarySearchTree<>(nodes, values, nodeCount, serializer);
+        }
+    }
+
+    /**
+     * Gets the number of nodes.
+     *
+     * @return the number of nodes
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Gets the collector associated with a word.
+     *
+     * @param word the word
+     * @return the collector or null if the word was not added
+     * @throws IOException if the collector can not be read
+     */
+    public Entry get(String word) throws IOException {
+        // empty or null not allowed
+        if (word == null || word.isEmpty()) {
+            return null;
+        }
+        int node = getNode(word);
+        if (node < 0 || entryOffset(node) == NO_ENTRY) {
+            return null;
+        }
+        return readEntry(entryOffset(node));
+    }
+
+    /**
+     * Searches for collectors associated with words that starts with the specified prefix.
+     *
+     * @param prefix the search prefix
+     * @return a list of collectors, that contain values
+     * @throws IOException if a collector can not be read
+     */
+    public List<Entry> find(String prefix) throws IOException {
+        return find(prefix, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Searches for at most limit collectors associated with words that starts with the specified prefix.
+     *
+     * The traversal stops as soon as the limit is reached.
+     *
+     * @param prefix the search prefix
+     * @param limit the maximal number of collectors
+     * @return a list of collectors, that contain values
+     * @throws IOException if a collector can not be read
+     * @throws IllegalArgumentException if limit is negative
+     */
+    public List<Entry> find(String prefix, int limit) throws IOException {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative");
+        }
+        // empty or null not allowed
+        if (prefix == null || prefix.isEmpty() || limit == 0) {
+            return new ArrayList<>(0);
+        }
+        int currentNode = getNode(prefix);
+        if (currentNode < 0) {
+            // nothing found
+            return new ArrayList<>(0);
+        }
+        List<Entry> result = new ArrayList<>();
+        if (entryOffset(currentNode) != NO_ENTRY) {
+            result.add(readEntry(entryOffset(currentNode)));
+        }
+        // are there more matches for the prefix?
+        // collect from subtree
+        int equalKid = kid(currentNode, EQUAL_KID);
+        if (equalKid != NIL && result.size() < limit) {
+            traversePreOrder(equalKid, result, limit);
+        }
+        return result;
+    }
+
+    /**
+     * @return the index of the node of the last character of the prefix or -1
+     */
+    private int getNode(String prefix) {
+        if (nodeCount == 0) {
+            return -1;
+        }
+        int currentNode = 0;
+        int counter = 0;
+        while (true) {
+            char key = prefix.charAt(counter);
+            char nodeKey = nodes.getChar(currentNode * RECORD_SIZE + KEY);
+            if (key < nodeKey) {
+                currentNode = kid(currentNode, LOWER_KID);
+            }
+            else if (key > nodeKey) {
+                currentNode = kid(currentNode, HIGHER_KID);
+            }
+            else if (counter < prefix.length() - 1) {
+                currentNode = kid(currentNode, EQUAL_KID);
+                counter++;
+            }
+            else {
+                return currentNode;
+            }
+            if (currentNode == NIL) {
+                return -1;
+            }
+        }
+    }
+
+    private void traversePreOrder(int currentNode, List<Entry> result, int limit) throws IOException {
+        // avoid recursion and boxing
+        int[] stack = new int[32];
+        int size = 0;
+        stack[size++] = currentNode;
+        while (size > 0) {
+            currentNode = stack[--size];
+            int offset = entryOffset(currentNode);
+            if (offset != NO_ENTRY) {
+                result.add(readEntry(offset));
+                if (result.size() == limit) {
+                    // early termination, the rest of the subtree is not visited
+                    return;
+                }
+            }
+            if (size + 3 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            int kid = kid(currentNode, HIGHER_KID);
+            if (kid != NIL) {
+                stack[size++] = kid;
+            }
+            kid = kid(currentNode, EQUAL_KID);
+            if (kid != NIL) {
+                stack[size++] = kid;
+            }
+            kid = kid(currentNode, LOWER_KID);
+            if (kid != NIL) {
+                stack[size++] = kid;
+            }
+        }
+    }
+
+    private int kid(int node, int field) {
+        return nodes.getInt(node * RECORD_SIZE + field);
+    }
+
+    private int entryOffset(int node) {
+        return nodes.getInt(node * RECORD_SIZE + ENTRY);
+    }
+
+    private Entry readEntry(int offset) throws IOException {
+        // a view of its own, the position of the shared buffer is never moved
+        ByteBuffer buffer = values.duplicate();
+        buffer.position(offset);
+        return serializer.read(new DataInputStream(new ByteBufferInputStream(buffer)));
+    }
+
+    /**
+     * Reads from a buffer, from its position up to its limit.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
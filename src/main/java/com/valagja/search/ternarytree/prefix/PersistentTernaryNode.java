@@ -0,0 +1,66 @@
+package com.valagja.search.ternarytree.prefix;
+
+/**
+ * The node of the {@link PersistentTernarySearchTree}.
+ *
+ * A node never changes after it is built, a change creates a copy. There is no parent link,
+ * so one node can be shared by many versions of the tree.
+ *
+ * @param <V> type of the value of the collector
+ * @param <Entry> type of the collector
+ */
+final class PersistentTernaryNode<V, Entry extends Collector<V>> {
+
+    private final char key;
+
+    private final Entry entry;
+
+    private final PersistentTernaryNode<V, Entry> lowerKid;
+    private final PersistentTernaryNode<V, Entry> equalKid;
+    private final PersistentTernaryNode<V, Entry> higherKid;
+
+    PersistentTernaryNode(char key, Entry entry, PersistentTernaryNode<V, Entry> lowerKid,
+            PersistentTernaryNode<V, Entry> equalKid, PersistentTernaryNode<V, Entry> higherKid) {
+        this.key = key;
+        this.entry = entry;
+        this.lowerKid = lowerKid;
+        this.equalKid = equalKid;
+        this.higherKid = higherKid;
+    }
+
+    char getKey() {
+        return key;
+    }
+
+    Entry getEntry() {
+        return entry;
+    }
+
+    PersistentTernaryNode<V, Entry> getLowerKid() {
+        return lowerKid;
+    }
+
+    PersistentTernaryNode<V, Entry> getEqualKid() {
+        return equalKid;
+    }
+
+    PersistentTernaryNode<V, Entry> getHigherKid() {
+        return higherKid;
+    }
+
+    PersistentTernaryNode<V, Entry> withEntry(Entry entry) {
+        return new PersistentTernaryNode<>(key, entry, lowerKid, equalKid, higherKid);
+    }
+
+    PersistentTernaryNode<V, Entry> withLowerKid(PersistentTernaryNode<V, Entry> lowerKid) {
+        return new PersistentTernaryNode<>(key, entry, lowerKid, equalKid, higherKid);
+    }
+
+    PersistentTernaryNode<V, Entry> withEqualKid(PersistentTernaryNode<V, Entry> equalKid) {
+        return new PersistentTernaryNode<>(key, entry, lowerKid, equalKid, higherKid);
+    }
+
+    PersistentTernaryNode<V, Entry> withHigherKid(PersistentTernaryNode<V, Entry> higherKid) {
+        return new PersistentTernaryNode<>(key, entry, lowerKid, equalKid, higherKid);
+    }
+}
@@ -0,0 +1,357 @@
+package com.valagja.search.ternarytree.prefix;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Implementation of an immutable ternary search tree for prefix search.
+ *
+ * Put and remove do not change this tree, they return a new version. Only the nodes on the path
+ * from the root to the changed node are copied, all other nodes are shared with the previous version.
+ * Any version can therefore be kept as consistent snapshot as long as needed and read by many threads
+ * without locking. {@link VersionedTernarySearchTree} publishes the versions for concurrent readers.
+ *
+ * The collectors are mutable, so a collector that is already part of a version is never changed:
+ * put and remove change a copy made by the copier given to {@link #empty(UnaryOperator)}.
+ * The collectors given to put must not be changed afterwards either.
+ *
+ * For the same sequence of put calls the result of find has the same order as in {@link TernarySearchTree}.
+ *
+ * @param <V> the value type a collector holds
+ * @param <Entry> an implementation of a collector
+ */
+public final class PersistentTernarySearchTree<V, Entry extends Collector<V>> {
+
+    // which kid of the parent a node is
+    private static final int LOWER = 0;
+    private static final int EQUAL = 1;
+    private static final int HIGHER = 2;
+
+    private final PersistentTernaryNode<V, Entry> root;
+    private final UnaryOperator<Entry> copier;
+
+    private PersistentTernarySearchTree(PersistentTernaryNode<V, Entry> root, UnaryOperator<Entry> copier) {
+        this.root = root;
+        this.copier = copier;
+    }
+
+    /**
+     * Creates an empty tree.
+     *
+     * @param copier creates a copy of a collector, that can be changed without changing the original
+     * @param <V> the value type a collector holds
+     * @param <Entry> an implementation of a collector
+     * @return an empty tree
+     */
+    public static <V, Entry extends Collector<V>> PersistentTernarySearchTree<V, Entry> empty(UnaryOperator<Entry> copier) {
+        if (copier == null) {
+            throw new IllegalArgumentException("copier must not be null");
+        }
+        return new PersistentTernarySearchTree<>(null, copier);
+    }
+
+    /**
+     * Tells if this version holds no word.
+     *
+     * @return true if there is no word
+     */
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    /**
+     * Tells if this version holds a word with a collector.
+     *
+     * @param word the key
+     * @return true if the word was added and not removed
+     */
+    public boolean contains(String word) {
+        // empty or null not allowed
+        if (word == null || word.isEmpty()) {
+            return false;
+        }
+        PersistentTernaryNode<V, Entry> node = get(word);
+        return node != null && node.getEntry() != null;
+    }
+
+    /**
+     * Adds a word associated with a {@link Collector} to a new version of this tree.
+     *
+     * If the word was previously added, the new version holds a copy of the existing collector
+     * with the specified collector added to it.
+     *
+     * @param word the key
+     * @param entry a collector with values
+     * @return the new version or this tree if the word is empty or null
+     */
+    public PersistentTernarySearchTree<V, Entry> put(String word, Entry entry) {
+        // empty or null not allowed
+        if (word == null || word.isEmpty()) {
+            return this;
+        }
+        List<PersistentTernaryNode<V, Entry>> path = new ArrayList<>();
+        int kind = EQUAL;
+        PersistentTernaryNode<V, Entry> currentNode = root;
+        int counter = 0;
+        while (currentNode != null) {
+            char key = word.charAt(counter);
+            if (key < currentNode.getKey()) {
+                kind = LOWER;
+            }
+            else if (key > currentNode.getKey()) {
+                kind = HIGHER;
+            }
+            else if (counter < word.length() - 1) {
+                kind = EQUAL;
+                counter++;
+            }
+            else {
+                break;
+            }
+            path.add(currentNode);
+            currentNode = getKid(currentNode, kind);
+        }
+
+        PersistentTernaryNode<V, Entry> newNode;
+        if (currentNode == null) {
+            newNode = newChain(word, counter, entry);
+        }
+        else if (currentNode.getEntry() == null) {
+            newNode = currentNode.withEntry(entry);
+        }
+        else {
+            Entry existingEntry = copier.apply(currentNode.getEntry());
+            existingEntry.add(entry);
+            newNode = currentNode.withEntry(existingEntry);
+        }
+        return new PersistentTernarySearchTree<>(copyPath(path, kind, newNode), copier);
+    }
+
+    /**
+     * Removes a word from a new version of this tree.
+     *
+     * If the word was previously added, the specified {@link Collector} is removed from a copy of
+     * the existing collector. The word is removed if the copy is then empty.
+     *
+     * @param word to be removed
+     * @param entry the associated collector with values to be removed
+     * @return the new version or this tree if the word was not found
+     */
+    public PersistentTernarySearchTree<V, Entry> remove(String word, Entry entry) {
+        // empty or null not allowed
+        if (word == null || word.isEmpty()) {
+            return this;
+        }
+        List<PersistentTernaryNode<V, Entry>> path = new ArrayList<>();
+        int kind = EQUAL;
+        PersistentTernaryNode<V, Entry> currentNode = root;
+        int counter = 0;
+        while (currentNode != null) {
+            char key = word.charAt(counter);
+            if (key < currentNode.getKey()) {
+                kind = LOWER;
+            }
+            else if (key > currentNode.getKey()) {
+                kind = HIGHER;
+            }
+            else if (counter < word.length() - 1) {
+                kind = EQUAL;
+                counter++;
+            }
+            else {
+                break;
+            }
+            path.add(currentNode);
+            currentNode = getKid(currentNode, kind);
+        }
+        if (currentNode == null || currentNode.getEntry() == null) {
+            // nothing found to remove
+            return this;
+        }
+
+        Entry existingEntry = copier.apply(currentNode.getEntry());
+        PersistentTernaryNode<V, Entry> newNode;
+        if (existingEntry.remove(entry)) {
+            newNode = prune(currentNode.withEntry(null));
+        }
+        else {
+            newNode = currentNode.withEntry(existingEntry);
+        }
+        return new PersistentTernarySearchTree<>(copyPath(path, kind, newNode), copier);
+    }
+
+    /**
+     * Searches for collectors associated with words that starts with the specified prefix.
+     *
+     * @param prefix the search prefix
+     * @return a list of collectors, that contain values
+     */
+    public List<Entry> find(String prefix) {
+        return find(prefix, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Searches for at most limit collectors associated with words that starts with the specified prefix.
+     *
+     * @param prefix the search prefix
+     * @param limit the maximal number of collectors
+     * @return a list of collectors, that contain values
+     * @throws IllegalArgumentException if limit is negative
+     */
+    public List<Entry> find(String prefix, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative");
+        }
+        // empty or null not allowed
+        if (prefix == null || prefix.isEmpty() || limit == 0) {
+            return new ArrayList<>(0);
+        }
+        PersistentTernaryNode<V, Entry> currentNode = get(prefix);
+        if (currentNode == null) {
+            // nothing found
+            return new ArrayList<>(0);
+        }
+        List<Entry> result = new ArrayList<>();
+        if (currentNode.getEntry() != null) {
+            result.add(currentNode.getEntry());
+        }
+        // are there more matches for the prefix?
+        // collect from subtree
+        if (currentNode.getEqualKid() != null && result.size() < limit) {
+            traversePreOrder(currentNode.getEqualKid(), result, limit);
+        }
+        return result;
+    }
+
+    private PersistentTernaryNode<V, Entry> get(String prefix) {
+        PersistentTernaryNode<V, Entry> currentNode = root;
+        int counter = 0;
+        while (currentNode != null) {
+            char key = prefix.charAt(counter);
+            if (key < currentNode.getKey()) {
+                currentNode = currentNode.getLowerKid();
+            }
+            else if (key > currentNode.getKey()) {
+                currentNode = currentNode.getHigherKid();
+            }
+            else if (counter < prefix.length() - 1) {
+                currentNode = currentNode.getEqualKid();
+                counter++;
+            }
+            else {
+                return currentNode;
+            }
+        }
+        return null;
+    }
+
+    private void traversePreOrder(PersistentTernaryNode<V, Entry> currentNode, List<Entry> result, int limit) {
+        // avoid recursion
+        Deque<PersistentTernaryNode<V, Entry>> deque = new ArrayDeque<>();
+        deque.push(currentNode);
+        while (!deque.isEmpty()) {
+            currentNode = deque.pop();
+            if (currentNode.getEntry() != null) {
+                result.add(currentNode.getEntry());
+                if (result.size() == limit) {
+                    // early termination, the rest of the subtree is not visited
+                    return;
+                }
+            }
+            if (currentNode.getHigherKid() != null) {
+                deque.push(currentNode.getHigherKid());
+            }
+            if (currentNode.getEqualKid() != null) {
+                deque.push(currentNode.getEqualKid());
+            }
+            if (currentNode.getLowerKid() != null) {
+                deque.push(currentNode.getLowerKid());
+            }
+        }
+    }
+
+    /**
+     * Builds the nodes of the rest of the word.
+     */
+    private PersistentTernaryNode<V, Entry> newChain(String word, int counter, Entry entry) {
+        PersistentTernaryNode<V, Entry> node = new PersistentTernaryNode<>(word.charAt(word.length() - 1), entry, null, null, null);
+        for (int i = word.length() - 2; i >= counter; i--) {
+            node = new PersistentTernaryNode<>(word.charAt(i), null, null, node, null);
+        }
+        return node;
+    }
+
+    /**
+     * Copies the path from the root down to the changed node.
+     *
+     * @param path the nodes from the root down to the parent of the changed node
+     * @param kind which kid of the last node on the path the changed node is
+     * @param newNode the changed node, null if it was removed
+     * @return the new root
+     */
+    private PersistentTernaryNode<V, Entry> copyPath(List<PersistentTernaryNode<V, Entry>> path, int kind,
+            PersistentTernaryNode<V, Entry> newNode) {
+        for (int i = path.size() - 1; i >= 0; i--) {
+            PersistentTernaryNode<V, Entry> parent = path.get(i);
+            if (i < path.size() - 1) {
+                // the kid on the path is never null, so it is found by identity
+                PersistentTernaryNode<V, Entry> oldKid = path.get(i + 1);
+                kind = (parent.getLowerKid() == oldKid) ? LOWER : (parent.getEqualKid() == oldKid) ? EQUAL : HIGHER;
+            }
+            switch (kind) {
+                case LOWER:
+                    newNode = parent.withLowerKid(newNode);
+                    break;
+                case HIGHER:
+                    newNode = parent.withHigherKid(newNode);
+                    break;
+                default:
+                    newNode = prune(parent.withEqualKid(newNode));
+            }
+        }
+        return newNode;
+    }
+
+    /**
+     * Removes a node that neither holds an entry nor has an equal kid.
+     *
+     * @return the node itself if it is still needed, else what takes its place
+     */
+    private PersistentTernaryNode<V, Entry> prune(PersistentTernaryNode<V, Entry> node) {
+        if (node.getEntry() != null || node.getEqualKid() != null) {
+            return node;
+        }
+        if (node.getLowerKid() == null) {
+            return node.getHigherKid();
+        }
+        if (node.getHigherKid() == null) {
+            return node.getLowerKid();
+        }
+        // replace the node by the lowest sibling of the higher subtree
+        Deque<PersistentTernaryNode<V, Entry>> deque = new ArrayDeque<>();
+        PersistentTernaryNode<V, Entry> lowest = node.getHigherKid();
+        while (lowest.getLowerKid() != null) {
+            deque.push(lowest);
+            lowest = lowest.getLowerKid();
+        }
+        PersistentTernaryNode<V, Entry> higherKid = lowest.getHigherKid();
+        while (!deque.isEmpty()) {
+            higherKid = deque.pop().withLowerKid(higherKid);
+        }
+        return new PersistentTernaryNode<>(lowest.getKey(), lowest.getEntry(), node.getLowerKid(), lowest.getEqualKid(), higherKid);
+    }
+
+    private PersistentTernaryNode<V, Entry> getKid(PersistentTernaryNode<V, Entry> parent, int kind) {
+        switch (kind) {
+            case LOWER:
+                return parent.getLowerKid();
+            case HIGHER:
+                return parent.getHigherKid();
+            default:
+                return parent.getEqualKid();
+        }
+    }
+}
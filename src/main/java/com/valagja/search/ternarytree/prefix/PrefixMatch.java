@@ -0,0 +1,61 @@
+package com.valagja.search.ternarytree.prefix;
+
+/**
+ * A word of the tree found at a position of an input text by {@link TernarySearchTree#longestPrefixOf(CharSequence, int)},
+ * {@link TernarySearchTree#prefixesOf(CharSequence, int)} or a {@link TokenScanner}, with its collector.
+ *
+ * @param <Entry> type of the collector
+ */
+public class PrefixMatch<Entry> {
+
+    private final String word;
+    private final Entry entry;
+    private final int offset;
+
+    public PrefixMatch(String word, Entry entry, int offset) {
+        this.word = word;
+        this.entry = entry;
+        this.offset = offset;
+    }
+
+    /**
+     * Gets the found word.
+     *
+     * @return the word
+     */
+    public String getWord() {
+        return word;
+    }
+
+    /**
+     * Gets the collector associated with the word.
+     *
+     * @return the collector
+     */
+    public Entry getEntry() {
+        return entry;
+    }
+
+    /**
+     * Gets the position of the first character of the word in the input text.
+     *
+     * @return the offset
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Gets the position after the last character of the word in the input text.
+     *
+     * @return the offset plus the length of the word
+     */
+    public int getEnd() {
+        return offset + word.length();
+    }
+
+    @Override
+    public String toString() {
+        return "PrefixMatch{word=" + word + ", offset=" + offset + "}";
+    }
+}
@@ -0,0 +1,124 @@
+package com.valagja.search.ternarytree.prefix;
+
+import java.util.ArrayDeque;
+import java.util.ConcurrentModificationException;
+import java.util.Deque;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A lazy {@link Spliterator} over the collectors of all words that start with a prefix.
+ *
+ * The collectors are visited in the same order as {@link TernarySearchTree#find(String)} returns them,
+ * but one by one while traversing, no list is created.
+ *
+ * The spliterator is fail-fast: if the tree is modified by put or remove after the spliterator was created,
+ * the next advance throws a {@link ConcurrentModificationException}.
+ *
+ * @param <V> the value type a collector holds
+ * @param <Entry> an implementation of a collector
+ */
+class PrefixSpliterator<V, Entry extends Collector<V>> implements Spliterator<Entry> {
+
+    private final TernarySearchTree<V, Entry> tree;
+    private final int expectedModCount;
+
+    // the entry of the prefix node itself, it comes first
+    private Entry prefixEntry;
+
+    // avoid recursion, the same pre-order traversal as in the tree
+    private final Deque<TernaryNode<V, Entry>> deque = new ArrayDeque<>();
+
+    /**
+     * Constructs a spliterator over the specified node and the subtree of its equal kid.
+     *
+     * @param tree the tree being traversed
+     * @param prefixNode the node of the last character of the prefix or null if nothing matches
+     */
+    PrefixSpliterator(TernarySearchTree<V, Entry> tree, TernaryNode<V, Entry> prefixNode) {
+        this.tree = tree;
+        this.expectedModCount = tree.getModCount();
+        if (prefixNode != null) {
+            prefixEntry = prefixNode.getEntry();
+            if (prefixNode.getEqualKid() != null) {
+                deque.push(prefixNode.getEqualKid());
+            }
+        }
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Entry> action) {
+        if (action == null) {
+            throw new NullPointerException();
+        }
+        Entry entry = nextEntry();
+        if (entry == null) {
+            return false;
+        }
+        action.accept(entry);
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Entry> action) {
+        if (action == null) {
+            throw new NullPointerException();
+        }
+        Entry entry;
+        while ((entry = nextEntry()) != null) {
+            action.accept(entry);
+        }
+    }
+
+    private Entry nextEntry() {
+        if (tree.getModCount() != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        if (prefixEntry != null) {
+            Entry entry = prefixEntry;
+            prefixEntry = null;
+            return entry;
+        }
+        while (!deque.isEmpty()) {
+            TernaryNode<V, Entry> currentNode = deque.pop();
+            if (currentNode.getHigherKid() != null) {
+                deque.push(currentNode.getHigherKid());
+            }
+            if (currentNode.getEqualKid() != null) {
+                deque.push(currentNode.getEqualKid());
+            }
+            if (currentNode.getLowerKid() != null) {
+                deque.push(currentNode.getLowerKid());
+            }
+            if (currentNode.getEntry() != null) {
+                return currentNode.getEntry();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * This spliterator does not split.
+     *
+     * @return null
+     */
+    @Override
+    public Spliterator<Entry> trySplit() {
+        return null;
+    }
+
+    /**
+     * The size of the subtree is unknown.
+     *
+     * @return 0 if the traversal is finished else {@link Long#MAX_VALUE}
+     */
+    @Override
+    public long estimateSize() {
+        return (prefixEntry == null && deque.isEmpty()) ? 0 : Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+}
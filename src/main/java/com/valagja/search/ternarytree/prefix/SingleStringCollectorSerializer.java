@@ -0,0 +1,46 @@
+package com.valagja.search.ternarytree.prefix;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Implements {@link CollectorSerializer} for {@link SingleStringCollector}.
+ *
+ * The value is written as its length followed by its characters, so it may be longer than
+ * {@link DataOutput#writeUTF(String)} allows.
+ */
+public class SingleStringCollectorSerializer implements CollectorSerializer<SingleStringCollector> {
+
+    // length written for a null value
+    private static final int NULL = -1;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    @Override
+    public void write(SingleStringCollector entry, DataOutput out) throws IOException {
+        String value = entry.getValue();
+        if (value == null) {
+            out.writeInt(NULL);
+            return;
+        }
+        out.writeInt(value.length());
+        out.writeChars(value);
+    }
+
+    @Override
+    public SingleStringCollector read(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length == NULL) {
+            return new SingleStringCollector(null);
+        }
+        if (length < 0) {
+            throw new IOException("negative length " + length);
+        }
+        // grows while reading, a corrupt length runs into the end of the input instead of allocating it all
+        StringBuilder value = new StringBuilder(Math.min(length, INITIAL_CAPACITY));
+        for (int i = 0; i < length; i++) {
+            value.append(in.readChar());
+        }
+        return new SingleStringCollector(value.toString());
+    }
+}
@@ -0,0 +1,183 @@
+package com.valagja.search.ternarytree.prefix;
+
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ConcurrentModificationException;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A lazy {@link Iterator} over the words of a tree with their collectors in lexicographic order.
+ *
+ * The nodes are visited in-order: the lower kid, the node itself, the equal kid and then the higher kid,
+ * so the words come sorted like {@link String#compareTo(String)} sorts them.
+ * The iteration can start at any key without visiting the words before it,
+ * the start is found by one walk along the key and the iteration stops at an exclusive upper key.
+ *
+ * The iterator is fail-fast: if the tree is modified by put or remove after the iterator was created,
+ * the next call of hasNext or next throws a {@link ConcurrentModificationException}.
+ *
+ * @param <V> the value type a collector holds
+ * @param <Entry> an implementation of a collector
+ */
+class SortedIterator<V, Entry extends Collector<V>> implements Iterator<Map.Entry<String, Entry>> {
+
+    private final TernarySearchTree<V, Entry> tree;
+    private final int expectedModCount;
+    // exclusive, null means no upper bound
+    private final String toKey;
+
+    // avoid recursion, the frames still to be visited in-order
+    private final Deque<Frame<V, Entry>> deque = new ArrayDeque<>();
+    // the characters of the current word, the equal kids of a node share the path up to it
+    private final StringBuilder path = new StringBuilder();
+
+    private Map.Entry<String, Entry> next;
+
+    /**
+     * Constructs an iterator over the words that start with a prefix.
+     *
+     * @param tree the tree being traversed
+     * @param prefix the prefix, empty for all words of the tree
+     * @param prefixNode the node of the last character of a non-empty prefix or null if nothing matches
+     * @param fromKey the first key, null to start with the first word
+     * @param isFromInclusive true if the word equal to fromKey is included
+     * @param toKey the key to stop at, exclusive, null to iterate up to the last word
+     */
+    SortedIterator(TernarySearchTree<V, Entry> tree, String prefix, TernaryNode<V, Entry> prefixNode,
+            String fromKey, boolean isFromInclusive, String toKey) {
+        this.tree = tree;
+        this.expectedModCount = tree.getModCount();
+        this.toKey = toKey;
+        int depth = prefix.length();
+        TernaryNode<V, Entry> startNode;
+        if (prefix.isEmpty()) {
+            startNode = tree.getRoot();
+        }
+        else if (prefixNode == null) {
+            // nothing matches
+            return;
+        }
+        else {
+            startNode = prefixNode.getEqualKid();
+        }
+        path.append(prefix);
+        if (fromKey != null && fromKey.startsWith(prefix) && fromKey.length() > depth) {
+            // the prefix itself is before the first key
+            seek(startNode, depth, fromKey, isFromInclusive);
+            return;
+        }
+        if (fromKey != null && !fromKey.startsWith(prefix) && fromKey.compareTo(prefix) > 0) {
+            // all words with the prefix are before the first key
+            return;
+        }
+        push(startNode, depth);
+        if (!prefix.isEmpty() && (fromKey == null || isFromInclusive || !fromKey.equals(prefix))) {
+            deque.push(new Frame<>(prefixNode, depth - 1, true));
+        }
+    }
+
+    private void seek(TernaryNode<V, Entry> currentNode, int depth, String fromKey, boolean isFromInclusive) {
+        while (currentNode != null) {
+            char key = fromKey.charAt(depth);
+            if (key < currentNode.getKey()) {
+                // the node and its equal and higher kids come after the key
+                push(currentNode.getHigherKid(), depth);
+                push(currentNode.getEqualKid(), depth + 1);
+                deque.push(new Frame<>(currentNode, depth, true));
+                currentNode = currentNode.getLowerKid();
+            }
+            else if (key > currentNode.getKey()) {
+                // the node and its lower and equal kids come before the key
+                currentNode = currentNode.getHigherKid();
+            }
+            else {
+                push(currentNode.getHigherKid(), depth);
+                path.setLength(depth);
+                path.append(key);
+                if (depth == fromKey.length() - 1) {
+                    // the longer words come after the key
+                    push(currentNode.getEqualKid(), depth + 1);
+                    if (isFromInclusive) {
+                        deque.push(new Frame<>(currentNode, depth, true));
+                    }
+                    return;
+                }
+                // the word of the node is a prefix of the key and comes before it
+                currentNode = currentNode.getEqualKid();
+                depth++;
+            }
+        }
+    }
+
+    private void push(TernaryNode<V, Entry> node, int depth) {
+        if (node != null) {
+            deque.push(new Frame<>(node, depth, false));
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (tree.getModCount() != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        if (next == null) {
+            next = nextPair();
+        }
+        return next != null;
+    }
+
+    @Override
+    public Map.Entry<String, Entry> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Map.Entry<String, Entry> pair = next;
+        next = null;
+        return pair;
+    }
+
+    private Map.Entry<String, Entry> nextPair() {
+        while (!deque.isEmpty()) {
+            Frame<V, Entry> frame = deque.pop();
+            TernaryNode<V, Entry> currentNode = frame.node;
+            if (frame.isVisited) {
+                path.setLength(frame.depth);
+                path.append(currentNode.getKey());
+                if (currentNode.getEntry() == null) {
+                    continue;
+                }
+                String word = path.toString();
+                if (toKey != null && word.compareTo(toKey) >= 0) {
+                    // all following words are after the upper key too
+                    deque.clear();
+                    return null;
+                }
+                return new AbstractMap.SimpleImmutableEntry<>(word, currentNode.getEntry());
+            }
+            push(currentNode.getHigherKid(), frame.depth);
+            push(currentNode.getEqualKid(), frame.depth + 1);
+            deque.push(new Frame<>(currentNode, frame.depth, true));
+            push(currentNode.getLowerKid(), frame.depth);
+        }
+        return null;
+    }
+
+    /**
+     * A node to be visited with the length of the path before its key.
+     */
+    private static class Frame<V, Entry extends Collector<V>> {
+        private final TernaryNode<V, Entry> node;
+        private final int depth;
+        // true if the kids are already pushed, the word of the node comes next
+        private final boolean isVisited;
+
+        private Frame(TernaryNode<V, Entry> node, int depth, boolean isVisited) {
+            this.node = node;
+            this.depth = depth;
+            this.isVisited = isVisited;
+        }
+    }
+}
@@ -20,6 +20,12 @@ public class TernaryNode<V, Entry extends Collector<V>> {
 
     private TernaryNode<V,Entry> parent;
 
+    // the maximal weight of the entries of this node and its kids
+    private double maxWeight = Double.NEGATIVE_INFINITY;
+
+    // the number of entries of this node and its kids
+    private int wordCount;
+
     public TernaryNode(char key, TernaryNode<V,Entry> parent) {
         this.key = key;
         this.parent = parent;
@@ -73,6 +79,22 @@ public class TernaryNode<V, Entry extends Collector<V>> {
         this.parent = parent;
     }
 
+    public double getMaxWeight() {
+        return maxWeight;
+    }
+
+    public void setMaxWeight(double maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    public void setWordCount(int wordCount) {
+        this.wordCount = wordCount;
+    }
+
     public void replaceKid(TernaryNode<V, Entry> currentNode, TernaryNode<V, Entry> newNode) {
         if ( lowerKid == currentNode) {
             lowerKid = newNode;
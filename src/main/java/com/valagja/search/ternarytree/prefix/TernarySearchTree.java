@@ -1,9 +1,28 @@
 package com.valagja.search.ternarytree.prefix;
 
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.file.Path;
+import java.util.AbstractMap;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Implementation of a ternary search tree for prefix search.
@@ -28,103 +47,1735 @@ import java.util.List;
  */
 public class TernarySearchTree<V, Entry extends Collector<V>> {
 
+    // which kid of the parent a node becomes while bulk loading
+    private static final int ROOT = 0;
+    private static final int LOWER = 1;
+    private static final int EQUAL = 2;
+    private static final int HIGHER = 3;
+
+    // subtrees with fewer words are collected by one thread in findParallel
+    private static final int PARALLEL_THRESHOLD = 8192;
+
+    // the traversal stack of the find with an action, reused by all trees of a thread
+    private static final ThreadLocal<NodeStack> NODE_STACKS = ThreadLocal.withInitial(NodeStack::new);
+
     private TernaryNode<V, Entry> root;
 
+    // number of put and remove calls that modified this tree, lets iterators fail fast
+    private int modCount;
+
+    // siblings are rebalanced by put if a new node is deeper than this, 0 means never
+    private int autoRebalanceDepth;
+
+    /**
+     * Adds a word to the tree associated with a {@link Collector}.
+     *
+     * If the word was previously added to this tree the specified collector
+     * is added to the existing collector.
+     *
+     * @param word the key
+     * @param entry a collector with values
+     */
+    public void put(String word, Entry entry) {
+        put((CharSequence) word, entry);
+    }
+
+    /**
+     * Adds a word given as any character sequence, e.g. a {@link CharBuffer}, to the tree.
+     *
+     * The characters are copied into the nodes, the sequence is not kept.
+     *
+     * @param word the key
+     * @param entry a collector with values
+     * @see #put(String, Collector)
+     */
+    public void put(CharSequence word, Entry entry) {
+        // empty or null not allowed
+        if ( word == null || word.length() == 0 ) {
+            return;
+        }
+        modCount++;
+        put(null, root, word, entry, 0, null);
+    }
+
+    /**
+     * Adds a word given as a slice of a character array to the tree.
+     *
+     * @param word the array holding the key
+     * @param offset the index of the first character of the key
+     * @param length the number of characters of the key
+     * @param entry a collector with values
+     * @throws IndexOutOfBoundsException if the slice is not within the array
+     * @see #put(String, Collector)
+     */
+    public void put(char[] word, int offset, int length, Entry entry) {
+        // empty or null not allowed
+        if (word == null || length == 0) {
+            return;
+        }
+        checkSlice(word, offset, length);
+        put(CharBuffer.wrap(word, offset, length), entry);
+    }
+
+    private void put(TernaryNode<V, Entry> parent, TernaryNode<V, Entry> currentNode, CharSequence word, Entry entry, int counter,
+            TernaryNode<V, Entry>[] path) {
+        boolean isLowerKid = false;
+        // a walk starting below the root starts at the equal kid of the node of the previous character
+        boolean isEqualKid = parent != null;
+        boolean isHigherKid = false;
+        // depth of the current node among its siblings
+        int siblingDepth = 1;
+        TernaryNode<V, Entry> unbalancedNode = null;
+        do {
+            char key = word.charAt(counter);
+            if (currentNode == null) {
+                currentNode = new TernaryNode<>(key, parent);
+                if (isLowerKid) {
+                    parent.setLowerKid(currentNode);
+                } else if (isEqualKid) {
+                    parent.setEqualKid(currentNode);
+                } else if (isHigherKid) {
+                    parent.setHigherKid(currentNode);
+                }
+                else {
+                    // root was null, creating root here
+                    root = currentNode;
+                }
+                if (autoRebalanceDepth > 0 && siblingDepth > autoRebalanceDepth) {
+                    unbalancedNode = currentNode;
+                }
+            }
+            isLowerKid = false;
+            isEqualKid = false;
+            isHigherKid = false;
+
+            if (key < currentNode.getKey()) {
+                parent = currentNode;
+                currentNode = currentNode.getLowerKid();
+                isLowerKid = true;
+                siblingDepth++;
+            } else if (key > currentNode.getKey()) {
+                parent = currentNode;
+                currentNode = currentNode.getHigherKid();
+                isHigherKid = true;
+                siblingDepth++;
+            } else {
+                if (path != null) {
+                    path[counter] = currentNode;
+                }
+                parent = currentNode;
+                currentNode = currentNode.getEqualKid();
+                counter++;
+                isEqualKid = true;
+                siblingDepth = 1;
+            }
+        }
+        while (counter < word.length());
+        if (parent.getEntry() == null) {
+            parent.setEntry(entry);
+        }
+        else {
+            parent.getEntry().add(entry);
+        }
+        updateAggregates(parent, true);
+        if (unbalancedNode != null) {
+            // only the siblings of the first new node can have become deeper
+            while (unbalancedNode.getParent() != null && unbalancedNode.getParent().getEqualKid() != unbalancedNode) {
+                unbalancedNode = unbalancedNode.getParent();
+            }
+            rebalanceSiblings(unbalancedNode, new ArrayList<TernaryNode<V, Entry>>());
+        }
+    }
+
+    /**
+     * Rebalances the lower and higher kids of all nodes.
+     *
+     * The nodes linked by lower and higher kids form a binary search tree of siblings,
+     * put and remove do not keep it balanced.
+     * Each of these binary search trees is rebuilt with the median sibling on top,
+     * so finding a character among n siblings takes at most log2(n) + 1 comparisons.
+     * Words, entries and equal kids are not changed.
+     */
+    public void rebalance() {
+        if (root == null) {
+            return;
+        }
+        modCount++;
+        // avoid recursion, the tops of the sibling trees still to be rebalanced
+        Deque<TernaryNode<V, Entry>> tops = new ArrayDeque<>();
+        tops.push(root);
+        List<TernaryNode<V, Entry>> siblings = new ArrayList<>();
+        while (!tops.isEmpty()) {
+            rebalanceSiblings(tops.pop(), siblings);
+            for (TernaryNode<V, Entry> sibling : siblings) {
+                if (sibling.getEqualKid() != null) {
+                    tops.push(sibling.getEqualKid());
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the depth among siblings that put allows before it rebalances the siblings of a new node.
+     *
+     * Rebalancing the siblings of one node takes time proportional to their number,
+     * which is at most the size of the alphabet.
+     *
+     * @param maxSiblingDepth the maximal depth among siblings or 0 to never rebalance automatically
+     * @throws IllegalArgumentException if maxSiblingDepth is negative
+     */
+    public void setAutoRebalanceDepth(int maxSiblingDepth) {
+        if (maxSiblingDepth < 0) {
+            throw new IllegalArgumentException("depth must not be negative");
+        }
+        this.autoRebalanceDepth = maxSiblingDepth;
+    }
+
+    /**
+     * Measures the shape of this tree, visits every node.
+     *
+     * @return the statistics about the depths of the nodes
+     */
+    public DepthStatistics getDepthStatistics() {
+        int nodeCount = 0;
+        int wordCount = 0;
+        int maxDepth = 0;
+        long totalWordDepth = 0;
+        int maxSiblingDepth = 0;
+        if (root != null) {
+            // avoid recursion, depth and sibling depth of each node are pushed along with it
+            Deque<TernaryNode<V, Entry>> deque = new ArrayDeque<>();
+            Deque<int[]> depths = new ArrayDeque<>();
+            deque.push(root);
+            depths.push(new int[]{1, 1});
+            while (!deque.isEmpty()) {
+                TernaryNode<V, Entry> currentNode = deque.pop();
+                int[] depth = depths.pop();
+                nodeCount++;
+                maxDepth = Math.max(maxDepth, depth[0]);
+                maxSiblingDepth = Math.max(maxSiblingDepth, depth[1]);
+                if (currentNode.getEntry() != null) {
+                    wordCount++;
+                    totalWordDepth += depth[0];
+                }
+                if (currentNode.getHigherKid() != null) {
+                    deque.push(currentNode.getHigherKid());
+                    depths.push(new int[]{depth[0] + 1, depth[1] + 1});
+                }
+                if (currentNode.getEqualKid() != null) {
+                    deque.push(currentNode.getEqualKid());
+                    depths.push(new int[]{depth[0] + 1, 1});
+                }
+                if (currentNode.getLowerKid() != null) {
+                    deque.push(currentNode.getLowerKid());
+                    depths.push(new int[]{depth[0] + 1, depth[1] + 1});
+                }
+            }
+        }
+        return new DepthStatistics(nodeCount, wordCount, maxDepth, totalWordDepth, maxSiblingDepth);
+    }
+
+    /**
+     * Rebuilds the binary search tree of siblings below the specified node.
+     *
+     * @param top the node that is the equal kid of its parent or the root
+     * @param siblings receives the siblings in order of their keys
+     */
+    private void rebalanceSiblings(TernaryNode<V, Entry> top, List<TernaryNode<V, Entry>> siblings) {
+        siblings.clear();
+        // in-order, avoid recursion
+        Deque<TernaryNode<V, Entry>> deque = new ArrayDeque<>();
+        TernaryNode<V, Entry> currentNode = top;
+        while (currentNode != null || !deque.isEmpty()) {
+            while (currentNode != null) {
+                deque.push(currentNode);
+                currentNode = currentNode.getLowerKid();
+            }
+            currentNode = deque.pop();
+            siblings.add(currentNode);
+            currentNode = currentNode.getHigherKid();
+        }
+        TernaryNode<V, Entry> parent = top.getParent();
+        TernaryNode<V, Entry> newTop = linkBalanced(siblings, 0, siblings.size(), parent);
+        if (parent == null) {
+            root = newTop;
+        }
+        else {
+            parent.setEqualKid(newTop);
+        }
+    }
+
+    private TernaryNode<V, Entry> linkBalanced(List<TernaryNode<V, Entry>> siblings, int from, int to, TernaryNode<V, Entry> parent) {
+        // the recursion depth is at most log2 of the number of siblings
+        if (from >= to) {
+            return null;
+        }
+        int median = (from + to) >>> 1;
+        TernaryNode<V, Entry> node = siblings.get(median);
+        node.setParent(parent);
+        node.setLowerKid(linkBalanced(siblings, from, median, node));
+        node.setHigherKid(linkBalanced(siblings, median + 1, to, node));
+        node.setMaxWeight(computeMaxWeight(node));
+        node.setWordCount(computeWordCount(node));
+        return node;
+    }
+
+    /**
+     * Adds many words at once, each associated with a {@link Collector}.
+     *
+     * Adding sorted words one by one with put makes a linked list of each lower and higher kid chain.
+     * This method sorts the words, if they are not sorted yet, and adds them so that the lower and higher kids
+     * of each node come out balanced.
+     * If this tree is empty the nodes are built bottom-up without comparisons,
+     * otherwise the words are put starting with the median.
+     *
+     * Collectors of the same word are added in the order of the input, as put would do.
+     *
+     * @param pairs words with their collectors, empty or null words are ignored
+     * @return the number of added words and the duration of the build
+     */
+    public BatchStatistics bulkLoad(Iterable<Map.Entry<String, Entry>> pairs) {
+        long start = System.nanoTime();
+        int size = size();
+        List<Map.Entry<String, Entry>> sorted = sort(pairs);
+        if (!sorted.isEmpty()) {
+            modCount++;
+            if (root == null) {
+                buildBalanced(sorted);
+                initAggregates();
+            }
+            else {
+                putMediansFirst(sorted);
+            }
+        }
+        return new BatchStatistics(sorted.size(), System.nanoTime() - start, size() - size, 0);
+    }
+
+    /**
+     * Adds many words at once, see {@link #bulkLoad(Iterable)}.
+     *
+     * @param pairs words with their collectors, empty or null words are ignored
+     * @return the number of added words and the duration of the build
+     */
+    public BatchStatistics bulkLoad(Stream<Map.Entry<String, Entry>> pairs) {
+        return bulkLoad((Iterable<Map.Entry<String, Entry>>) pairs::iterator);
+    }
+
+    /**
+     * Adds a batch of words, each associated with a {@link Collector}, like put does for each pair.
+     *
+     * The batch is sorted, so consecutive words share prefixes: the walk of a word starts at the node
+     * where the path of the previous word leaves the shared prefix instead of at the root.
+     * An empty tree is built like {@link #bulkLoad(Iterable)} does.
+     * Sorted words that are new below the same node become a chain of higher kids,
+     * {@link #setAutoRebalanceDepth(int)} or {@link #rebalance()} keep such siblings balanced.
+     *
+     * Collectors of the same word are added in the order of the input, as put would do.
+     *
+     * @param pairs words with their collectors, empty or null words are ignored
+     * @return the number of processed and added words, the number of reused nodes and the duration of the batch
+     */
+    public BatchStatistics putAll(Iterable<Map.Entry<String, Entry>> pairs) {
+        if (root == null) {
+            return bulkLoad(pairs);
+        }
+        long start = System.nanoTime();
+        int size = size();
+        List<Map.Entry<String, Entry>> sorted = sort(pairs);
+        TernaryNode<V, Entry>[] path = newPath(sorted);
+        long reusedNodeCount = 0;
+        String previousWord = "";
+        for (Map.Entry<String, Entry> pair : sorted) {
+            String word = pair.getKey();
+            modCount++;
+            // the nodes of the shared prefix are in the path of the previous word
+            int shared = sharedPrefixLength(previousWord, word);
+            reusedNodeCount += shared;
+            if (shared == word.length()) {
+                // the same word again
+                path[shared - 1].getEntry().add(pair.getValue());
+                updateAggregates(path[shared - 1], true);
+            }
+            else if (shared == 0) {
+                put(null, root, word, pair.getValue(), 0, path);
+            }
+            else {
+                put(path[shared - 1], path[shared - 1].getEqualKid(), word, pair.getValue(), shared, path);
+            }
+            previousWord = word;
+        }
+        return new BatchStatistics(sorted.size(), System.nanoTime() - start, size() - size, reusedNodeCount);
+    }
+
+    /**
+     * Adds a batch of words, see {@link #putAll(Iterable)}.
+     *
+     * @param pairs words with their collectors, empty or null words are ignored
+     * @return the number of processed and added words, the number of reused nodes and the duration of the batch
+     */
+    public BatchStatistics putAll(Stream<Map.Entry<String, Entry>> pairs) {
+        return putAll((Iterable<Map.Entry<String, Entry>>) pairs::iterator);
+    }
+
+    /**
+     * Removes a batch of words, each with the collector whose values are removed, like remove does for each pair.
+     *
+     * The batch is sorted and the walk of a word starts where the path of the previous word leaves the shared prefix.
+     * Nodes whose collector became empty are only cleared while the batch runs,
+     * so the paths stay valid, and are unlinked at the end of the batch, the deepest first.
+     * A node shared by several removed words is then unlinked once instead of being spliced by each remove.
+     *
+     * @param pairs words with their collectors, empty or null words are ignored
+     * @return the number of processed and removed words, the number of reused nodes and the duration of the batch
+     */
+    public BatchStatistics removeAll(Iterable<Map.Entry<String, Entry>> pairs) {
+        long start = System.nanoTime();
+        int size = size();
+        List<Map.Entry<String, Entry>> sorted = sort(pairs);
+        TernaryNode<V, Entry>[] path = newPath(sorted);
+        // the number of valid nodes in the path of the previous word
+        int pathLength = 0;
+        long reusedNodeCount = 0;
+        String previousWord = "";
+        List<TernaryNode<V, Entry>> changedNodes = new ArrayList<>();
+        List<TernaryNode<V, Entry>> emptyNodes = new ArrayList<>();
+        for (Map.Entry<String, Entry> pair : sorted) {
+            String word = pair.getKey();
+            int shared = Math.min(sharedPrefixLength(previousWord, word), pathLength);
+            reusedNodeCount += shared;
+            if (shared == word.length()) {
+                pathLength = shared;
+            }
+            else if (shared == 0) {
+                pathLength = walk(root, word, 0, path);
+            }
+            else {
+                pathLength = walk(path[shared - 1].getEqualKid(), word, shared, path);
+            }
+            previousWord = word;
+            if (pathLength < word.length() || path[pathLength - 1].getEntry() == null) {
+                // nothing found to remove, the word might only be a prefix of other words
+                continue;
+            }
+            TernaryNode<V, Entry> currentNode = path[pathLength - 1];
+            modCount++;
+            changedNodes.add(currentNode);
+            if (currentNode.getEntry().remove(pair.getValue())) {
+                // unlinked at the end of the batch
+                currentNode.setEntry(null);
+                emptyNodes.add(currentNode);
+            }
+        }
+        for (TernaryNode<V, Entry> changedNode : changedNodes) {
+            updateAggregates(changedNode, false);
+        }
+        killNodes(emptyNodes);
+        return new BatchStatistics(sorted.size(), System.nanoTime() - start, size - size(), reusedNodeCount);
+    }
+
+    /**
+     * Removes a batch of words, see {@link #removeAll(Iterable)}.
+     *
+     * @param pairs words with their collectors, empty or null words are ignored
+     * @return the number of processed and removed words, the number of reused nodes and the duration of the batch
+     */
+    public BatchStatistics removeAll(Stream<Map.Entry<String, Entry>> pairs) {
+        return removeAll((Iterable<Map.Entry<String, Entry>>) pairs::iterator);
+    }
+
+    private void killNodes(List<TernaryNode<V, Entry>> emptyNodes) {
+        // a node is unlinked after the empty nodes below it, which are deeper, so its kids are no empty leftovers
+        Map<TernaryNode<V, Entry>, Integer> depths = new IdentityHashMap<>();
+        for (TernaryNode<V, Entry> emptyNode : emptyNodes) {
+            int depth = 0;
+            for (TernaryNode<V, Entry> node = emptyNode; node.getParent() != null; node = node.getParent()) {
+                depth++;
+            }
+            depths.put(emptyNode, depth);
+        }
+        emptyNodes.sort(Comparator.comparing(depths::get, Comparator.reverseOrder()));
+        for (TernaryNode<V, Entry> currentNode : emptyNodes) {
+            if (currentNode.getEntry() != null || (currentNode.getParent() == null && currentNode != root)) {
+                // already unlinked or holding the moved entry of another word
+                continue;
+            }
+            // avoid recursion
+            do {
+                currentNode = killNode(currentNode);
+            }
+            while (currentNode != null);
+        }
+    }
+
+    private static <Entry> List<Map.Entry<String, Entry>> sort(Iterable<Map.Entry<String, Entry>> pairs) {
+        List<Map.Entry<String, Entry>> sorted = new ArrayList<>();
+        boolean isSorted = true;
+        String previousWord = null;
+        for (Map.Entry<String, Entry> pair : pairs) {
+            String word = pair.getKey();
+            // empty or null not allowed
+            if (word == null || word.isEmpty()) {
+                continue;
+            }
+            if (previousWord != null && previousWord.compareTo(word) > 0) {
+                isSorted = false;
+            }
+            previousWord = word;
+            sorted.add(pair);
+        }
+        if (!isSorted) {
+            // stable, keeps the order of the collectors of the same word
+            sorted.sort(Map.Entry.<String, Entry>comparingByKey());
+        }
+        return sorted;
+    }
+
+    @SuppressWarnings("unchecked")
+    private TernaryNode<V, Entry>[] newPath(List<Map.Entry<String, Entry>> sorted) {
+        int maxLength = 0;
+        for (Map.Entry<String, Entry> pair : sorted) {
+            maxLength = Math.max(maxLength, pair.getKey().length());
+        }
+        return (TernaryNode<V, Entry>[]) new TernaryNode<?, ?>[maxLength];
+    }
+
+    private static int sharedPrefixLength(String first, String second) {
+        int length = Math.min(first.length(), second.length());
+        int i = 0;
+        while (i < length && first.charAt(i) == second.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Walks along a word and keeps the node of each character.
+     *
+     * @return the number of characters found, the path holds their nodes
+     */
+    private int walk(TernaryNode<V, Entry> currentNode, String word, int counter, TernaryNode<V, Entry>[] path) {
+        while (currentNode != null) {
+            char key = word.charAt(counter);
+            if (key < currentNode.getKey()) {
+                currentNode = currentNode.getLowerKid();
+            }
+            else if (key > currentNode.getKey()) {
+                currentNode = currentNode.getHigherKid();
+            }
+            else {
+                path[counter++] = currentNode;
+                if (counter == word.length()) {
+                    break;
+                }
+                currentNode = currentNode.getEqualKid();
+            }
+        }
+        return counter;
+    }
+
+    private void buildBalanced(List<Map.Entry<String, Entry>> sorted) {
+        // avoid recursion, a task is a range of words with the same prefix of length depth
+        Deque<BuildTask<V, Entry>> tasks = new ArrayDeque<>();
+        tasks.push(new BuildTask<V, Entry>(0, sorted.size(), 0, null, ROOT));
+        // reused by all tasks, the first word of each group of words with the same character at depth
+        int[] groupStarts = new int[16];
+        while (!tasks.isEmpty()) {
+            BuildTask<V, Entry> task = tasks.pop();
+            int groupCount = 0;
+            char previousKey = 0;
+            for (int i = task.from; i < task.to; i++) {
+                char key = sorted.get(i).getKey().charAt(task.depth);
+                if (i == task.from || key != previousKey) {
+                    if (groupCount == groupStarts.length) {
+                        groupStarts = Arrays.copyOf(groupStarts, groupCount * 2);
+                    }
+                    groupStarts[groupCount++] = i;
+                    previousKey = key;
+                }
+            }
+            // the median character becomes the node, the others its lower and higher kids
+            int median = groupCount / 2;
+            int from = groupStarts[median];
+            int to = (median + 1 < groupCount) ? groupStarts[median + 1] : task.to;
+            char key = sorted.get(from).getKey().charAt(task.depth);
+            TernaryNode<V, Entry> node = new TernaryNode<>(key, task.parent);
+            switch (task.kind) {
+                case LOWER:
+                    task.parent.setLowerKid(node);
+                    break;
+                case EQUAL:
+                    task.parent.setEqualKid(node);
+                    break;
+                case HIGHER:
+                    task.parent.setHigherKid(node);
+                    break;
+                default:
+                    root = node;
+            }
+            if (from > task.from) {
+                tasks.push(new BuildTask<>(task.from, from, task.depth, node, LOWER));
+            }
+            if (to < task.to) {
+                tasks.push(new BuildTask<>(to, task.to, task.depth, node, HIGHER));
+            }
+            // words ending here are sorted before the longer ones
+            int i = from;
+            while (i < to && sorted.get(i).getKey().length() == task.depth + 1) {
+                if (node.getEntry() == null) {
+                    node.setEntry(sorted.get(i).getValue());
+                }
+                else {
+                    node.getEntry().add(sorted.get(i).getValue());
+                }
+                i++;
+            }
+            if (i < to) {
+                tasks.push(new BuildTask<>(i, to, task.depth + 1, node, EQUAL));
+            }
+        }
+    }
+
+    private void putMediansFirst(List<Map.Entry<String, Entry>> sorted) {
+        // the first pair of each distinct word
+        List<Integer> wordStarts = new ArrayList<>();
+        for (int i = 0; i < sorted.size(); i++) {
+            if (i == 0 || !sorted.get(i).getKey().equals(sorted.get(i - 1).getKey())) {
+                wordStarts.add(i);
+            }
+        }
+        wordStarts.add(sorted.size());
+        // avoid recursion, ranges of distinct words
+        Deque<int[]> ranges = new ArrayDeque<>();
+        ranges.push(new int[]{0, wordStarts.size() - 1});
+        while (!ranges.isEmpty()) {
+            int[] range = ranges.pop();
+            int median = (range[0] + range[1]) >>> 1;
+            for (int i = wordStarts.get(median); i < wordStarts.get(median + 1); i++) {
+                put(null, root, sorted.get(i).getKey(), sorted.get(i).getValue(), 0, null);
+            }
+            if (median + 1 < range[1]) {
+                ranges.push(new int[]{median + 1, range[1]});
+            }
+            if (range[0] < median) {
+                ranges.push(new int[]{range[0], median});
+            }
+        }
+    }
+
+    /**
+     * Writes a binary snapshot of this tree to a file.
+     *
+     * The snapshot holds the nodes as they are linked, so {@link #load(Path, CollectorSerializer)}
+     * restores the same tree without put and without comparing keys.
+     * It starts with a version header and is protected by a CRC32 checksum.
+     *
+     * @param path the file, replaced if it exists
+     * @param serializer writes each collector
+     * @throws IOException if writing fails
+     */
+    public void save(Path path, CollectorSerializer<Entry> serializer) throws IOException {
+        TreeSnapshot.save(root, path, serializer);
+    }
+
+    /**
+     * Reads a tree from a binary snapshot written by {@link #save(Path, CollectorSerializer)}.
+     *
+     * The file is read once sequentially.
+     *
+     * @param path the file
+     * @param serializer reads each collector
+     * @param <V> the value type a collector holds
+     * @param <Entry> an implementation of a collector
+     * @return the loaded tree
+     * @throws IOException if reading fails, the version is not supported or the checksum does not match
+     */
+    public static <V, Entry extends Collector<V>> TernarySearchTree<V, Entry> load(Path path,
+            CollectorSerializer<Entry> serializer) throws IOException {
+        TernarySearchTree<V, Entry> tree = new TernarySearchTree<>();
+        tree.root = TreeSnapshot.load(path, serializer);
+        if (tree.root != null) {
+            tree.initAggregates();
+        }
+        return tree;
+    }
+
+    /**
+     * Searches for collectors associated with words that starts with the specified prefix.
+     *
+     * The order follows the shape of the tree, {@link #sortedIterator(String)} gives the words sorted.
+     *
+     * @param prefix the search prefix
+     * @return a list of collectors, that contain values
+     */
+    public List<Entry> find(String prefix) {
+        return find(prefix, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Searches for at most limit collectors associated with words that starts with the specified prefix.
+     *
+     * The traversal stops as soon as the limit is reached,
+     * the result is the beginning of the list returned by {@link #find(String)}.
+     *
+     * @param prefix the search prefix
+     * @param limit the maximal number of collectors
+     * @return a list of collectors, that contain values
+     */
+    public List<Entry> find(String prefix, int limit) {
+        return find(prefix, 0, limit);
+    }
+
+    /**
+     * Searches for at most limit collectors associated with words that starts with the specified prefix,
+     * skipping the first offset collectors.
+     *
+     * The traversal stops as soon as the limit is reached,
+     * the result is the sublist of the list returned by {@link #find(String)} starting at offset.
+     *
+     * @param prefix the search prefix
+     * @param offset the number of collectors to skip
+     * @param limit the maximal number of collectors
+     * @return a list of collectors, that contain values
+     * @throws IllegalArgumentException if offset or limit is negative
+     */
+    public List<Entry> find(String prefix, int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("offset and limit must not be negative");
+        }
+        // empty or null not allowed
+        if (prefix == null || prefix.isEmpty() || limit == 0) {
+            return new ArrayList<>(0);
+        }
+        return find(get(root, prefix, 0), offset, limit);
+    }
+
+    /**
+     * Searches for collectors associated with words that starts with the specified prefix,
+     * given as any character sequence, e.g. a {@link CharBuffer}.
+     *
+     * @param prefix the search prefix
+     * @return a list of collectors, that contain values
+     * @see #find(String)
+     */
+    public List<Entry> find(CharSequence prefix) {
+        // empty or null not allowed
+        if (prefix == null || prefix.length() == 0) {
+            return new ArrayList<>(0);
+        }
+        return find(get(root, prefix, 0), 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Searches for collectors associated with words that starts with the prefix given as a slice of a character array.
+     *
+     * @param prefix the array holding the search prefix
+     * @param offset the index of the first character of the prefix
+     * @param length the number of characters of the prefix
+     * @return a list of collectors, that contain values
+     * @throws IndexOutOfBoundsException if the slice is not within the array
+     * @see #find(String)
+     */
+    public List<Entry> find(char[] prefix, int offset, int length) {
+        // empty or null not allowed
+        if (prefix == null || length == 0) {
+            return new ArrayList<>(0);
+        }
+        checkSlice(prefix, offset, length);
+        return find(get(root, prefix, offset, length), 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Passes the collectors associated with words that starts with the specified prefix to an action,
+     * in the order of {@link #find(String)}.
+     *
+     * Neither a list nor a deque is created, the traversal stack is kept per thread and reused by the next call,
+     * so a lookup with a {@link CharBuffer} or a {@link StringBuilder} as prefix does not allocate at all.
+     * The action must not modify this tree.
+     *
+     * @param prefix the search prefix
+     * @param action the action called for each collector
+     * @return the number of collectors passed to the action
+     */
+    public int find(CharSequence prefix, Consumer<? super Entry> action) {
+        // empty or null not allowed
+        if (prefix == null || prefix.length() == 0) {
+            return 0;
+        }
+        return forEach(get(root, prefix, 0), action);
+    }
+
+    /**
+     * Passes the collectors associated with words that starts with the prefix given as a slice of a character array
+     * to an action, in the order of {@link #find(String)}.
+     *
+     * Does not allocate, like {@link #find(CharSequence, Consumer)}.
+     * The action must not modify this tree.
+     *
+     * @param prefix the array holding the search prefix
+     * @param offset the index of the first character of the prefix
+     * @param length the number of characters of the prefix
+     * @param action the action called for each collector
+     * @return the number of collectors passed to the action
+     * @throws IndexOutOfBoundsException if the slice is not within the array
+     */
+    public int find(char[] prefix, int offset, int length, Consumer<? super Entry> action) {
+        // empty or null not allowed
+        if (prefix == null || length == 0) {
+            return 0;
+        }
+        checkSlice(prefix, offset, length);
+        return forEach(get(root, prefix, offset, length), action);
+    }
+
+    /**
+     * Gets the collector associated with a word, given as any character sequence, e.g. a {@link CharBuffer}.
+     *
+     * Does not allocate.
+     *
+     * @param word the key
+     * @return the collector or null if the word was not added, it might only be a prefix of other words
+     */
+    public Entry get(CharSequence word) {
+        // empty or null not allowed
+        if (word == null || word.length() == 0) {
+            return null;
+        }
+        TernaryNode<V, Entry> currentNode = get(root, word, 0);
+        return (currentNode == null) ? null : currentNode.getEntry();
+    }
+
+    /**
+     * Gets the collector associated with a word given as a slice of a character array.
+     *
+     * Does not allocate.
+     *
+     * @param word the array holding the key
+     * @param offset the index of the first character of the key
+     * @param length the number of characters of the key
+     * @return the collector or null if the word was not added, it might only be a prefix of other words
+     * @throws IndexOutOfBoundsException if the slice is not within the array
+     */
+    public Entry get(char[] word, int offset, int length) {
+        // empty or null not allowed
+        if (word == null || length == 0) {
+            return null;
+        }
+        checkSlice(word, offset, length);
+        TernaryNode<V, Entry> currentNode = get(root, word, offset, length);
+        return (currentNode == null) ? null : currentNode.getEntry();
+    }
+
+    private List<Entry> find(TernaryNode<V, Entry> currentNode, int offset, int limit) {
+        if (currentNode == null) {
+            // nothing found
+            return new ArrayList<>(0);
+        }
+        List<Entry> result = new ArrayList<>();
+        int skip = offset;
+        if (currentNode.getEntry() != null) {
+            if (skip > 0) {
+                skip--;
+            }
+            else {
+                result.add(currentNode.getEntry());
+            }
+        }
+        // are there more matches for the prefix?
+        // collect from subtree
+        if (currentNode.getEqualKid() != null && result.size() < limit) {
+            traversePreOrder(currentNode.getEqualKid(), result, skip, limit);
+        }
+        return result;
+    }
+
+    /**
+     * Searches for collectors associated with words that starts with the specified prefix
+     * using the threads of the common {@link ForkJoinPool}.
+     *
+     * @param prefix the search prefix
+     * @return a list of collectors, that contain values
+     * @see #findParallel(String, ForkJoinPool)
+     */
+    public List<Entry> findParallel(String prefix) {
+        return findParallel(prefix, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Searches for collectors associated with words that starts with the specified prefix using the threads of a pool.
+     *
+     * The result is the same list as the one of {@link #find(String)}, in the same order.
+     * Each node knows the number of words in its subtree, so the lower, equal and higher subtrees of a big subtree
+     * are collected by separate tasks, each directly into its own range of the result.
+     * Small subtrees are collected by one thread, a prefix with few words is not worth the tasks.
+     *
+     * The tree must not be modified while this method runs.
+     *
+     * @param prefix the search prefix
+     * @param pool the pool running the tasks
+     * @return a list of collectors, that contain values
+     */
+    public List<Entry> findParallel(String prefix, ForkJoinPool pool) {
+        // empty or null not allowed
+        if (prefix == null || prefix.isEmpty()) {
+            return new ArrayList<>(0);
+        }
+        TernaryNode<V, Entry> currentNode = get(root, prefix, 0);
+        if (currentNode == null) {
+            // nothing found
+            return new ArrayList<>(0);
+        }
+        TernaryNode<V, Entry> equalKid = currentNode.getEqualKid();
+        if (equalKid == null || equalKid.getWordCount() <= PARALLEL_THRESHOLD) {
+            return find(prefix);
+        }
+        int offset = (currentNode.getEntry() != null) ? 1 : 0;
+        Object[] result = new Object[offset + equalKid.getWordCount()];
+        if (offset > 0) {
+            result[0] = currentNode.getEntry();
+        }
+        pool.invoke(new CollectTask<>(equalKid, result, offset));
+        @SuppressWarnings("unchecked")
+        List<Entry> entries = (List<Entry>) (List<?>) Arrays.asList(result);
+        return new ArrayList<>(entries);
+    }
+
+    /**
+     * Gets the number of words in this tree.
+     *
+     * Each node knows the number of words in its subtree, so nothing is traversed.
+     *
+     * @return the number of words
+     */
+    public int size() {
+        return (root == null) ? 0 : root.getWordCount();
+    }
+
+    /**
+     * Counts the words that start with the specified prefix, the size of the list returned by {@link #find(String)}.
+     *
+     * Takes time proportional to the length of the prefix, no collector is visited.
+     *
+     * @param prefix the search prefix
+     * @return the number of words
+     */
+    public int countPrefix(String prefix) {
+        // empty or null not allowed
+        if (prefix == null || prefix.isEmpty()) {
+            return 0;
+        }
+        TernaryNode<V, Entry> currentNode = get(root, prefix, 0);
+        if (currentNode == null) {
+            // nothing found
+            return 0;
+        }
+        int count = (currentNode.getEntry() != null) ? 1 : 0;
+        if (currentNode.getEqualKid() != null) {
+            count += currentNode.getEqualKid().getWordCount();
+        }
+        return count;
+    }
+
+    /**
+     * Gets the word at the specified index of the words that start with the specified prefix,
+     * in the order of {@link #find(String)}.
+     *
+     * The word counts of the subtrees tell which kid holds the index,
+     * so the time is proportional to the depth of the word, the words before it are not visited.
+     *
+     * @param prefix the search prefix
+     * @param index the index in the result of find
+     * @return the word
+     * @throws IndexOutOfBoundsException if the index is negative or not lower than {@link #countPrefix(String)}
+     */
+    public String select(String prefix, int index) {
+        int count = countPrefix(prefix);
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("index " + index + ", count " + count);
+        }
+        TernaryNode<V, Entry> currentNode = get(root, prefix, 0);
+        if (currentNode.getEntry() != null) {
+            if (index == 0) {
+                return prefix;
+            }
+            index--;
+        }
+        StringBuilder word = new StringBuilder(prefix);
+        currentNode = currentNode.getEqualKid();
+        while (true) {
+            // the entry comes first, then the lower, equal and higher subtree
+            if (currentNode.getEntry() != null) {
+                if (index == 0) {
+                    return word.append(currentNode.getKey()).toString();
+                }
+                index--;
+            }
+            TernaryNode<V, Entry> lowerKid = currentNode.getLowerKid();
+            if (lowerKid != null) {
+                if (index < lowerKid.getWordCount()) {
+                    currentNode = lowerKid;
+                    continue;
+                }
+                index -= lowerKid.getWordCount();
+            }
+            TernaryNode<V, Entry> equalKid = currentNode.getEqualKid();
+            if (equalKid != null) {
+                if (index < equalKid.getWordCount()) {
+                    word.append(currentNode.getKey());
+                    currentNode = equalKid;
+                    continue;
+                }
+                index -= equalKid.getWordCount();
+            }
+            // the index is in range, so it must be in the higher subtree
+            currentNode = currentNode.getHigherKid();
+        }
+    }
+
+    /**
+     * Gets the index of a word among the words that start with the specified prefix, in the order of {@link #find(String)}.
+     *
+     * The inverse of {@link #select(String, int)}, the time is proportional to the depth of the word.
+     *
+     * @param prefix the search prefix
+     * @param word the word
+     * @return the index of the word in the result of find or -1 if the word was not added or does not start with the prefix
+     */
+    public int rank(String prefix, String word) {
+        // empty or null not allowed
+        if (prefix == null || prefix.isEmpty() || word == null || !word.startsWith(prefix)) {
+            return -1;
+        }
+        TernaryNode<V, Entry> currentNode = get(root, prefix, 0);
+        if (currentNode == null) {
+            return -1;
+        }
+        if (word.length() == prefix.length()) {
+            return (currentNode.getEntry() != null) ? 0 : -1;
+        }
+        int rank = (currentNode.getEntry() != null) ? 1 : 0;
+        currentNode = currentNode.getEqualKid();
+        int counter = prefix.length();
+        while (currentNode != null) {
+            char key = word.charAt(counter);
+            int entryCount = (currentNode.getEntry() != null) ? 1 : 0;
+            if (key < currentNode.getKey()) {
+                rank += entryCount;
+                currentNode = currentNode.getLowerKid();
+            }
+            else if (key > currentNode.getKey()) {
+                rank += entryCount + wordCountOf(currentNode.getLowerKid()) + wordCountOf(currentNode.getEqualKid());
+                currentNode = currentNode.getHigherKid();
+            }
+            else if (counter < word.length() - 1) {
+                rank += entryCount + wordCountOf(currentNode.getLowerKid());
+                currentNode = currentNode.getEqualKid();
+                counter++;
+            }
+            else {
+                return (entryCount == 1) ? rank : -1;
+            }
+        }
+        return -1;
+    }
+
+    private int wordCountOf(TernaryNode<V, Entry> node) {
+        return (node == null) ? 0 : node.getWordCount();
+    }
+
+    /**
+     * Searches for the longest word of this tree that the text starts with at the specified offset,
+     * the reverse of {@link #find(String)}.
+     *
+     * The nodes are walked once along the text, the time is proportional to the length of the longest match
+     * and not to the number of candidate lengths.
+     *
+     * @param text the input text
+     * @param offset the position in the text where the word must start
+     * @return the longest matching word with its collector or null if no word matches
+     * @throws IndexOutOfBoundsException if offset is negative or greater than the length of the text
+     */
+    public PrefixMatch<Entry> longestPrefixOf(CharSequence text, int offset) {
+        // null not allowed
+        if (text == null) {
+            return null;
+        }
+        checkOffset(text, offset);
+        TernaryNode<V, Entry> match = null;
+        int end = offset;
+        TernaryNode<V, Entry> currentNode = root;
+        int counter = offset;
+        while (currentNode != null && counter < text.length()) {
+            char key = text.charAt(counter);
+            if (key < currentNode.getKey()) {
+                currentNode = currentNode.getLowerKid();
+            }
+            else if (key > currentNode.getKey()) {
+                currentNode = currentNode.getHigherKid();
+            }
+            else {
+                counter++;
+                if (currentNode.getEntry() != null) {
+                    // a longer match replaces a shorter one
+                    match = currentNode;
+                    end = counter;
+                }
+                currentNode = currentNode.getEqualKid();
+            }
+        }
+        if (match == null) {
+            return null;
+        }
+        return new PrefixMatch<>(text.subSequence(offset, end).toString(), match.getEntry(), offset);
+    }
+
+    /**
+     * Searches for all words of this tree that the text starts with at the specified offset.
+     *
+     * The nodes are walked once along the text, like {@link #longestPrefixOf(CharSequence, int)}.
+     *
+     * @param text the input text
+     * @param offset the position in the text where the words must start
+     * @return a list of the matching words with their collectors, the shortest word first
+     * @throws IndexOutOfBoundsException if offset is negative or greater than the length of the text
+     */
+    public List<PrefixMatch<Entry>> prefixesOf(CharSequence text, int offset) {
+        // null not allowed
+        if (text == null) {
+            return new ArrayList<>(0);
+        }
+        checkOffset(text, offset);
+        List<PrefixMatch<Entry>> result = new ArrayList<>();
+        TernaryNode<V, Entry> currentNode = root;
+        int counter = offset;
+        while (currentNode != null && counter < text.length()) {
+            char key = text.charAt(counter);
+            if (key < currentNode.getKey()) {
+                currentNode = currentNode.getLowerKid();
+            }
+            else if (key > currentNode.getKey()) {
+                currentNode = currentNode.getHigherKid();
+            }
+            else {
+                counter++;
+                if (currentNode.getEntry() != null) {
+                    result.add(new PrefixMatch<>(text.subSequence(offset, counter).toString(), currentNode.getEntry(), offset));
+                }
+                currentNode = currentNode.getEqualKid();
+            }
+        }
+        return result;
+    }
+
+    private static void checkOffset(CharSequence text, int offset) {
+        if (offset < 0 || offset > text.length()) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + text.length());
+        }
+    }
+
+    /**
+     * Searches for the values that are held by a collector of every prefix,
+     * e.g. the documents containing words that start with "hel" and words that start with "wor".
+     *
+     * @param prefixes the search prefixes
+     * @return the values found for all prefixes
+     * @see #findAll(int, String...)
+     */
+    public Set<V> findAll(String... prefixes) {
+        return findAll(Integer.MAX_VALUE, prefixes);
+    }
+
+    /**
+     * Searches for at most limit values that are held by a collector of every prefix.
+     *
+     * The prefixes are evaluated from the most selective one, the one with the fewest words, to the least selective one,
+     * the word counts of the subtrees tell the selectivity without a traversal.
+     * The values of the most selective prefix are the candidates, each further prefix only keeps the candidates
+     * it holds too and its traversal stops as soon as all candidates, or limit of them for the last prefix, are found.
+     * An empty intersection stops the search, so a query costs about as much as its rarest prefix.
+     *
+     * @param limit the maximal number of values
+     * @param prefixes the search prefixes
+     * @return the values found for all prefixes, in the order they were found
+     * @throws IllegalArgumentException if limit is negative
+     */
+    public Set<V> findAll(int limit, String... prefixes) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative");
+        }
+        if (prefixes == null || prefixes.length == 0 || limit == 0) {
+            return new LinkedHashSet<>(0);
+        }
+        // the most selective prefix first
+        List<Map.Entry<String, Integer>> counts = new ArrayList<>(prefixes.length);
+        for (String prefix : prefixes) {
+            int count = countPrefix(prefix);
+            if (count == 0) {
+                // empty or null prefix or nothing found
+                return new LinkedHashSet<>(0);
+            }
+            counts.add(new AbstractMap.SimpleImmutableEntry<>(prefix, count));
+        }
+        counts.sort(Map.Entry.comparingByValue());
+
+        Set<V> candidates = null;
+        for (int i = 0; i < counts.size(); i++) {
+            // the last prefix needs to find only limit values
+            int wanted = (i == counts.size() - 1) ? limit : Integer.MAX_VALUE;
+            if (candidates != null) {
+                wanted = Math.min(wanted, candidates.size());
+            }
+            Set<V> found = new LinkedHashSet<>();
+            collectValues(counts.get(i).getKey(), candidates, wanted, found);
+            candidates = found;
+            if (candidates.isEmpty()) {
+                // no value is held by every prefix
+                break;
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Searches for the distinct values of the collectors associated with words that starts with the specified prefix.
+     *
+     * @param prefix the search prefix
+     * @return the values in the order of their first collector in {@link #find(String)}
+     * @see #findDistinctValues(String, int)
+     */
+    public Set<V> findValues(String prefix) {
+        return findDistinctValues(prefix, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Searches for at most limit distinct values of the collectors associated with words that starts with the specified prefix.
+     *
+     * A value held by the collectors of several words is returned once.
+     * The values are added to the result set while traversing, no list of collectors is created,
+     * and the traversal stops as soon as limit distinct values are found.
+     * The set is presized by the number of words with the prefix, only a hint: it is exact for collectors
+     * with one value, collectors with several values like {@link IntCollector} may still grow it.
+     *
+     * @param prefix the search prefix
+     * @param limit the maximal number of values
+     * @return the values in the order of their first collector in {@link #find(String)}
+     * @throws IllegalArgumentException if limit is negative
+     */
+    public Set<V> findDistinctValues(String prefix, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative");
+        }
+        int expectedSize = Math.min(limit, countPrefix(prefix));
+        Set<V> result = new LinkedHashSet<>(Math.max(16, (int) (expectedSize / 0.75f) + 1));
+        findDistinctValues(prefix, limit, result);
+        return result;
+    }
+
+    /**
+     * Adds at most limit distinct values of the collectors associated with words that starts with the specified prefix
+     * to a set of the caller.
+     *
+     * The set can be cleared and reused for the next search, so no set is created per search.
+     * Values already in the set are not added again and do not count for the limit.
+     *
+     * @param prefix the search prefix
+     * @param limit the maximal number of values to add
+     * @param result the set the values are added to
+     * @return the number of values added
+     * @throws IllegalArgumentException if limit is negative
+     */
+    public int findDistinctValues(String prefix, int limit, Set<V> result) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative");
+        }
+        // empty or null not allowed
+        if (prefix == null || prefix.isEmpty() || limit == 0) {
+            return 0;
+        }
+        int size = result.size();
+        collectValues(prefix, null, (int) Math.min((long) size + limit, Integer.MAX_VALUE), result);
+        return result.size() - size;
+    }
+
+    private void collectValues(String prefix, Set<V> candidates, int wanted, Set<V> found) {
+        Iterator<Entry> iterator = iterator(prefix);
+        while (found.size() < wanted && iterator.hasNext()) {
+            for (V value : iterator.next().getValues()) {
+                if ((candidates == null || candidates.contains(value)) && found.add(value) && found.size() == wanted) {
+                    // early termination, all wanted values are found
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Searches for the k collectors with the highest weight associated with words that starts with the specified prefix.
+     *
+     * A collector has a weight if it implements {@link Weighted}, otherwise its weight is 0.
+     * Each node knows the maximal weight in its subtree, so subtrees that can not beat
+     * the k-th best weight found so far are not visited.
+     * The weights are read when a collector is put or removed, a later change of a weight is not noticed.
+     *
+     * @param prefix the search prefix
+     * @param k the maximal number of collectors
+     * @return at most k collectors ordered by descending weight, the order of equal weights is undefined
+     * @throws IllegalArgumentException if k is negative
+     */
+    public List<Entry> topK(String prefix, int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative");
+        }
+        // empty or null not allowed
+        if (prefix == null || prefix.isEmpty() || k == 0) {
+            return new ArrayList<>(0);
+        }
+        TernaryNode<V, Entry> currentNode = get(root, prefix, 0);
+        if (currentNode == null) {
+            // nothing found
+            return new ArrayList<>(0);
+        }
+        // the best k so far, the lowest weight on top
+        PriorityQueue<Entry> best = new PriorityQueue<>(k + 1, Comparator.comparingDouble(this::weightOf));
+        offer(best, currentNode.getEntry(), k);
+        // best first, the subtree with the highest weight on top
+        PriorityQueue<TernaryNode<V, Entry>> candidates = new PriorityQueue<>(16,
+                (first, second) -> Double.compare(second.getMaxWeight(), first.getMaxWeight()));
+        if (currentNode.getEqualKid() != null) {
+            candidates.add(currentNode.getEqualKid());
+        }
+        while (!candidates.isEmpty()) {
+            currentNode = candidates.poll();
+            if (best.size() == k && currentNode.getMaxWeight() <= weightOf(best.peek())) {
+                // no remaining subtree can beat the k-th weight
+                break;
+            }
+            offer(best, currentNode.getEntry(), k);
+            if (currentNode.getLowerKid() != null) {
+                candidates.add(currentNode.getLowerKid());
+            }
+            if (currentNode.getEqualKid() != null) {
+                candidates.add(currentNode.getEqualKid());
+            }
+            if (currentNode.getHigherKid() != null) {
+                candidates.add(currentNode.getHigherKid());
+            }
+        }
+        List<Entry> result = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            result.add(best.poll());
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    private void offer(PriorityQueue<Entry> best, Entry entry, int k) {
+        if (entry == null) {
+            return;
+        }
+        if (best.size() < k) {
+            best.add(entry);
+        }
+        else if (weightOf(entry) > weightOf(best.peek())) {
+            best.poll();
+            best.add(entry);
+        }
+    }
+
+    private double weightOf(Entry entry) {
+        if (entry == null) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        return (entry instanceof Weighted) ? ((Weighted) entry).getWeight() : 0;
+    }
+
+    private double computeMaxWeight(TernaryNode<V, Entry> node) {
+        double maxWeight = weightOf(node.getEntry());
+        if (node.getLowerKid() != null) {
+            maxWeight = Math.max(maxWeight, node.getLowerKid().getMaxWeight());
+        }
+        if (node.getEqualKid() != null) {
+            maxWeight = Math.max(maxWeight, node.getEqualKid().getMaxWeight());
+        }
+        if (node.getHigherKid() != null) {
+            maxWeight = Math.max(maxWeight, node.getHigherKid().getMaxWeight());
+        }
+        return maxWeight;
+    }
+
+    private int computeWordCount(TernaryNode<V, Entry> node) {
+        int wordCount = (node.getEntry() != null) ? 1 : 0;
+        if (node.getLowerKid() != null) {
+            wordCount += node.getLowerKid().getWordCount();
+        }
+        if (node.getEqualKid() != null) {
+            wordCount += node.getEqualKid().getWordCount();
+        }
+        if (node.getHigherKid() != null) {
+            wordCount += node.getHigherKid().getWordCount();
+        }
+        return wordCount;
+    }
+
+    /**
+     * Recomputes the maximal weights and the word counts from the specified node up to the root.
+     *
+     * @param node the lowest node whose entry or kids changed, may be null
+     * @param isStopEarly true if nothing but the subtree of node changed, the parents of a node
+     *                    that keeps its maximal weight and word count are then not visited
+     */
+    private void updateAggregates(TernaryNode<V, Entry> node, boolean isStopEarly) {
+        while (node != null) {
+            double maxWeight = computeMaxWeight(node);
+            int wordCount = computeWordCount(node);
+            if (isStopEarly && maxWeight == node.getMaxWeight() && wordCount == node.getWordCount()) {
+                return;
+            }
+            node.setMaxWeight(maxWeight);
+            node.setWordCount(wordCount);
+            node = node.getParent();
+        }
+    }
+
+    private void initAggregates() {
+        // post-order without recursion, a node is visited after all of its kids
+        Deque<TernaryNode<V, Entry>> deque = new ArrayDeque<>();
+        List<TernaryNode<V, Entry>> preOrder = new ArrayList<>();
+        deque.push(root);
+        while (!deque.isEmpty()) {
+            TernaryNode<V, Entry> currentNode = deque.pop();
+            preOrder.add(currentNode);
+            if (currentNode.getHigherKid() != null) {
+                deque.push(currentNode.getHigherKid());
+            }
+            if (currentNode.getEqualKid() != null) {
+                deque.push(currentNode.getEqualKid());
+            }
+            if (currentNode.getLowerKid() != null) {
+                deque.push(currentNode.getLowerKid());
+            }
+        }
+        for (int i = preOrder.size() - 1; i >= 0; i--) {
+            preOrder.get(i).setMaxWeight(computeMaxWeight(preOrder.get(i)));
+            preOrder.get(i).setWordCount(computeWordCount(preOrder.get(i)));
+        }
+    }
+
+    /**
+     * Searches for words that start with the specified prefix allowing typos,
+     * see {@link #findFuzzy(String, int, boolean)} without transpositions.
+     *
+     * @param prefix the search prefix
+     * @param maxEdits the maximal number of inserted, deleted or replaced characters
+     * @return the matches ordered by ascending distance
+     */
+    public List<FuzzyMatch<Entry>> findFuzzy(String prefix, int maxEdits) {
+        return findFuzzy(prefix, maxEdits, false);
+    }
+
     /**
-     * Adds a word to the tree associated with a {@link Collector}.
+     * Searches for words that start with the specified prefix allowing typos.
      *
-     * If the word was previously added to this tree the specified collector
-     * is added to the existing collector.
+     * A word matches if one of its prefixes has at most maxEdits edits to the search prefix.
+     * An edit is an inserted, deleted or replaced character (Levenshtein distance)
+     * and with transpositions also two swapped adjacent characters (Damerau distance, optimal string alignment).
      *
-     * @param word the key
-     * @param entry a collector with values
+     * While descending the tree one row of the dynamic programming matrix is computed per character,
+     * the subtree below a character is not visited once every value of its row exceeds maxEdits.
+     *
+     * @param prefix the search prefix
+     * @param maxEdits the maximal number of edits
+     * @param isTranspositionAllowed true to count swapped adjacent characters as one edit
+     * @return the matches ordered by ascending distance
+     * @throws IllegalArgumentException if maxEdits is negative
      */
-    public void put(String word, Entry entry) {
+    public List<FuzzyMatch<Entry>> findFuzzy(String prefix, int maxEdits, boolean isTranspositionAllowed) {
+        if (maxEdits < 0) {
+            throw new IllegalArgumentException("maxEdits must not be negative");
+        }
+        List<FuzzyMatch<Entry>> result = new ArrayList<>();
         // empty or null not allowed
-        if ( word == null || word.isEmpty() ) {
-            return;
+        if (prefix == null || prefix.isEmpty() || root == null) {
+            return result;
         }
-        put(null, root, word, entry, 0);
-    }
-
-    private void put(TernaryNode<V, Entry> parent, TernaryNode<V, Entry> currentNode, String word, Entry entry, int counter) {
-        boolean isLowerKid = false;
-        boolean isEqualKid = false;
-        boolean isHigherKid = false;
-        do {
-            char key = word.charAt(counter);
-            if (currentNode == null) {
-                currentNode = new TernaryNode<>(key, parent);
-                if (isLowerKid) {
-                    parent.setLowerKid(currentNode);
-                } else if (isEqualKid) {
-                    parent.setEqualKid(currentNode);
-                } else if (isHigherKid) {
-                    parent.setHigherKid(currentNode);
+        int length = prefix.length();
+        // rows[depth] is the row of the word of the current path up to depth
+        int[][] rows = new int[16][];
+        rows[0] = new int[length + 1];
+        for (int i = 0; i <= length; i++) {
+            rows[0][i] = i;
+        }
+        char[] path = new char[16];
+        // avoid recursion
+        // the equal kid is pushed last, so the rows of the current path are not overwritten by siblings
+        Deque<FuzzyFrame<V, Entry>> deque = new ArrayDeque<>();
+        deque.push(new FuzzyFrame<>(root, 1, length, false));
+        while (!deque.isEmpty()) {
+            FuzzyFrame<V, Entry> frame = deque.pop();
+            TernaryNode<V, Entry> currentNode = frame.node;
+            int depth = frame.depth;
+            if (depth >= rows.length) {
+                path = Arrays.copyOf(path, path.length * 2);
+                rows = Arrays.copyOf(rows, rows.length * 2);
+            }
+            path[depth - 1] = currentNode.getKey();
+            if (currentNode.getHigherKid() != null) {
+                deque.push(new FuzzyFrame<>(currentNode.getHigherKid(), depth, frame.distance, frame.isSettled));
+            }
+            if (currentNode.getLowerKid() != null) {
+                deque.push(new FuzzyFrame<>(currentNode.getLowerKid(), depth, frame.distance, frame.isSettled));
+            }
+            int distance = frame.distance;
+            boolean isSettled = frame.isSettled;
+            if (!isSettled) {
+                if (rows[depth] == null) {
+                    rows[depth] = new int[length + 1];
                 }
-                else {
-                    // root was null, creating root here
-                    root = currentNode;
+                int minimum = computeRow(prefix, path, depth, rows, isTranspositionAllowed);
+                distance = Math.min(distance, rows[depth][length]);
+                if (minimum > maxEdits) {
+                    if (distance > maxEdits) {
+                        // no word below can match
+                        continue;
+                    }
+                    // no word below can get a smaller distance, collect them all
+                    isSettled = true;
                 }
             }
-            isLowerKid = false;
-            isEqualKid = false;
-            isHigherKid = false;
+            if (currentNode.getEntry() != null && distance <= maxEdits) {
+                result.add(new FuzzyMatch<>(new String(path, 0, depth), currentNode.getEntry(), distance));
+            }
+            if (currentNode.getEqualKid() != null) {
+                deque.push(new FuzzyFrame<>(currentNode.getEqualKid(), depth + 1, distance, isSettled));
+            }
+        }
+        // stable, keeps the order of the traversal for equal distances
+        result.sort(Comparator.comparingInt(FuzzyMatch::getDistance));
+        return result;
+    }
 
-            if (key < currentNode.getKey()) {
-                parent = currentNode;
-                currentNode = currentNode.getLowerKid();
-                isLowerKid = true;
-            } else if (key > currentNode.getKey()) {
-                parent = currentNode;
-                currentNode = currentNode.getHigherKid();
-                isHigherKid = true;
-            } else {
-                parent = currentNode;
-                currentNode = currentNode.getEqualKid();
-                counter++;
-                isEqualKid = true;
+    /**
+     * Computes the row of the path up to depth from the rows above.
+     *
+     * @return the minimal value of the row
+     */
+    private static int computeRow(String prefix, char[] path, int depth, int[][] rows, boolean isTranspositionAllowed) {
+        int[] previous = rows[depth - 1];
+        int[] row = rows[depth];
+        char key = path[depth - 1];
+        row[0] = depth;
+        int minimum = row[0];
+        for (int i = 1; i < row.length; i++) {
+            int cost = (prefix.charAt(i - 1) == key) ? 0 : 1;
+            int value = Math.min(Math.min(previous[i] + 1, row[i - 1] + 1), previous[i - 1] + cost);
+            if (isTranspositionAllowed && depth > 1 && i > 1
+                    && prefix.charAt(i - 1) == path[depth - 2] && prefix.charAt(i - 2) == key) {
+                value = Math.min(value, rows[depth - 2][i - 2] + 1);
             }
+            row[i] = value;
+            minimum = Math.min(minimum, value);
         }
-        while (counter < word.length());
-        if (parent.getEntry() == null) {
-            parent.setEntry(entry);
+        return minimum;
+    }
+
+    /**
+     * Searches for collectors associated with words that match the specified pattern.
+     *
+     * The pattern consists of characters that must match exactly and
+     * <ul>
+     *     <li>'?' matching any character,</li>
+     *     <li>a class like '[a-fxz]' matching any of the listed characters or ranges,</li>
+     *     <li>a trailing '*' matching any rest of a word, including none.</li>
+     * </ul>
+     * A backslash escapes the next character, e.g. the Java string {@code "\\?"} matches a question mark.
+     *
+     * The lower and higher kids are only visited if the class or wildcard allows characters in their direction.
+     *
+     * @param pattern the pattern
+     * @return a list of collectors, that contain values
+     * @throws IllegalArgumentException if the pattern is malformed
+     */
+    public List<Entry> findPattern(String pattern) {
+        List<Entry> result = new ArrayList<>();
+        // empty or null not allowed
+        if (pattern == null || pattern.isEmpty()) {
+            return result;
         }
-        else {
-            parent.getEntry().add(entry);
+        WildcardPattern wildcardPattern = WildcardPattern.parse(pattern);
+        int last = wildcardPattern.length() - 1;
+        if (last < 0) {
+            // only '*', matching every word
+            if (root != null) {
+                traversePreOrder(root, result, 0, Integer.MAX_VALUE);
+            }
+            return result;
+        }
+        if (root == null) {
+            return result;
         }
+        // avoid recursion, the position in the pattern is pushed along with each node
+        Deque<TernaryNode<V, Entry>> deque = new ArrayDeque<>();
+        Deque<Integer> positions = new ArrayDeque<>();
+        deque.push(root);
+        positions.push(0);
+        while (!deque.isEmpty()) {
+            TernaryNode<V, Entry> currentNode = deque.pop();
+            int position = positions.pop();
+            if (position < 0) {
+                // below the end of a pattern with a trailing '*'
+                traversePreOrder(currentNode, result, 0, Integer.MAX_VALUE);
+                continue;
+            }
+            char key = currentNode.getKey();
+            if (currentNode.getHigherKid() != null && wildcardPattern.hasHigher(position, key)) {
+                deque.push(currentNode.getHigherKid());
+                positions.push(position);
+            }
+            if (wildcardPattern.matches(position, key)) {
+                if (position < last) {
+                    if (currentNode.getEqualKid() != null) {
+                        deque.push(currentNode.getEqualKid());
+                        positions.push(position + 1);
+                    }
+                }
+                else if (wildcardPattern.isPrefix() && currentNode.getEqualKid() != null) {
+                    // the entry is collected first, the equal subtree after the lower kids
+                    deque.push(currentNode.getEqualKid());
+                    positions.push(-1);
+                }
+                if (position == last && currentNode.getEntry() != null) {
+                    result.add(currentNode.getEntry());
+                }
+            }
+            if (currentNode.getLowerKid() != null && wildcardPattern.hasLower(position, key)) {
+                deque.push(currentNode.getLowerKid());
+                positions.push(position);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Iterates lazily over the collectors associated with words that starts with the specified prefix.
+     *
+     * The order is the same as the one of {@link #find(String)}, but no list is created.
+     * The iterator is fail-fast, it throws a {@link java.util.ConcurrentModificationException}
+     * if this tree is modified by put or remove after the iterator was created.
+     *
+     * @param prefix the search prefix
+     * @return an iterator over collectors, that contain values
+     */
+    public Iterator<Entry> iterator(String prefix) {
+        return Spliterators.iterator(spliterator(prefix));
     }
 
+    /**
+     * Streams lazily the collectors associated with words that starts with the specified prefix.
+     *
+     * The stream is ordered like {@link #find(String)} and is traversed only as far as the stream operations need,
+     * e.g. findFirst or limit stop the traversal.
+     * The stream is fail-fast, it throws a {@link java.util.ConcurrentModificationException}
+     * if this tree is modified by put or remove after the stream was created.
+     *
+     * @param prefix the search prefix
+     * @return a sequential stream of collectors, that contain values
+     */
+    public Stream<Entry> stream(String prefix) {
+        return StreamSupport.stream(spliterator(prefix), false);
+    }
 
     /**
-     * Searches for collectors associated with words that starts with the specified prefix.
+     * Iterates lazily over all words of this tree with their collectors in lexicographic order.
+     *
+     * Unlike {@link #find(String)}, whose order follows the shape of the tree, the words are sorted
+     * like {@link String#compareTo(String)} sorts them.
+     * The iterator is fail-fast, like {@link #iterator(String)}.
+     *
+     * @return an iterator over pairs of a word and its collector
+     */
+    public Iterator<Map.Entry<String, Entry>> sortedIterator() {
+        return new SortedIterator<>(this, "", null, null, true, null);
+    }
+
+    /**
+     * Iterates lazily over the words that start with the specified prefix with their collectors in lexicographic order.
      *
      * @param prefix the search prefix
-     * @return a list of collectors, that contain values
+     * @return an iterator over pairs of a word and its collector
+     * @see #sortedIterator()
      */
-    public List<Entry> find(String prefix) {
+    public Iterator<Map.Entry<String, Entry>> sortedIterator(String prefix) {
         // empty or null not allowed
-        if (prefix == null || prefix.isEmpty() ) {
-            return new ArrayList<>(0);
+        if (prefix == null || prefix.isEmpty()) {
+            return Collections.emptyIterator();
         }
-        TernaryNode<V, Entry> currentNode = get( root, prefix, 0);
-        if (currentNode == null) {
-            // nothing found
-            return new ArrayList<>(0);
+        return new SortedIterator<>(this, prefix, get(root, prefix, 0), null, true, null);
+    }
+
+    /**
+     * Gets the words from fromKey, inclusive, to toKey, exclusive, with their collectors in lexicographic order.
+     *
+     * The first word is found by one walk along fromKey, the words before it are not visited.
+     *
+     * @param fromKey the lowest word, null for no lower bound
+     * @param toKey the word to stop at, null for no upper bound
+     * @return a list of pairs of a word and its collector
+     */
+    public List<Map.Entry<String, Entry>> range(String fromKey, String toKey) {
+        List<Map.Entry<String, Entry>> result = new ArrayList<>();
+        Iterator<Map.Entry<String, Entry>> iterator = new SortedIterator<>(this, "", null, fromKey, true, toKey);
+        while (iterator.hasNext()) {
+            result.add(iterator.next());
         }
-        List<Entry> result = new ArrayList<>();
-        if (currentNode.getEntry() != null) {
-            result.add(currentNode.getEntry());
+        return result;
+    }
+
+    /**
+     * Gets a page of the words that start with the specified prefix with their collectors in lexicographic order,
+     * beginning after the last word of the previous page.
+     *
+     * The walk seeks straight to lastKey, so a deep page costs as much as the first one.
+     * The words need not be unchanged between the pages, the next page simply starts after lastKey.
+     *
+     * @param prefix the search prefix
+     * @param lastKey the last word of the previous page, it does not need to be in this tree, null for the first page
+     * @param pageSize the maximal number of words
+     * @return a list of pairs of a word and its collector
+     * @throws IllegalArgumentException if pageSize is negative
+     */
+    public List<Map.Entry<String, Entry>> findAfter(String prefix, String lastKey, int pageSize) {
+        if (pageSize < 0) {
+            throw new IllegalArgumentException("pageSize must not be negative");
         }
-        // are there more matches for the prefix?
-        // collect from subtree
-        if (currentNode.getEqualKid() != null) {
-            traversePreOrder(currentNode.getEqualKid(), result);
+        // empty or null not allowed
+        if (prefix == null || prefix.isEmpty() || pageSize == 0) {
+            return new ArrayList<>(0);
+        }
+        List<Map.Entry<String, Entry>> result = new ArrayList<>();
+        Iterator<Map.Entry<String, Entry>> iterator =
+                new SortedIterator<>(this, prefix, get(root, prefix, 0), lastKey, false, null);
+        while (result.size() < pageSize && iterator.hasNext()) {
+            result.add(iterator.next());
         }
         return result;
     }
 
-    private TernaryNode<V, Entry> get(TernaryNode<V, Entry> currentNode, String prefix, int counter) {
+    private PrefixSpliterator<V, Entry> spliterator(String prefix) {
+        // empty or null not allowed
+        if (prefix == null || prefix.isEmpty()) {
+            return new PrefixSpliterator<>(this, null);
+        }
+        return new PrefixSpliterator<>(this, get(root, prefix, 0));
+    }
+
+    int getModCount() {
+        return modCount;
+    }
+
+    TernaryNode<V, Entry> getRoot() {
+        return root;
+    }
+
+    private TernaryNode<V, Entry> get(TernaryNode<V, Entry> currentNode, CharSequence prefix, int counter) {
         while (currentNode != null)
         {
             char key = prefix.charAt(counter);
@@ -146,14 +1797,100 @@ public class TernarySearchTree<V, Entry extends Collector<V>> {
         return null;
     }
 
-    private void traversePreOrder(TernaryNode<V, Entry> currentNode, List<Entry> result) {
+    private TernaryNode<V, Entry> get(TernaryNode<V, Entry> currentNode, char[] prefix, int offset, int length) {
+        int counter = offset;
+        int end = offset + length;
+        while (currentNode != null) {
+            char key = prefix[counter];
+
+            if (key < currentNode.getKey()) {
+                currentNode = currentNode.getLowerKid();
+            }
+            else if (key > currentNode.getKey()) {
+                currentNode = currentNode.getHigherKid();
+            }
+            else if (counter < end - 1) {
+                currentNode = currentNode.getEqualKid();
+                counter++;
+            }
+            else {
+                return currentNode;
+            }
+        }
+        return null;
+    }
+
+    private static void checkSlice(char[] chars, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > chars.length - length) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length + ", array length " + chars.length);
+        }
+    }
+
+    private int forEach(TernaryNode<V, Entry> currentNode, Consumer<? super Entry> action) {
+        if (currentNode == null) {
+            // nothing found
+            return 0;
+        }
+        int count = 0;
+        if (currentNode.getEntry() != null) {
+            action.accept(currentNode.getEntry());
+            count++;
+        }
+        if (currentNode.getEqualKid() == null) {
+            return count;
+        }
+        NodeStack stack = NODE_STACKS.get();
+        if (stack.isInUse) {
+            // the action searches again, the stack of the outer search must be kept
+            stack = new NodeStack();
+        }
+        stack.isInUse = true;
+        try {
+            // avoid recursion
+            stack.push(currentNode.getEqualKid());
+            while (!stack.isEmpty()) {
+                @SuppressWarnings("unchecked")
+                TernaryNode<V, Entry> node = (TernaryNode<V, Entry>) stack.pop();
+                if (node.getEntry() != null) {
+                    action.accept(node.getEntry());
+                    count++;
+                }
+                if (node.getHigherKid() != null) {
+                    stack.push(node.getHigherKid());
+                }
+                if (node.getEqualKid() != null) {
+                    stack.push(node.getEqualKid());
+                }
+                if (node.getLowerKid() != null) {
+                    stack.push(node.getLowerKid());
+                }
+            }
+        }
+        finally {
+            // no node is kept reachable by the thread
+            stack.clear();
+            stack.isInUse = false;
+        }
+        return count;
+    }
+
+    private void traversePreOrder(TernaryNode<V, Entry> currentNode, List<Entry> result, int skip, int limit) {
         // avoid recursion
         Deque<TernaryNode<V, Entry>> deque = new ArrayDeque<>();
         deque.push(currentNode);
         while (!deque.isEmpty()) {
             currentNode = deque.pop();
             if (currentNode.getEntry() != null) {
-                result.add(currentNode.getEntry());
+                if (skip > 0) {
+                    skip--;
+                }
+                else {
+                    result.add(currentNode.getEntry());
+                    if (result.size() == limit) {
+                        // early termination, the rest of the subtree is not visited
+                        return;
+                    }
+                }
             }
             if (currentNode.getHigherKid() != null) {
                 deque.push(currentNode.getHigherKid());
@@ -180,20 +1917,57 @@ public class TernarySearchTree<V, Entry extends Collector<V>> {
      * @return true if the node in the tree was removed (existing collector was empty after removing the specified collector)
      */
     public boolean remove(String word, Entry entry) {
+        return remove((CharSequence) word, entry);
+    }
+
+    /**
+     * Removes a word given as any character sequence, e.g. a {@link CharBuffer}, from this tree.
+     *
+     * @param word to be removed
+     * @param entry the associated collector with values to be removed
+     * @return true if the node in the tree was removed
+     * @see #remove(String, Collector)
+     */
+    public boolean remove(CharSequence word, Entry entry) {
         // empty or null not allowed
-        if (word == null || word.isEmpty() ) {
+        if (word == null || word.length() == 0) {
             return false;
         }
         // search for the node to be removed
-        TernaryNode<V, Entry> currentNode = get( root, word, 0);
-        if (currentNode == null) {
-            // nothing found to remove
+        return remove(get(root, word, 0), entry);
+    }
+
+    /**
+     * Removes a word given as a slice of a character array from this tree.
+     *
+     * @param word the array holding the word to be removed
+     * @param offset the index of the first character of the word
+     * @param length the number of characters of the word
+     * @param entry the associated collector with values to be removed
+     * @return true if the node in the tree was removed
+     * @throws IndexOutOfBoundsException if the slice is not within the array
+     * @see #remove(String, Collector)
+     */
+    public boolean remove(char[] word, int offset, int length, Entry entry) {
+        // empty or null not allowed
+        if (word == null || length == 0) {
+            return false;
+        }
+        checkSlice(word, offset, length);
+        return remove(get(root, word, offset, length), entry);
+    }
+
+    private boolean remove(TernaryNode<V, Entry> currentNode, Entry entry) {
+        if (currentNode == null || currentNode.getEntry() == null) {
+            // nothing found to remove, the word might only be a prefix of other words
             return false;
         }
+        modCount++;
         // remove found node
         boolean isEmpty = currentNode.getEntry().remove(entry);
         if (! isEmpty) {
             // node is not empty, do not remove this node!
+            updateAggregates(currentNode, false);
             return false;
         }
         currentNode.setEntry(null);
@@ -218,12 +1992,16 @@ public class TernarySearchTree<V, Entry extends Collector<V>> {
                 root = null;
                 return null;
             }
-            currentNode.getParent().replaceKid(currentNode, null);
+            TernaryNode<V, Entry> parent = currentNode.getParent();
+            parent.replaceKid(currentNode, null);
+            // an unlinked node has no parent, removeAll skips it
+            currentNode.setParent(null);
             // continue with parent
-            return currentNode.getParent();
+            return parent;
         }
         if (currentNode.getEqualKid() != null || currentNode.getEntry() != null) {
             // can't remove any node
+            updateAggregates(currentNode, false);
             return null;
         }
         // current node has no equal kid and has no value but one or two children
@@ -239,6 +2017,8 @@ public class TernarySearchTree<V, Entry extends Collector<V>> {
                 currentNode.getParent().replaceKid(currentNode, currentNode.getHigherKid());
             }
             // current node is removed!
+            updateAggregates(currentNode.getParent(), false);
+            currentNode.setParent(null);
             return null;
         }
         if ( currentNode.getHigherKid() == null) {
@@ -253,6 +2033,8 @@ public class TernarySearchTree<V, Entry extends Collector<V>> {
                 currentNode.getParent().replaceKid(currentNode, currentNode.getLowerKid());
             }
             // current node is removed!
+            updateAggregates(currentNode.getParent(), false);
+            currentNode.setParent(null);
             return null;
         }
         // there are two kids - which one will be the kid of the current parent?
@@ -266,9 +2048,17 @@ public class TernarySearchTree<V, Entry extends Collector<V>> {
             }
             TernaryNode<V, Entry> maxParent = max.getParent();
             maxParent.replaceKid(max, max.getLowerKid());
+            if (max.getLowerKid() != null) {
+                max.getLowerKid().setParent(maxParent);
+            }
             currentNode.setEntry(max.getEntry());
             currentNode.setKey(max.getKey());
             currentNode.setEqualKid(max.getEqualKid());
+            if (max.getEqualKid() != null) {
+                max.getEqualKid().setParent(currentNode);
+            }
+            max.setParent(null);
+            updateAggregates(maxParent, false);
         }
         else {
             // search for the min in higher
@@ -278,12 +2068,150 @@ public class TernarySearchTree<V, Entry extends Collector<V>> {
             }
             TernaryNode<V, Entry> minParent = min.getParent();
             minParent.replaceKid(min, min.getHigherKid());
+            if (min.getHigherKid() != null) {
+                min.getHigherKid().setParent(minParent);
+            }
             currentNode.setEntry(min.getEntry());
             currentNode.setKey(min.getKey());
             currentNode.setEqualKid(min.getEqualKid());
+            if (min.getEqualKid() != null) {
+                min.getEqualKid().setParent(currentNode);
+            }
+            min.setParent(null);
+            updateAggregates(minParent, false);
         }
         return null;
     }
-}
 
+    /**
+     * A range of sorted words sharing a prefix that becomes a subtree while bulk loading.
+     */
+    private static class BuildTask<V, Entry extends Collector<V>> {
+        private final int from;
+        private final int to;
+        private final int depth;
+        private final TernaryNode<V, Entry> parent;
+        private final int kind;
+
+        private BuildTask(int from, int to, int depth, TernaryNode<V, Entry> parent, int kind) {
+            this.from = from;
+            this.to = to;
+            this.depth = depth;
+            this.parent = parent;
+            this.kind = kind;
+        }
+    }
+
+    /**
+     * Collects the entries of a subtree in pre-order into a range of the result of findParallel.
+     */
+    private static class CollectTask<V, Entry extends Collector<V>> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final TernaryNode<V, Entry> node;
+        private final Object[] result;
+        // the index of the first entry of the subtree in the result
+        private final int offset;
+
+        private CollectTask(TernaryNode<V, Entry> node, Object[] result, int offset) {
+            this.node = node;
+            this.result = result;
+            this.offset = offset;
+        }
+
+        @Override
+        protected void compute() {
+            if (node.getWordCount() <= PARALLEL_THRESHOLD) {
+                collect();
+                return;
+            }
+            // the entry comes first, then the lower, equal and higher subtrees, each as big as its word count
+            int index = offset;
+            if (node.getEntry() != null) {
+                result[index++] = node.getEntry();
+            }
+            List<CollectTask<V, Entry>> tasks = new ArrayList<>(3);
+            for (TernaryNode<V, Entry> kid : Arrays.asList(node.getLowerKid(), node.getEqualKid(), node.getHigherKid())) {
+                if (kid != null) {
+                    tasks.add(new CollectTask<>(kid, result, index));
+                    index += kid.getWordCount();
+                }
+            }
+            invokeAll(tasks);
+        }
+
+        private void collect() {
+            int index = offset;
+            // avoid recursion
+            Deque<TernaryNode<V, Entry>> deque = new ArrayDeque<>();
+            deque.push(node);
+            while (!deque.isEmpty()) {
+                TernaryNode<V, Entry> currentNode = deque.pop();
+                if (currentNode.getEntry() != null) {
+                    result[index++] = currentNode.getEntry();
+                }
+                if (currentNode.getHigherKid() != null) {
+                    deque.push(currentNode.getHigherKid());
+                }
+                if (currentNode.getEqualKid() != null) {
+                    deque.push(currentNode.getEqualKid());
+                }
+                if (currentNode.getLowerKid() != null) {
+                    deque.push(currentNode.getLowerKid());
+                }
+            }
+        }
+    }
+
+    /**
+     * A growing stack of nodes, reused by the find with an action instead of a new deque per call.
+     */
+    private static final class NodeStack {
+        private Object[] nodes = new Object[64];
+        private int size;
+        // true while a find of the thread uses this stack
+        private boolean isInUse;
 
+        private void push(Object node) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+            }
+            nodes[size++] = node;
+        }
+
+        private Object pop() {
+            Object node = nodes[--size];
+            nodes[size] = null;
+            return node;
+        }
+
+        private boolean isEmpty() {
+            return size == 0;
+        }
+
+        private void clear() {
+            Arrays.fill(nodes, 0, size, null);
+            size = 0;
+        }
+    }
+
+    /**
+     * A node to be visited by the fuzzy search.
+     */
+    private static class FuzzyFrame<V, Entry extends Collector<V>> {
+        private final TernaryNode<V, Entry> node;
+        // the length of the path including the key of the node
+        private final int depth;
+        // the smallest distance of a prefix of the path without the key of the node
+        private final int distance;
+        // true if the rows need not be computed anymore, the distance is final
+        private final boolean isSettled;
+
+        private FuzzyFrame(TernaryNode<V, Entry> node, int depth, int distance, boolean isSettled) {
+            this.node = node;
+            this.depth = depth;
+            this.distance = distance;
+            this.isSettled = isSettled;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.valagja.search.ternarytree.prefix;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+
+/**
+ * Splits a text into the words of a {@link TernarySearchTree} by greedy longest match.
+ *
+ * At each position the longest word of the tree is taken and the scan continues after it,
+ * a character that starts no word is skipped.
+ * Each position costs one walk along the nodes, like {@link TernarySearchTree#longestPrefixOf(CharSequence, int)},
+ * so a text of n characters is scanned in O(n) walks instead of one find per candidate length.
+ *
+ * A {@link Reader} is read in chunks, only the characters from the current position
+ * up to the end of the longest walk are buffered, never the whole text.
+ *
+ * The scanner is fail-fast: if the tree is modified by put or remove after the scanner was created,
+ * the next call of next throws a {@link ConcurrentModificationException}.
+ *
+ * @param <V> the value type a collector holds
+ * @param <Entry> an implementation of a collector
+ */
+public class TokenScanner<V, Entry extends Collector<V>> {
+
+    private static final int CHUNK_SIZE = 4096;
+
+    private final TernarySearchTree<V, Entry> tree;
+    private final int expectedModCount;
+
+    // either the whole text or a reader with a buffer
+    private final CharSequence text;
+    private final Reader reader;
+    private char[] buffer;
+    // the position of the first buffered character in the text
+    private int bufferStart;
+    private int bufferLength;
+    private boolean isEndOfInput;
+
+    // the position of the next character to be scanned
+    private int position;
+
+    /**
+     * Constructs a scanner over a text in memory, e.g. a {@link java.nio.CharBuffer}.
+     *
+     * @param tree the tree holding the words
+     * @param text the input text
+     */
+    public TokenScanner(TernarySearchTree<V, Entry> tree, CharSequence text) {
+        this.tree = tree;
+        this.expectedModCount = tree.getModCount();
+        this.text = text;
+        this.reader = null;
+    }
+
+    /**
+     * Constructs a scanner over a text read from a reader.
+     *
+     * The reader is not closed by the scanner.
+     *
+     * @param tree the tree holding the words
+     * @param reader the input text
+     */
+    public TokenScanner(TernarySearchTree<V, Entry> tree, Reader reader) {
+        this.tree = tree;
+        this.expectedModCount = tree.getModCount();
+        this.text = null;
+        this.reader = reader;
+        this.buffer = new char[CHUNK_SIZE];
+    }
+
+    /**
+     * Scans for the next word of the tree.
+     *
+     * @return the longest word at the next position where a word starts with its collector,
+     * or null if the end of the text is reached
+     * @throws IOException if the reader fails
+     */
+    public PrefixMatch<Entry> next() throws IOException {
+        if (tree.getModCount() != expectedModCount) {
+            throw new ConcurrentModificationException();
+        }
+        while (charAt(position) >= 0) {
+            TernaryNode<V, Entry> match = null;
+            int end = position;
+            TernaryNode<V, Entry> currentNode = tree.getRoot();
+            int counter = position;
+            int key;
+            while (currentNode != null && (key = charAt(counter)) >= 0) {
+                if (key < currentNode.getKey()) {
+                    currentNode = currentNode.getLowerKid();
+                }
+                else if (key > currentNode.getKey()) {
+                    currentNode = currentNode.getHigherKid();
+                }
+                else {
+                    counter++;
+                    if (currentNode.getEntry() != null) {
+                        // a longer match replaces a shorter one
+                        match = currentNode;
+                        end = counter;
+                    }
+                    currentNode = currentNode.getEqualKid();
+                }
+            }
+            if (match != null) {
+                PrefixMatch<Entry> result = new PrefixMatch<>(substring(position, end), match.getEntry(), position);
+                position = end;
+                return result;
+            }
+            // no word starts here
+            position++;
+        }
+        return null;
+    }
+
+    /**
+     * Gets the position of the next character to be scanned.
+     *
+     * @return the number of characters consumed so far
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    private int charAt(int index) throws IOException {
+        if (text != null) {
+            return (index < text.length()) ? text.charAt(index) : -1;
+        }
+        while (index >= bufferStart + bufferLength) {
+            if (isEndOfInput || !fill()) {
+                return -1;
+            }
+        }
+        return buffer[index - bufferStart];
+    }
+
+    private boolean fill() throws IOException {
+        // the characters before the current position are not needed anymore
+        int consumed = position - bufferStart;
+        if (consumed > 0) {
+            System.arraycopy(buffer, consumed, buffer, 0, bufferLength - consumed);
+            bufferStart = position;
+            bufferLength -= consumed;
+        }
+        if (bufferLength + CHUNK_SIZE > buffer.length) {
+            // a walk longer than the buffer
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, bufferLength + CHUNK_SIZE));
+        }
+        int count = reader.read(buffer, bufferLength, CHUNK_SIZE);
+        if (count < 0) {
+            isEndOfInput = true;
+            return false;
+        }
+        bufferLength += count;
+        return true;
+    }
+
+    private String substring(int from, int to) {
+        if (text != null) {
+            return text.subSequence(from, to).toString();
+        }
+        return new String(buffer, from - bufferStart, to - from);
+    }
+}
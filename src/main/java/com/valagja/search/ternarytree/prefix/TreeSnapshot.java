@@ -0,0 +1,183 @@
+package com.valagja.search.ternarytree.prefix;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * The binary snapshot format of a {@link TernarySearchTree}.
+ *
+ * The header holds a magic number, the format version, the number of nodes and a CRC32 checksum of the body.
+ * The body holds the nodes in pre-order, each as its key, a byte telling which entry and kids follow,
+ * and the entry written by a {@link CollectorSerializer}.
+ * Loading links the nodes in the order they are read, no key is compared.
+ * The checksum is verified before the body is parsed, so a corrupt length in the body
+ * can not make a serializer allocate a huge array.
+ */
+final class TreeSnapshot {
+
+    static final int MAGIC = 0x54535431;
+    static final int VERSION = 1;
+
+    // magic, version, node count and checksum
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 8;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final int HAS_ENTRY = 1;
+    private static final int HAS_LOWER_KID = 2;
+    private static final int HAS_EQUAL_KID = 4;
+    private static final int HAS_HIGHER_KID = 8;
+
+    private TreeSnapshot() {
+    }
+
+    static <V, Entry extends Collector<V>> void save(TernaryNode<V, Entry> root, Path path,
+            CollectorSerializer<Entry> serializer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            // the node count and checksum are known at the end, the header is written last
+            channel.position(HEADER_SIZE);
+            CRC32 checksum = new CRC32();
+            // not closed, that would close the channel before the header is written
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new CheckedOutputStream(Channels.newOutputStream(channel), checksum), BUFFER_SIZE));
+            int nodeCount = 0;
+            if (root != null) {
+                // avoid recursion
+                Deque<TernaryNode<V, Entry>> deque = new ArrayDeque<>();
+                deque.push(root);
+                while (!deque.isEmpty()) {
+                    TernaryNode<V, Entry> currentNode = deque.pop();
+                    nodeCount++;
+                    int flags = 0;
+                    if (currentNode.getEntry() != null) {
+                        flags |= HAS_ENTRY;
+                    }
+                    if (currentNode.getLowerKid() != null) {
+                        flags |= HAS_LOWER_KID;
+                    }
+                    if (currentNode.getEqualKid() != null) {
+                        flags |= HAS_EQUAL_KID;
+                    }
+                    if (currentNode.getHigherKid() != null) {
+                        flags |= HAS_HIGHER_KID;
+                    }
+                    out.writeChar(currentNode.getKey());
+                    out.writeByte(flags);
+                    if (currentNode.getEntry() != null) {
+                        serializer.write(currentNode.getEntry(), out);
+                    }
+                    if (currentNode.getHigherKid() != null) {
+                        deque.push(currentNode.getHigherKid());
+                    }
+                    if (currentNode.getEqualKid() != null) {
+                        deque.push(currentNode.getEqualKid());
+                    }
+                    if (currentNode.getLowerKid() != null) {
+                        deque.push(currentNode.getLowerKid());
+                    }
+                }
+            }
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(nodeCount).putLong(checksum.getValue());
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(false);
+        }
+    }
+
+    static <V, Entry extends Collector<V>> TernaryNode<V, Entry> load(Path path,
+            CollectorSerializer<Entry> serializer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    throw new IOException("snapshot too short for the header");
+                }
+            }
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException("not a snapshot of a ternary search tree");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("unsupported snapshot version " + version);
+            }
+            int nodeCount = header.getInt();
+            long expectedChecksum = header.getLong();
+
+            // a first pass over the body, the nodes are only built from a body that is known to be intact
+            CRC32 checksum = new CRC32();
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (channel.read(buffer) >= 0) {
+                checksum.update(buffer.array(), 0, buffer.position());
+                buffer.clear();
+            }
+            if (checksum.getValue() != expectedChecksum) {
+                throw new IOException("corrupt snapshot, checksum mismatch");
+            }
+
+            channel.position(HEADER_SIZE);
+            InputStream body = Channels.newInputStream(channel);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(body, BUFFER_SIZE));
+            TernaryNode<V, Entry> root = null;
+            // avoid recursion, the parents still waiting for a kid and which kid
+            Deque<TernaryNode<V, Entry>> parents = new ArrayDeque<>();
+            Deque<Integer> kinds = new ArrayDeque<>();
+            for (int i = 0; i < nodeCount; i++) {
+                char key = in.readChar();
+                int flags = in.readUnsignedByte();
+                TernaryNode<V, Entry> parent = parents.poll();
+                TernaryNode<V, Entry> node = new TernaryNode<>(key, parent);
+                if (parent == null) {
+                    if (root != null) {
+                        throw new IOException("corrupt snapshot, more than one root");
+                    }
+                    root = node;
+                }
+                else {
+                    switch (kinds.pop()) {
+                        case HAS_LOWER_KID:
+                            parent.setLowerKid(node);
+                            break;
+                        case HAS_EQUAL_KID:
+                            parent.setEqualKid(node);
+                            break;
+                        default:
+                            parent.setHigherKid(node);
+                    }
+                }
+                if ((flags & HAS_ENTRY) != 0) {
+                    node.setEntry(serializer.read(in));
+                }
+                // pre-order, the lower kid is read next
+                for (int kind : new int[]{HAS_HIGHER_KID, HAS_EQUAL_KID, HAS_LOWER_KID}) {
+                    if ((flags & kind) != 0) {
+                        parents.push(node);
+                        kinds.push(kind);
+                    }
+                }
+            }
+            if (!parents.isEmpty() || in.read() >= 0) {
+                throw new IOException("corrupt snapshot, the node count does not match");
+            }
+            return root;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.valagja.search.ternarytree.prefix;
+
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * A thread-safe ternary search tree that publishes each change as new {@link PersistentTernarySearchTree}.
+ *
+ * Writers are serialized, each put or remove replaces the current version with one volatile write.
+ * Readers never lock: find reads the current version, {@link #snapshot()} hands out a version
+ * that stays unchanged for as long as it is used, e.g. by a long running export.
+ *
+ * @param <V> the value type a collector holds
+ * @param <Entry> an implementation of a collector
+ */
+public class VersionedTernarySearchTree<V, Entry extends Collector<V>> {
+
+    private volatile PersistentTernarySearchTree<V, Entry> current;
+
+    // number of versions published so far
+    private volatile long version;
+
+    /**
+     * Constructs an empty tree.
+     *
+     * @param copier creates a copy of a collector, that can be changed without changing the original
+     */
+    public VersionedTernarySearchTree(UnaryOperator<Entry> copier) {
+        current = PersistentTernarySearchTree.empty(copier);
+    }
+
+    /**
+     * Adds a word to the tree associated with a {@link Collector} and publishes the new version.
+     *
+     * @param word the key
+     * @param entry a collector with values, must not be changed afterwards
+     * @see PersistentTernarySearchTree#put(String, Collector)
+     */
+    public synchronized void put(String word, Entry entry) {
+        publish(current.put(word, entry));
+    }
+
+    /**
+     * Removes a word from the tree and publishes the new version.
+     *
+     * A new version is also published if the collector only lost some of its values,
+     * but only the removal of the word itself is reported.
+     *
+     * @param word to be removed
+     * @param entry the associated collector with values to be removed
+     * @return true if the node in the tree was removed (existing collector was empty after removing the specified collector)
+     * @see PersistentTernarySearchTree#remove(String, Collector)
+     */
+    public synchronized boolean remove(String word, Entry entry) {
+        // a changed version only holds the word if its collector kept values
+        return publish(current.remove(word, entry)) && !current.contains(word);
+    }
+
+    /**
+     * Searches the current version for collectors associated with words that starts with the specified prefix.
+     *
+     * @param prefix the search prefix
+     * @return a list of collectors, that contain values
+     */
+    public List<Entry> find(String prefix) {
+        return current.find(prefix);
+    }
+
+    /**
+     * Gets the current version, later changes of this tree are not visible in it.
+     *
+     * @return the current version
+     */
+    public PersistentTernarySearchTree<V, Entry> snapshot() {
+        return current;
+    }
+
+    /**
+     * Gets the number of versions published since construction.
+     *
+     * @return the number of changes
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    private boolean publish(PersistentTernarySearchTree<V, Entry> next) {
+        if (next == current) {
+            // nothing changed
+            return false;
+        }
+        current = next;
+        version++;
+        return true;
+    }
+}
@@ -0,0 +1,16 @@
+package com.valagja.search.ternarytree.prefix;
+
+/**
+ * An object with a weight, e.g. the popularity of a word.
+ *
+ * A {@link Collector} implementing this interface can be ranked by {@link TernarySearchTree#topK(String, int)}.
+ */
+public interface Weighted {
+
+    /**
+     * Gets the weight, higher is better.
+     *
+     * @return the weight
+     */
+    double getWeight();
+}
@@ -0,0 +1,46 @@
+package com.valagja.search.ternarytree.prefix;
+
+/**
+ *  Implements {@link Collector} and {@link Weighted}.
+ *
+ *  Holds many items as set like {@link ItemCollector} and a weight.
+ *  The weight is the highest weight of all added collectors.
+ */
+public class WeightedItemCollector<Item> extends ItemCollector<Item> implements Weighted {
+
+    private double weight;
+
+    /**
+     * Constructs a new WeightedItemCollector containing the specified item.
+     *
+     * @param item the first item of this collector
+     * @param weight the weight
+     */
+    public WeightedItemCollector(Item item, double weight) {
+        super(item);
+        this.weight = weight;
+    }
+
+    /**
+     * Adds the content of the specified collector and takes its weight if it is higher.
+     *
+     * @param anotherCollector the collector which content is added
+     */
+    @Override
+    public void add(Collector<Item> anotherCollector) {
+        super.add(anotherCollector);
+        if (anotherCollector instanceof Weighted) {
+            weight = Math.max(weight, ((Weighted) anotherCollector).getWeight());
+        }
+    }
+
+    /**
+     * Gets the weight.
+     *
+     * @return the highest weight of all added collectors
+     */
+    @Override
+    public double getWeight() {
+        return weight;
+    }
+}
@@ -0,0 +1,163 @@
+package com.valagja.search.ternarytree.prefix;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A parsed pattern of {@link TernarySearchTree#findPattern(String)}.
+ *
+ * Each position of the pattern is a sorted list of disjoint character ranges.
+ * A character matches a position if it is in one of the ranges.
+ */
+class WildcardPattern {
+
+    private final char[][] lows;
+    private final char[][] highs;
+    private final boolean isPrefix;
+
+    private WildcardPattern(char[][] lows, char[][] highs, boolean isPrefix) {
+        this.lows = lows;
+        this.highs = highs;
+        this.isPrefix = isPrefix;
+    }
+
+    /**
+     * Parses a pattern.
+     *
+     * '?' matches any character, '[a-fx]' any character of the class, a '*' at the end any rest of a word.
+     * A backslash escapes the next character.
+     *
+     * @param pattern the pattern
+     * @return the parsed pattern
+     * @throws IllegalArgumentException if the pattern is malformed
+     */
+    static WildcardPattern parse(String pattern) {
+        List<char[]> lowList = new ArrayList<>();
+        List<char[]> highList = new ArrayList<>();
+        boolean isPrefix = false;
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            if (c == '*') {
+                if (i != pattern.length() - 1) {
+                    throw new IllegalArgumentException("'*' is only allowed at the end: " + pattern);
+                }
+                isPrefix = true;
+                i++;
+            }
+            else if (c == '?') {
+                lowList.add(new char[]{Character.MIN_VALUE});
+                highList.add(new char[]{Character.MAX_VALUE});
+                i++;
+            }
+            else if (c == '[') {
+                i = parseClass(pattern, i + 1, lowList, highList);
+            }
+            else {
+                if (c == '\\') {
+                    if (++i == pattern.length()) {
+                        throw new IllegalArgumentException("nothing to escape at the end: " + pattern);
+                    }
+                    c = pattern.charAt(i);
+                }
+                lowList.add(new char[]{c});
+                highList.add(new char[]{c});
+                i++;
+            }
+        }
+        return new WildcardPattern(lowList.toArray(new char[0][]), highList.toArray(new char[0][]), isPrefix);
+    }
+
+    private static int parseClass(String pattern, int i, List<char[]> lowList, List<char[]> highList) {
+        List<char[]> ranges = new ArrayList<>();
+        while (i < pattern.length() && pattern.charAt(i) != ']') {
+            char low = pattern.charAt(i);
+            if (low == '\\' && i + 1 < pattern.length()) {
+                low = pattern.charAt(++i);
+            }
+            char high = low;
+            if (i + 2 < pattern.length() && pattern.charAt(i + 1) == '-' && pattern.charAt(i + 2) != ']') {
+                i += 2;
+                high = pattern.charAt(i);
+                if (high == '\\' && i + 1 < pattern.length()) {
+                    high = pattern.charAt(++i);
+                }
+                if (high < low) {
+                    throw new IllegalArgumentException("invalid range " + low + "-" + high + ": " + pattern);
+                }
+            }
+            ranges.add(new char[]{low, high});
+            i++;
+        }
+        if (i == pattern.length()) {
+            throw new IllegalArgumentException("missing ']': " + pattern);
+        }
+        if (ranges.isEmpty()) {
+            throw new IllegalArgumentException("empty class: " + pattern);
+        }
+        // sort and merge the ranges
+        ranges.sort((first, second) -> first[0] - second[0]);
+        char[] low = new char[ranges.size()];
+        char[] high = new char[ranges.size()];
+        int count = 0;
+        for (char[] range : ranges) {
+            if (count > 0 && range[0] <= high[count - 1] + 1) {
+                high[count - 1] = (char) Math.max(high[count - 1], range[1]);
+            }
+            else {
+                low[count] = range[0];
+                high[count] = range[1];
+                count++;
+            }
+        }
+        lowList.add(Arrays.copyOf(low, count));
+        highList.add(Arrays.copyOf(high, count));
+        // skip ']'
+        return i + 1;
+    }
+
+    /**
+     * Gets the number of characters a word must have, or at least have with a trailing '*'.
+     *
+     * @return the number of positions
+     */
+    int length() {
+        return lows.length;
+    }
+
+    /**
+     * Tells if the pattern ends with '*'.
+     *
+     * @return true if words may be longer than the pattern
+     */
+    boolean isPrefix() {
+        return isPrefix;
+    }
+
+    boolean matches(int position, char key) {
+        char[] low = lows[position];
+        char[] high = highs[position];
+        for (int i = 0; i < low.length && low[i] <= key; i++) {
+            if (key <= high[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Tells if a character lower than the key matches the position.
+     */
+    boolean hasLower(int position, char key) {
+        return lows[position][0] < key;
+    }
+
+    /**
+     * Tells if a character higher than the key matches the position.
+     */
+    boolean hasHigher(int position, char key) {
+        char[] high = highs[position];
+        return high[high.length - 1] > key;
+    }
+}
@@ -0,0 +1,145 @@
+package com.valagja.search.ternarytree.prefix;
+
+import org.testng.annotations.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.*;
+import static com.valagja.search.ternarytree.prefix.TestWords.values;
+import static com.valagja.search.ternarytree.prefix.TestWords.randomWord;
+
+/**
+ * Tests for CachingTernarySearchTree
+ */
+public class CachingTernarySearchTreeTest {
+
+    @Test
+    public void hitsAndInvalidation() {
+        CachingTernarySearchTree<String, SingleStringCollector> tree = new CachingTernarySearchTree<>(100);
+        tree.put("austria", new SingleStringCollector("austria command"));
+        tree.put("aux", new SingleStringCollector("aux command"));
+        tree.put("banana", new SingleStringCollector("banana command"));
+
+        assertEquals(values(tree.find("au")), asList("austria command", "aux command"));
+        assertEquals(values(tree.find("au")), asList("austria command", "aux command"));
+        assertEquals(values(tree.find("b")), asList("banana command"));
+        CacheStatistics statistics = tree.getCacheStatistics();
+        assertEquals(statistics.getHitCount(), 1);
+        assertEquals(statistics.getMissCount(), 2);
+        assertEquals(statistics.getCachedPrefixCount(), 2);
+        assertEquals(statistics.getCachedEntryCount(), 3);
+
+        // only the prefixes of the new word are invalidated
+        tree.put("auto", new SingleStringCollector("auto command"));
+        statistics = tree.getCacheStatistics();
+        assertEquals(statistics.getInvalidationCount(), 1);
+        assertEquals(statistics.getCachedPrefixCount(), 1);
+        assertEquals(values(tree.find("au")), asList("austria command", "aux command", "auto command"));
+        assertEquals(values(tree.find("b")), asList("banana command"));
+        assertEquals(tree.getCacheStatistics().getHitCount(), 2);
+
+        assertTrue(tree.remove("banana", new SingleStringCollector("banana command")));
+        assertTrue(tree.find("b").isEmpty());
+    }
+
+    @Test
+    public void changedCollectorIsSeen() {
+        CachingTernarySearchTree<Integer, ItemCollector<Integer>> tree = new CachingTernarySearchTree<>(100);
+        tree.put("one", new ItemCollector<>(1));
+        assertEquals(new HashSet<>(tree.find("on").get(0).getValues()), new HashSet<>(asList(1)));
+        tree.put("one", new ItemCollector<>(11));
+        assertEquals(new HashSet<>(tree.find("on").get(0).getValues()), new HashSet<>(asList(1, 11)));
+        assertFalse(tree.remove("one", new ItemCollector<>(1)));
+        assertEquals(new HashSet<>(tree.find("on").get(0).getValues()), new HashSet<>(asList(11)));
+        assertTrue(tree.remove("one", new ItemCollector<>(11)));
+        assertTrue(tree.find("on").isEmpty());
+    }
+
+    @Test
+    public void limits() {
+        CachingTernarySearchTree<String, SingleStringCollector> tree = new CachingTernarySearchTree<>(100);
+        for (String word : asList("ab", "ac", "ad", "ae")) {
+            tree.put(word, new SingleStringCollector(word));
+        }
+        assertEquals(values(tree.find("a", 2)), asList("ab", "ac"));
+        assertEquals(values(tree.find("a", 1)), asList("ab"));
+        assertEquals(tree.getCacheStatistics().getHitCount(), 1);
+        // the cached result is too short
+        assertEquals(values(tree.find("a", 3)), asList("ab", "ac", "ad"));
+        assertEquals(values(tree.find("a")), asList("ab", "ac", "ad", "ae"));
+        assertEquals(values(tree.find("a", 3)), asList("ab", "ac", "ad"));
+        assertEquals(tree.getCacheStatistics().getHitCount(), 2);
+        assertEquals(tree.getCacheStatistics().getMissCount(), 3);
+
+        // changing a result does not change the cache
+        tree.find("a").clear();
+        assertEquals(tree.find("a").size(), 4);
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() {
+        CachingTernarySearchTree<String, SingleStringCollector> tree = new CachingTernarySearchTree<>(3);
+        for (String word : asList("ab", "ac", "b", "c", "d")) {
+            tree.put(word, new SingleStringCollector(word));
+        }
+        tree.find("a");
+        tree.find("b");
+        tree.find("a");
+        // needs room for one, b is the least recently used
+        tree.find("c");
+        CacheStatistics statistics = tree.getCacheStatistics();
+        assertEquals(statistics.getEvictionCount(), 1);
+        assertEquals(statistics.getCachedEntryCount(), 3);
+        tree.find("a");
+        assertEquals(tree.getCacheStatistics().getHitCount(), 2);
+        tree.find("b");
+        assertEquals(tree.getCacheStatistics().getHitCount(), 2);
+
+        // too large to be cached
+        tree.put("abc", new SingleStringCollector("abc"));
+        tree.put("abd", new SingleStringCollector("abd"));
+        assertEquals(tree.find("a").size(), 4);
+        assertEquals(tree.find("a").size(), 4);
+        assertEquals(tree.getCacheStatistics().getHitCount(), 2);
+    }
+
+    @Test
+    public void emptyResultsAreEvicted() {
+        CachingTernarySearchTree<String, SingleStringCollector> tree = new CachingTernarySearchTree<>(10);
+        tree.put("word", new SingleStringCollector("word"));
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(tree.find("missing" + i).isEmpty());
+        }
+        CacheStatistics statistics = tree.getCacheStatistics();
+        assertEquals(statistics.getCachedPrefixCount(), 10);
+        assertEquals(statistics.getCachedEntryCount(), 0);
+        assertEquals(statistics.getEvictionCount(), 990);
+        // the latest misses are answered from the cache
+        assertTrue(tree.find("missing999").isEmpty());
+        assertEquals(tree.getCacheStatistics().getHitCount(), 1);
+    }
+
+    @Test
+    public void sameResultsAsTernarySearchTree() {
+        Random random = new Random(31);
+        TernarySearchTree<String, SingleStringCollector> expected = new TernarySearchTree<>();
+        CachingTernarySearchTree<String, SingleStringCollector> tree = new CachingTernarySearchTree<>(50);
+        for (int i = 0; i < 5000; i++) {
+            String word = randomWord(random, 3, 3);
+            if (random.nextInt(3) == 0) {
+                assertEquals(tree.remove(word, new SingleStringCollector(word)), expected.remove(word, new SingleStringCollector(word)));
+            }
+            else {
+                SingleStringCollector entry = new SingleStringCollector(word);
+                tree.put(word, entry);
+                expected.put(word, entry);
+            }
+            String prefix = randomWord(random, 3, 3);
+            int limit = 1 + random.nextInt(20);
+            assertEquals(values(tree.find(prefix, limit)), values(expected.find(prefix, limit)), prefix);
+        }
+        assertTrue(tree.getCacheStatistics().getHitCount() > 0);
+    }
+}
@@ -0,0 +1,108 @@
+package com.valagja.search.ternarytree.prefix;
+
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.testng.Assert.*;
+import static com.valagja.search.ternarytree.prefix.ReferenceComparison.assertBehavesLikeTernarySearchTree;
+import static com.valagja.search.ternarytree.prefix.TestWords.randomWord;
+
+/**
+ * Tests for CompactTernarySearchTree
+ */
+public class CompactTernarySearchTreeTest {
+
+    @Test
+    public void addWords() {
+        CompactTernarySearchTree<String, SingleStringCollector> tree = new CompactTernarySearchTree<>();
+
+        List<SingleStringCollector> result = tree.find("a");
+        assertTrue(result.isEmpty());
+
+        tree.put("austria", new SingleStringCollector("austria command"));
+        tree.put("aux", new SingleStringCollector("aux command"));
+        tree.put("banana", new SingleStringCollector("banana command"));
+
+        result = tree.find("bana");
+        assertEquals(1, result.size());
+        assertEquals("banana command", result.get(0).getValue());
+
+        result = tree.find("au");
+        assertEquals(2, result.size());
+        assertEquals("austria command", result.get(0).getValue());
+        assertEquals("aux command", result.get(1).getValue());
+
+        assertTrue(tree.find("x").isEmpty());
+        assertTrue(tree.find("").isEmpty());
+        assertEquals(14, tree.getNodeCount());
+    }
+
+    @Test
+    public void removeWordsAndReuseSlots() {
+        CompactTernarySearchTree<String, SingleStringCollector> tree = new CompactTernarySearchTree<>(0);
+        String[] inputs = {"is", "in", "iu", "it", "be", "by", "as", "at", "he", "on", "of", "or", "to"};
+        for (String input : inputs) {
+            tree.put(input, new SingleStringCollector(input + " command"));
+        }
+        int nodeCount = tree.getNodeCount();
+
+        for (String input : inputs) {
+            assertEquals(1, tree.find(input).size());
+            assertTrue(tree.remove(input, new SingleStringCollector(input + " command")));
+            assertTrue(tree.find(input).isEmpty());
+            assertFalse(tree.remove(input, new SingleStringCollector(input + " command")));
+        }
+        assertEquals(0, tree.getNodeCount());
+
+        for (String input : inputs) {
+            tree.put(input, new SingleStringCollector(input + " command"));
+        }
+        assertEquals(nodeCount, tree.getNodeCount());
+        tree.trimToSize();
+        for (String input : inputs) {
+            assertEquals(input + " command", tree.find(input).get(0).getValue());
+        }
+    }
+
+    @Test
+    public void removePrefixOfWord() {
+        CompactTernarySearchTree<String, SingleStringCollector> tree = new CompactTernarySearchTree<>();
+        tree.put("austria", new SingleStringCollector("austria command"));
+
+        assertFalse(tree.remove("aus", new SingleStringCollector("austria command")));
+        assertEquals(1, tree.find("a").size());
+    }
+
+    @Test
+    public void behavesLikeTernarySearchTree() {
+        CompactTernarySearchTree<Integer, ItemCollector<Integer>> tree = new CompactTernarySearchTree<>();
+        Random random = new Random(7);
+        assertBehavesLikeTernarySearchTree(compared(tree), random, 20000, () -> randomWord(random, 5, 6));
+    }
+
+    private static ReferenceComparison.ComparedTree compared(CompactTernarySearchTree<Integer, ItemCollector<Integer>> tree) {
+        return new ReferenceComparison.ComparedTree() {
+            @Override
+            public void put(String word, ItemCollector<Integer> entry) {
+                tree.put(word, entry);
+            }
+
+            @Override
+            public boolean remove(String word, ItemCollector<Integer> entry) {
+                return tree.remove(word, entry);
+            }
+
+            @Override
+            public List<ItemCollector<Integer>> find(String prefix) {
+                return tree.find(prefix);
+            }
+
+            @Override
+            public List<ItemCollector<Integer>> find(String prefix, int offset, int limit) {
+                return tree.find(prefix, offset, limit);
+            }
+        };
+    }
+}
@@ -0,0 +1,105 @@
+package com.valagja.search.ternarytree.prefix;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.testng.Assert.*;
+import static com.valagja.search.ternarytree.prefix.ReferenceComparison.assertBehavesLikeTernarySearchTree;
+import static com.valagja.search.ternarytree.prefix.TestWords.randomWord;
+
+/**
+ * Tests for CompressedTernarySearchTree
+ */
+public class CompressedTernarySearchTreeTest {
+
+    @Test
+    public void addWords() {
+        CompressedTernarySearchTree<String, SingleStringCollector> tree = new CompressedTernarySearchTree<>();
+
+        assertTrue(tree.find("a").isEmpty());
+
+        tree.put("austria", new SingleStringCollector("austria command"));
+        assertEquals(1, tree.getNodeCount());
+        tree.put("aux", new SingleStringCollector("aux command"));
+        assertEquals(3, tree.getNodeCount());
+        tree.put("banana", new SingleStringCollector("banana command"));
+        assertEquals(4, tree.getNodeCount());
+        tree.put("au", new SingleStringCollector("au command"));
+        assertEquals(4, tree.getNodeCount());
+
+        List<SingleStringCollector> result = tree.find("bana");
+        assertEquals(1, result.size());
+        assertEquals("banana command", result.get(0).getValue());
+
+        result = tree.find("au");
+        assertEquals(3, result.size());
+        assertEquals("au command", result.get(0).getValue());
+        assertEquals("austria command", result.get(1).getValue());
+        assertEquals("aux command", result.get(2).getValue());
+
+        assertTrue(tree.find("austrian").isEmpty());
+        assertTrue(tree.find("ax").isEmpty());
+        assertTrue(tree.find("").isEmpty());
+    }
+
+    @Test
+    public void removeWordsAndMerge() {
+        CompressedTernarySearchTree<String, SingleStringCollector> tree = new CompressedTernarySearchTree<>();
+        tree.put("austria", new SingleStringCollector("austria command"));
+        tree.put("aux", new SingleStringCollector("aux command"));
+        tree.put("au", new SingleStringCollector("au command"));
+
+        assertFalse(tree.remove("aus", new SingleStringCollector("austria command")));
+        assertTrue(tree.remove("au", new SingleStringCollector("au command")));
+        assertEquals(3, tree.getNodeCount());
+        assertTrue(tree.remove("aux", new SingleStringCollector("aux command")));
+        assertEquals(1, tree.getNodeCount());
+        assertEquals("austria command", tree.find("a").get(0).getValue());
+        assertTrue(tree.remove("austria", new SingleStringCollector("austria command")));
+        assertEquals(0, tree.getNodeCount());
+        assertTrue(tree.find("a").isEmpty());
+    }
+
+    @Test
+    public void behavesLikeTernarySearchTree() {
+        CompressedTernarySearchTree<Integer, ItemCollector<Integer>> tree = new CompressedTernarySearchTree<>();
+        Random random = new Random(5);
+        List<String> words = new ArrayList<>();
+        TernarySearchTree<Integer, ItemCollector<Integer>> expected = assertBehavesLikeTernarySearchTree(compared(tree),
+                random, 5000, () -> {
+                    if (words.isEmpty() || random.nextInt(4) == 0) {
+                        // a short common part and a long tail
+                        words.add(randomWord(random, 2, 4) + randomWord(random, 10, 3));
+                    }
+                    return words.get(random.nextInt(words.size()));
+                });
+        assertTrue(tree.getNodeCount() < expected.getDepthStatistics().getNodeCount());
+    }
+
+    private static ReferenceComparison.ComparedTree compared(CompressedTernarySearchTree<Integer, ItemCollector<Integer>> tree) {
+        return new ReferenceComparison.ComparedTree() {
+            @Override
+            public void put(String word, ItemCollector<Integer> entry) {
+                tree.put(word, entry);
+            }
+
+            @Override
+            public boolean remove(String word, ItemCollector<Integer> entry) {
+                return tree.remove(word, entry);
+            }
+
+            @Override
+            public List<ItemCollector<Integer>> find(String prefix) {
+                return tree.find(prefix);
+            }
+
+            @Override
+            public List<ItemCollector<Integer>> find(String prefix, int offset, int limit) {
+                return tree.find(prefix, offset, limit);
+            }
+        };
+    }
+}
@@ -0,0 +1,205 @@
+package com.valagja.search.ternarytree.prefix;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.testng.Assert.*;
+import static com.valagja.search.ternarytree.prefix.TestWords.values;
+import static com.valagja.search.ternarytree.prefix.TestWords.randomWord;
+
+/**
+ * Tests for ConcurrentTernarySearchTree
+ */
+public class ConcurrentTernarySearchTreeTest {
+
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+
+    @Test
+    public void addWords() {
+        ConcurrentTernarySearchTree<String, SingleStringCollector> tree = new ConcurrentTernarySearchTree<>();
+
+        assertTrue(tree.find("a").isEmpty());
+
+        tree.put("austria", new SingleStringCollector("austria command"));
+        tree.put("aux", new SingleStringCollector("aux command"));
+        tree.put("banana", new SingleStringCollector("banana command"));
+
+        List<SingleStringCollector> result = tree.find("au");
+        assertEquals(2, result.size());
+        assertEquals("austria command", result.get(0).getValue());
+        assertEquals("aux command", result.get(1).getValue());
+
+        result = tree.find("au", 1);
+        assertEquals(1, result.size());
+        assertEquals("austria command", result.get(0).getValue());
+
+        assertTrue(tree.find("x").isEmpty());
+        assertTrue(tree.find("").isEmpty());
+        assertTrue(tree.find(null).isEmpty());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void findWithNegativeLimit() {
+        new ConcurrentTernarySearchTree<String, SingleStringCollector>().find("a", -1);
+    }
+
+    @Test
+    public void sameResultsAsTernarySearchTree() {
+        Random random = new Random(7);
+        TernarySearchTree<String, SingleStringCollector> expected = new TernarySearchTree<>();
+        ConcurrentTernarySearchTree<String, SingleStringCollector> tree = new ConcurrentTernarySearchTree<>();
+        for (int i = 0; i < 5000; i++) {
+            String word = randomWord(random);
+            if (random.nextInt(3) == 0) {
+                assertEquals(tree.remove(word, new SingleStringCollector(word)),
+                        expected.remove(word, new SingleStringCollector(word)), word);
+            }
+            else {
+                tree.put(word, new SingleStringCollector(word));
+                expected.put(word, new SingleStringCollector(word));
+            }
+            String prefix = randomWord(random);
+            // the order depends on the shape, remove restructures the trees differently
+            assertEquals(new HashSet<>(values(tree.find(prefix))), new HashSet<>(values(expected.find(prefix))), prefix);
+        }
+    }
+
+    @Test
+    public void removeAllWords() {
+        ConcurrentTernarySearchTree<String, SingleStringCollector> tree = new ConcurrentTernarySearchTree<>();
+        String[] inputs = {"is", "in", "iu", "it", "be", "by", "as", "at", "he", "on", "of", "or", "to", "i"};
+        for (String input : inputs) {
+            tree.put(input, new SingleStringCollector(input));
+        }
+        for (String input : inputs) {
+            assertTrue(tree.remove(input, new SingleStringCollector(input)));
+            assertFalse(tree.remove(input, new SingleStringCollector(input)));
+            assertTrue(tree.find(input).isEmpty());
+        }
+        for (char c = 'a'; c <= 'z'; c++) {
+            assertTrue(tree.find(String.valueOf(c)).isEmpty());
+        }
+    }
+
+    @Test(timeOut = 60000)
+    public void concurrentWritersAndReaders() throws Exception {
+        ConcurrentTernarySearchTree<String, SingleStringCollector> tree = new ConcurrentTernarySearchTree<>();
+        // every writer owns its words, but the words of all writers share prefixes and nodes
+        List<List<String>> ownWords = new ArrayList<>();
+        Set<String> allWords = new HashSet<>();
+        Random random = new Random(11);
+        for (int i = 0; i < WRITERS; i++) {
+            ownWords.add(new ArrayList<>());
+        }
+        while (allWords.size() < 2000) {
+            String word = randomWord(random) + randomWord(random);
+            if (allWords.add(word)) {
+                ownWords.get(allWords.size() % WRITERS).add(word);
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean isWriting = new AtomicBoolean(true);
+        List<Future<Set<String>>> writers = new ArrayList<>();
+        List<Future<Integer>> readers = new ArrayList<>();
+        try {
+            for (int i = 0; i < WRITERS; i++) {
+                List<String> words = ownWords.get(i);
+                long seed = i;
+                writers.add(executor.submit(() -> write(tree, words, seed, start)));
+            }
+            for (int i = 0; i < READERS; i++) {
+                long seed = 100 + i;
+                readers.add(executor.submit(() -> read(tree, seed, start, isWriting)));
+            }
+            start.countDown();
+
+            Set<String> expected = new HashSet<>();
+            for (Future<Set<String>> writer : writers) {
+                expected.addAll(writer.get());
+            }
+            isWriting.set(false);
+            for (Future<Integer> reader : readers) {
+                assertTrue(reader.get() > 0);
+            }
+
+            // all writers are done, the tree holds exactly the remaining words of every writer
+            Set<String> actual = new HashSet<>();
+            for (char c = 'a'; c <= 'd'; c++) {
+                actual.addAll(values(tree.find(String.valueOf(c))));
+            }
+            assertEquals(actual, expected);
+            for (String word : allWords) {
+                List<SingleStringCollector> result = tree.find(word, 1);
+                assertEquals(!result.isEmpty() && word.equals(result.get(0).getValue()), expected.contains(word), word);
+            }
+        }
+        finally {
+            executor.shutdownNow();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Puts and removes the own words in random order.
+     *
+     * @return the words left in the tree
+     */
+    private Set<String> write(ConcurrentTernarySearchTree<String, SingleStringCollector> tree, List<String> words,
+            long seed, CountDownLatch start) throws InterruptedException {
+        Random random = new Random(seed);
+        Set<String> present = new HashSet<>();
+        start.await();
+        for (int i = 0; i < 50000; i++) {
+            String word = words.get(random.nextInt(words.size()));
+            if (present.contains(word)) {
+                assertTrue(tree.remove(word, new SingleStringCollector(word)), word);
+                present.remove(word);
+            }
+            else {
+                tree.put(word, new SingleStringCollector(word));
+                present.add(word);
+            }
+        }
+        return present;
+    }
+
+    /**
+     * Runs find while the writers are busy and checks that only matching words are found.
+     *
+     * @return the number of finds
+     */
+    private int read(ConcurrentTernarySearchTree<String, SingleStringCollector> tree, long seed,
+            CountDownLatch start, AtomicBoolean isWriting) throws InterruptedException {
+        Random random = new Random(seed);
+        int count = 0;
+        start.await();
+        while (isWriting.get() || count == 0) {
+            String prefix = randomWord(random);
+            int limit = random.nextBoolean() ? Integer.MAX_VALUE : 1 + random.nextInt(5);
+            List<SingleStringCollector> result = tree.find(prefix, limit);
+            assertTrue(result.size() <= limit);
+            for (SingleStringCollector entry : result) {
+                assertNotNull(entry);
+                String value = entry.getValue();
+                // the value is null if the word was just removed
+                assertTrue(value == null || value.startsWith(prefix), value + " does not start with " + prefix);
+            }
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,93 @@
+package com.valagja.search.ternarytree.prefix;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.testng.Assert.*;
+
+/**
+ * Tests for IntCollector
+ */
+public class IntCollectorTest {
+
+    @Test
+    public void addAndRemove() {
+        IntCollector collector = new IntCollector(5);
+        collector.add(new IntCollector(3, 9, 5, 3));
+        assertEquals(collector.toArray(), new int[]{3, 5, 9});
+        assertEquals(collector.getValue(), Integer.valueOf(3));
+        assertEquals(collector.getValues().toString(), "[3, 5, 9]");
+        assertTrue(collector.contains(9));
+        assertFalse(collector.contains(4));
+
+        collector.add(new ItemCollector<>(4));
+        assertEquals(collector.toArray(), new int[]{3, 4, 5, 9});
+
+        assertFalse(collector.remove(new IntCollector(3, 9, 11)));
+        assertEquals(collector.toArray(), new int[]{4, 5});
+        assertFalse(collector.remove(new ItemCollector<>(4)));
+        assertTrue(collector.remove(new IntCollector(5)));
+        assertEquals(collector.size(), 0);
+        assertNull(collector.getValue());
+    }
+
+    @Test
+    public void primitiveAccess() {
+        IntCollector collector = new IntCollector(7, 1, 4);
+        List<Integer> ids = new ArrayList<>();
+        collector.forEachId(ids::add);
+        assertEquals(ids.toString(), "[1, 4, 7]");
+        assertEquals(collector.getId(1), 4);
+        int sum = 0;
+        for (PrimitiveIterator.OfInt iterator = collector.intIterator(); iterator.hasNext(); ) {
+            sum += iterator.nextInt();
+        }
+        assertEquals(sum, 12);
+    }
+
+    @Test
+    public void likeTreeSet() {
+        Random random = new Random(23);
+        IntCollector collector = new IntCollector(0);
+        TreeSet<Integer> expected = new TreeSet<>();
+        expected.add(0);
+        for (int i = 0; i < 2000; i++) {
+            int[] others = new int[random.nextInt(20)];
+            for (int j = 0; j < others.length; j++) {
+                others[j] = random.nextInt(300);
+            }
+            IntCollector another = new IntCollector(others);
+            if (random.nextInt(3) == 0) {
+                for (int other : others) {
+                    expected.remove(other);
+                }
+                assertEquals(collector.remove(another), expected.isEmpty());
+            }
+            else {
+                for (int other : others) {
+                    expected.add(other);
+                }
+                collector.add(another);
+            }
+            assertEquals(new ArrayList<>(collector.getValues()), new ArrayList<>(expected));
+        }
+    }
+
+    @Test
+    public void inTree() {
+        TernarySearchTree<Integer, IntCollector> ternarySearchTree = new TernarySearchTree<>();
+        ternarySearchTree.put("hello", new IntCollector(1));
+        ternarySearchTree.put("hello", new IntCollector(2));
+        ternarySearchTree.put("help", new IntCollector(2));
+
+        assertEquals(ternarySearchTree.find("hel").get(0).toArray(), new int[]{1, 2});
+        assertFalse(ternarySearchTree.remove("hello", new IntCollector(1)));
+        assertTrue(ternarySearchTree.remove("hello", new IntCollector(2)));
+        assertEquals(ternarySearchTree.find("hel").size(), 1);
+    }
+}
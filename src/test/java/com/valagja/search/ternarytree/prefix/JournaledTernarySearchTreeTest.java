@@ -0,0 +1,355 @@
+package com.valagja.search.ternarytree.prefix;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.*;
+import static com.valagja.search.ternarytree.prefix.TestWords.values;
+
+/**
+ * Tests for JournaledTernarySearchTree
+ */
+public class JournaledTernarySearchTreeTest {
+
+    private Path directory;
+
+    @BeforeMethod
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("journal");
+    }
+
+    @AfterMethod
+    public void deleteDirectory() throws IOException {
+        for (String file : files()) {
+            Files.delete(directory.resolve(file));
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void replayLogAfterRestart() throws IOException {
+        try (JournaledTernarySearchTree<String, SingleStringCollector> tree = open()) {
+            tree.put("austria", new SingleStringCollector("austria command"));
+            tree.put("aux", new SingleStringCollector("aux command"));
+            tree.put("banana", new SingleStringCollector("banana command"));
+            assertTrue(tree.remove("austria", new SingleStringCollector("austria command")));
+            assertEquals(values(tree.find("au")), asList("aux command"));
+        }
+        try (JournaledTernarySearchTree<String, SingleStringCollector> tree = open()) {
+            assertEquals(values(tree.find("au")), asList("aux command"));
+            assertEquals(values(tree.find("b")), asList("banana command"));
+            tree.put("austria", new SingleStringCollector("austria again"));
+        }
+        try (JournaledTernarySearchTree<String, SingleStringCollector> tree = open()) {
+            assertEquals(values(tree.find("au")), asList("aux command", "austria again"));
+        }
+    }
+
+    @Test
+    public void dropTornRecord() throws IOException {
+        try (JournaledTernarySearchTree<String, SingleStringCollector> tree = open()) {
+            tree.put("hello", new SingleStringCollector("hello command"));
+        }
+        // a record whose write was cut by a crash
+        Files.write(directory.resolve("log-0"), new byte[]{0, 0, 0, 40, 1, 0}, StandardOpenOption.APPEND);
+        try (JournaledTernarySearchTree<String, SingleStringCollector> tree = open()) {
+            assertEquals(values(tree.find("h")), asList("hello command"));
+            tree.put("help", new SingleStringCollector("help command"));
+        }
+        try (JournaledTernarySearchTree<String, SingleStringCollector> tree = open()) {
+            assertEquals(values(tree.find("hel")), asList("hello command", "help command"));
+        }
+    }
+
+    @Test
+    public void compact() throws IOException {
+        try (JournaledTernarySearchTree<String, SingleStringCollector> tree = open()) {
+            tree.put("one", new SingleStringCollector("one"));
+            tree.put("two", new SingleStringCollector("two"));
+            tree.compact();
+            assertEquals(files(), new HashSet<>(asList("snapshot-1", "log-1")));
+            tree.remove("one", new SingleStringCollector("one"));
+            tree.put("three", new SingleStringCollector("three"));
+        }
+        try (JournaledTernarySearchTree<String, SingleStringCollector> tree = open()) {
+            assertTrue(tree.find("o").isEmpty());
+            assertEquals(values(tree.find("t")), asList("three", "two"));
+        }
+    }
+
+    @Test
+    public void keepSnapshotOfInterruptedCompaction() throws IOException {
+        try (JournaledTernarySearchTree<String, SingleStringCollector> tree = open()) {
+            tree.put("one", new SingleStringCollector("one"));
+            tree.compact();
+            tree.put("two", new SingleStringCollector("two"));
+        }
+        // a crash after the next log was created but before its snapshot was moved into place
+        Files.createFile(directory.resolve("log-2"));
+        for (int i = 0; i < 2; i++) {
+            try (JournaledTernarySearchTree<String, SingleStringCollector> tree = open()) {
+                assertEquals(values(tree.find("one")), asList("one"));
+                assertEquals(values(tree.find("two")), asList("two"));
+            }
+            assertEquals(files(), new HashSet<>(asList("snapshot-1", "log-1", "log-2")));
+        }
+    }
+
+    @Test(timeOut = 10000)
+    public void writeWhileCompacting() throws Exception {
+        BlockingSerializer serializer = new BlockingSerializer();
+        try (JournaledTernarySearchTree<String, SingleStringCollector> tree = JournaledTernarySearchTree.open(directory, serializer)) {
+            tree.put("one", new SingleStringCollector("one"));
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                Future<?> compaction = executor.submit(() -> {
+                    serializer.blockedThread = Thread.currentThread();
+                    tree.compact();
+                    return null;
+                });
+                serializer.writing.await();
+                // the snapshot is being written
+                tree.put("two", new SingleStringCollector("two"));
+                assertEquals(values(tree.find("two")), asList("two"));
+                serializer.release.countDown();
+                compaction.get();
+            }
+            finally {
+                executor.shutdown();
+            }
+        }
+        try (JournaledTernarySearchTree<String, SingleStringCollector> tree = open()) {
+            assertEquals(values(tree.find("one")), asList("one"));
+            assertEquals(values(tree.find("two")), asList("two"));
+        }
+    }
+
+    @Test
+    public void retryBatchOfFailedWrite() throws IOException {
+        AtomicInteger failures = new AtomicInteger();
+        try (JournaledTernarySearchTree<String, SingleStringCollector> tree = JournaledTernarySearchTree.open(directory,
+                new SingleStringCollectorSerializer(), (path, options) -> new FailingChannel(FileChannel.open(path, options), failures))) {
+            tree.put("one", new SingleStringCollector("one"));
+            // half of the record reaches the log
+            failures.set(1);
+            try {
+                tree.put("two", new SingleStringCollector("two"));
+                fail("the write did not fail");
+            }
+            catch (IOException e) {
+                // expected
+            }
+            tree.put("three", new SingleStringCollector("three"));
+        }
+        try (JournaledTernarySearchTree<String, SingleStringCollector> tree = open()) {
+            assertEquals(values(tree.find("o")), asList("one"));
+            assertEquals(values(tree.find("t")), asList("three", "two"));
+        }
+    }
+
+    @Test
+    public void compactInBackground() throws Exception {
+        List<String> words = new ArrayList<>();
+        try (JournaledTernarySearchTree<String, SingleStringCollector> tree = open()) {
+            tree.setCompactionThreshold(512);
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                List<Future<?>> writers = new ArrayList<>();
+                for (int i = 0; i < 4; i++) {
+                    List<String> own = new ArrayList<>();
+                    for (int j = 0; j < 100; j++) {
+                        own.add("word" + i + "x" + j);
+                    }
+                    words.addAll(own);
+                    writers.add(executor.submit(() -> {
+                        for (String word : own) {
+                            tree.put(word, new SingleStringCollector(word));
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> writer : writers) {
+                    writer.get();
+                }
+            }
+            finally {
+                executor.shutdown();
+            }
+        }
+        // a compaction has run and deleted the oldest log
+        assertFalse(files().contains("log-0"));
+        try (JournaledTernarySearchTree<String, SingleStringCollector> tree = open()) {
+            assertEquals(new HashSet<>(values(tree.find("word"))), new HashSet<>(words));
+        }
+    }
+
+    private JournaledTernarySearchTree<String, SingleStringCollector> open() throws IOException {
+        return JournaledTernarySearchTree.open(directory, new SingleStringCollectorSerializer());
+    }
+
+    private Set<String> files() throws IOException {
+        Set<String> names = new HashSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                names.add(file.getFileName().toString());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * A serializer that holds up the writes of one thread until it is released.
+     */
+    private static class BlockingSerializer extends SingleStringCollectorSerializer {
+        private final CountDownLatch writing = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private volatile Thread blockedThread;
+
+        @Override
+        public void write(SingleStringCollector entry, DataOutput out) throws IOException {
+            if (Thread.currentThread() == blockedThread) {
+                writing.countDown();
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+            super.write(entry, out);
+        }
+    }
+
+    /**
+     * A channel whose next writes fail after writing half of the bytes, like a full disk.
+     */
+    private static class FailingChannel extends FileChannel {
+        private final FileChannel channel;
+        private final AtomicInteger failures;
+
+        private FailingChannel(FileChannel channel, AtomicInteger failures) {
+            this.channel = channel;
+            this.failures = failures;
+        }
+
+        @Override
+        public int write(ByteBuffer source) throws IOException {
+            if (failures.getAndUpdate(count -> Math.max(0, count - 1)) == 0) {
+                return channel.write(source);
+            }
+            ByteBuffer half = source.duplicate();
+            half.limit(half.position() + half.remaining() / 2);
+            channel.write(half);
+            source.position(half.position());
+            throw new IOException("no space left");
+        }
+
+        @Override
+        public int read(ByteBuffer destination) throws IOException {
+            return channel.read(destination);
+        }
+
+        @Override
+        public long read(ByteBuffer[] destinations, int offset, int length) throws IOException {
+            return channel.read(destinations, offset, length);
+        }
+
+        @Override
+        public long write(ByteBuffer[] sources, int offset, int length) throws IOException {
+            return channel.write(sources, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return channel.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            channel.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            channel.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            channel.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return channel.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel source, long position, long count) throws IOException {
+            return channel.transferFrom(source, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer destination, long position) throws IOException {
+            return channel.read(destination, position);
+        }
+
+        @Override
+        public int write(ByteBuffer source, long position) throws IOException {
+            return channel.write(source, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return channel.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return channel.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return channel.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            channel.close();
+        }
+    }
+}
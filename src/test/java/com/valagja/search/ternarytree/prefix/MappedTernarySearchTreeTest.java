@@ -0,0 +1,87 @@
+package com.valagja.search.ternarytree.prefix;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.Random;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.*;
+import static com.valagja.search.ternarytree.prefix.TestWords.values;
+
+/**
+ * Tests for MappedTernarySearchTree
+ */
+public class MappedTernarySearchTreeTest extends TempFileTest {
+
+    public MappedTernarySearchTreeTest() {
+        super(".mapped");
+    }
+
+    @Test
+    public void addWords() throws IOException {
+        TernarySearchTree<String, SingleStringCollector> tree = new TernarySearchTree<>();
+        tree.put("austria", new SingleStringCollector("austria command"));
+        tree.put("aux", new SingleStringCollector("aux command"));
+        tree.put("banana", new SingleStringCollector("banana command"));
+        MappedTernarySearchTree.build(tree, file, new SingleStringCollectorSerializer());
+
+        MappedTernarySearchTree<String, SingleStringCollector> mapped = MappedTernarySearchTree.open(file, new SingleStringCollectorSerializer());
+        assertEquals(mapped.getNodeCount(), 14);
+        assertEquals(values(mapped.find("au")), asList("austria command", "aux command"));
+        assertEquals(values(mapped.find("au", 1)), asList("austria command"));
+        assertEquals(values(mapped.find("banana")), asList("banana command"));
+        assertTrue(mapped.find("x").isEmpty());
+        assertTrue(mapped.find("").isEmpty());
+        assertEquals(mapped.get("aux").getValue(), "aux command");
+        assertNull(mapped.get("au"));
+        assertNull(mapped.get("auxiliary"));
+    }
+
+    @Test
+    public void sameResultsAsTernarySearchTree() throws IOException {
+        Random random = new Random(29);
+        TernarySearchTree<Integer, IntCollector> tree = new TernarySearchTree<>();
+        for (int i = 0; i < 5000; i++) {
+            char[] word = new char[1 + random.nextInt(8)];
+            for (int j = 0; j < word.length; j++) {
+                word[j] = (char) ('a' + random.nextInt(6));
+            }
+            tree.put(new String(word), new IntCollector(i, -i));
+        }
+        MappedTernarySearchTree.build(tree, file, new IntCollectorSerializer());
+
+        MappedTernarySearchTree<Integer, IntCollector> mapped = MappedTernarySearchTree.open(file, new IntCollectorSerializer());
+        assertEquals(mapped.getNodeCount(), tree.getDepthStatistics().getNodeCount());
+        for (String prefix : asList("a", "b", "fe", "abc", "cafe", "x")) {
+            List<IntCollector> expected = tree.find(prefix);
+            List<IntCollector> actual = mapped.find(prefix);
+            assertEquals(actual.size(), expected.size(), prefix);
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(actual.get(i).toArray(), expected.get(i).toArray(), prefix);
+            }
+        }
+    }
+
+    @Test
+    public void emptyTree() throws IOException {
+        MappedTernarySearchTree.build(new TernarySearchTree<String, SingleStringCollector>(), file, new SingleStringCollectorSerializer());
+        MappedTernarySearchTree<String, SingleStringCollector> mapped = MappedTernarySearchTree.open(file, new SingleStringCollectorSerializer());
+        assertEquals(mapped.getNodeCount(), 0);
+        assertTrue(mapped.find("a").isEmpty());
+        assertNull(mapped.get("a"));
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void rejectTruncatedFile() throws IOException {
+        TernarySearchTree<String, SingleStringCollector> tree = new TernarySearchTree<>();
+        tree.put("hello", new SingleStringCollector("hello command"));
+        MappedTernarySearchTree.build(tree, file, new SingleStringCollectorSerializer());
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(raf.length() - 1);
+        }
+        MappedTernarySearchTree.open(file, new SingleStringCollectorSerializer());
+    }
+}
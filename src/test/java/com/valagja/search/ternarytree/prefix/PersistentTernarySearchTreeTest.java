@@ -0,0 +1,146 @@
+package com.valagja.search.ternarytree.prefix;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.function.UnaryOperator;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.*;
+import static com.valagja.search.ternarytree.prefix.TestWords.values;
+import static com.valagja.search.ternarytree.prefix.TestWords.randomWord;
+
+/**
+ * Tests for PersistentTernarySearchTree and VersionedTernarySearchTree
+ */
+public class PersistentTernarySearchTreeTest {
+
+    private static final UnaryOperator<SingleStringCollector> COPIER = entry -> new SingleStringCollector(entry.getValue());
+
+    @Test
+    public void addWords() {
+        PersistentTernarySearchTree<String, SingleStringCollector> tree = PersistentTernarySearchTree.empty(COPIER);
+        assertTrue(tree.isEmpty());
+        assertTrue(tree.find("a").isEmpty());
+
+        tree = tree.put("austria", new SingleStringCollector("austria command"))
+                .put("aux", new SingleStringCollector("aux command"))
+                .put("banana", new SingleStringCollector("banana command"));
+
+        assertFalse(tree.isEmpty());
+        assertEquals(values(tree.find("au")), asList("austria command", "aux command"));
+        assertEquals(values(tree.find("au", 1)), asList("austria command"));
+        assertEquals(values(tree.find("banana")), asList("banana command"));
+        assertTrue(tree.find("x").isEmpty());
+        assertTrue(tree.find("").isEmpty());
+        assertSame(tree.put(null, new SingleStringCollector("x")), tree);
+    }
+
+    @Test
+    public void snapshotsDoNotChange() {
+        PersistentTernarySearchTree<String, SingleStringCollector> first = PersistentTernarySearchTree.<String, SingleStringCollector>empty(COPIER)
+                .put("he", new SingleStringCollector("he"))
+                .put("hello", new SingleStringCollector("hello"));
+        PersistentTernarySearchTree<String, SingleStringCollector> second = first
+                .put("help", new SingleStringCollector("help"))
+                .put("he", new SingleStringCollector("he again"));
+        PersistentTernarySearchTree<String, SingleStringCollector> third = second
+                .remove("hello", new SingleStringCollector("hello"))
+                .remove("he", new SingleStringCollector("he again"));
+
+        assertEquals(values(first.find("he")), asList("he", "hello"));
+        assertEquals(values(second.find("he")), asList("he again", "hello", "help"));
+        assertEquals(values(third.find("he")), asList("help"));
+        // the untouched word is shared, not copied
+        assertSame(second.find("hello").get(0), first.find("hello").get(0));
+        assertSame(third.remove("unknown", new SingleStringCollector("unknown")), third);
+        assertSame(third.remove("he", new SingleStringCollector("he")), third);
+
+        PersistentTernarySearchTree<String, SingleStringCollector> empty = third.remove("help", new SingleStringCollector("help"));
+        assertTrue(empty.isEmpty());
+        assertEquals(values(third.find("he")), asList("help"));
+    }
+
+    @Test
+    public void sameOrderAsTernarySearchTree() {
+        Random random = new Random(5);
+        TernarySearchTree<String, SingleStringCollector> expected = new TernarySearchTree<>();
+        PersistentTernarySearchTree<String, SingleStringCollector> tree = PersistentTernarySearchTree.empty(COPIER);
+        for (int i = 0; i < 500; i++) {
+            String word = randomWord(random);
+            expected.put(word, new SingleStringCollector(word));
+            tree = tree.put(word, new SingleStringCollector(word));
+        }
+        for (char c = 'a'; c <= 'd'; c++) {
+            String prefix = String.valueOf(c);
+            assertEquals(values(tree.find(prefix)), values(expected.find(prefix)));
+        }
+    }
+
+    @Test
+    public void randomPutAndRemove() {
+        Random random = new Random(3);
+        TernarySearchTree<String, SingleStringCollector> expected = new TernarySearchTree<>();
+        PersistentTernarySearchTree<String, SingleStringCollector> tree = PersistentTernarySearchTree.empty(COPIER);
+        List<PersistentTernarySearchTree<String, SingleStringCollector>> versions = new ArrayList<>();
+        List<List<String>> versionValues = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            String word = randomWord(random);
+            if (random.nextInt(3) == 0) {
+                boolean isRemoved = expected.remove(word, new SingleStringCollector(word));
+                PersistentTernarySearchTree<String, SingleStringCollector> next = tree.remove(word, new SingleStringCollector(word));
+                assertEquals(next != tree, isRemoved, word);
+                tree = next;
+            }
+            else {
+                expected.put(word, new SingleStringCollector(word));
+                tree = tree.put(word, new SingleStringCollector(word));
+            }
+            String prefix = randomWord(random);
+            // the order depends on the shape, remove restructures the trees differently
+            assertEquals(new HashSet<>(values(tree.find(prefix))), new HashSet<>(values(expected.find(prefix))), prefix);
+            if (i % 100 == 0) {
+                versions.add(tree);
+                versionValues.add(values(tree.find("b")));
+            }
+        }
+        for (int i = 0; i < versions.size(); i++) {
+            assertEquals(values(versions.get(i).find("b")), versionValues.get(i));
+        }
+    }
+
+    @Test
+    public void versionedTreePublishesSnapshots() {
+        VersionedTernarySearchTree<String, SingleStringCollector> tree = new VersionedTernarySearchTree<>(COPIER);
+        tree.put("tea", new SingleStringCollector("tea"));
+        PersistentTernarySearchTree<String, SingleStringCollector> snapshot = tree.snapshot();
+        tree.put("ten", new SingleStringCollector("ten"));
+        assertTrue(tree.remove("tea", new SingleStringCollector("tea")));
+        assertFalse(tree.remove("tea", new SingleStringCollector("tea")));
+
+        assertEquals(values(tree.find("te")), asList("ten"));
+        assertEquals(values(snapshot.find("te")), asList("tea"));
+        assertEquals(tree.getVersion(), 3);
+    }
+
+    @Test
+    public void removeReportsOnlyRemovedWords() {
+        VersionedTernarySearchTree<Integer, IntCollector> tree = new VersionedTernarySearchTree<>(
+                entry -> new IntCollector(entry.toArray()));
+        tree.put("tea", new IntCollector(1, 2));
+        assertTrue(tree.snapshot().contains("tea"));
+        assertFalse(tree.snapshot().contains("te"));
+
+        // the word keeps a value
+        assertFalse(tree.remove("tea", new IntCollector(1)));
+        assertEquals(tree.getVersion(), 2);
+        assertTrue(tree.snapshot().contains("tea"));
+
+        assertTrue(tree.remove("tea", new IntCollector(2)));
+        assertEquals(tree.getVersion(), 3);
+        assertFalse(tree.snapshot().contains("tea"));
+    }
+}
@@ -0,0 +1,80 @@
+package com.valagja.search.ternarytree.prefix;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static org.testng.Assert.*;
+import static com.valagja.search.ternarytree.prefix.TestWords.valueSets;
+
+/**
+ * Runs random puts and removes on a tree and on a {@link TernarySearchTree} as reference and compares their results
+ */
+final class ReferenceComparison {
+
+    private static final int CHECK_INTERVAL = 1000;
+
+    private ReferenceComparison() {
+    }
+
+    /**
+     * The operations a compared tree has in common with {@link TernarySearchTree}.
+     */
+    interface ComparedTree {
+
+        void put(String word, ItemCollector<Integer> entry);
+
+        boolean remove(String word, ItemCollector<Integer> entry);
+
+        List<ItemCollector<Integer>> find(String prefix);
+
+        List<ItemCollector<Integer>> find(String prefix, int offset, int limit);
+    }
+
+    /**
+     * Removes a third of the drawn words and puts the others, each with one of three values,
+     * and compares the finds of all prefixes of the put words now and then.
+     *
+     * @param actual the tree being tested
+     * @param random the source of the operations
+     * @param operationCount the number of puts and removes
+     * @param words draws the next word
+     * @return the reference tree after all operations
+     */
+    static TernarySearchTree<Integer, ItemCollector<Integer>> assertBehavesLikeTernarySearchTree(ComparedTree actual,
+            Random random, int operationCount, Supplier<String> words) {
+        TernarySearchTree<Integer, ItemCollector<Integer>> expected = new TernarySearchTree<>();
+        Set<String> prefixes = new HashSet<>();
+        for (int i = 0; i < operationCount; i++) {
+            String word = words.get();
+            int value = random.nextInt(3);
+            if (random.nextInt(3) == 0) {
+                assertEquals(actual.remove(word, new ItemCollector<>(value)),
+                        expected.remove(word, new ItemCollector<>(value)), word);
+            }
+            else {
+                for (int length = 1; length <= word.length(); length++) {
+                    prefixes.add(word.substring(0, length));
+                }
+                expected.put(word, new ItemCollector<>(value));
+                actual.put(word, new ItemCollector<>(value));
+            }
+            if (i % CHECK_INTERVAL == 0 || i == operationCount - 1) {
+                assertSameResults(expected, actual, prefixes);
+            }
+        }
+        return expected;
+    }
+
+    private static void assertSameResults(TernarySearchTree<Integer, ItemCollector<Integer>> expected,
+            ComparedTree actual, Set<String> prefixes) {
+        for (String prefix : prefixes) {
+            assertEquals(valueSets(actual.find(prefix)), valueSets(expected.find(prefix)), prefix);
+            if (prefix.length() == 1) {
+                assertEquals(valueSets(actual.find(prefix, 2, 3)), valueSets(expected.find(prefix, 2, 3)), prefix);
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.valagja.search.ternarytree.prefix;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.*;
+import static com.valagja.search.ternarytree.prefix.TestWords.randomWord;
+
+/**
+ * Tests for the sorted iteration, range and findAfter of TernarySearchTree
+ */
+public class SortedIteratorTest {
+
+    @Test
+    public void sortedWords() {
+        TernarySearchTree<String, SingleStringCollector> tree = new TernarySearchTree<>();
+        for (String word : asList("aux", "austria", "auto", "au", "banana", "a")) {
+            tree.put(word, new SingleStringCollector(word + " command"));
+        }
+        assertEquals(words(tree.sortedIterator()), asList("a", "au", "austria", "auto", "aux", "banana"));
+        assertEquals(words(tree.sortedIterator("au")), asList("au", "austria", "auto", "aux"));
+        assertEquals(tree.sortedIterator("aus").next().getValue().getValue(), "austria command");
+        assertFalse(tree.sortedIterator("c").hasNext());
+        assertFalse(tree.sortedIterator("").hasNext());
+
+        assertEquals(words(tree.range("au", "aux")), asList("au", "austria", "auto"));
+        assertEquals(words(tree.range("aut", null)), asList("auto", "aux", "banana"));
+        assertEquals(words(tree.range(null, "au")), asList("a"));
+        assertTrue(tree.range("b", "a").isEmpty());
+
+        assertEquals(words(tree.findAfter("au", null, 2)), asList("au", "austria"));
+        assertEquals(words(tree.findAfter("au", "austria", 2)), asList("auto", "aux"));
+        assertTrue(tree.findAfter("au", "aux", 2).isEmpty());
+        // the last key need not be in the tree anymore
+        assertEquals(words(tree.findAfter("au", "aut", 2)), asList("auto", "aux"));
+        assertEquals(words(tree.findAfter("au", "a", 1)), asList("au"));
+        assertTrue(tree.findAfter("au", "b", 1).isEmpty());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void findAfterWithNegativePageSize() {
+        new TernarySearchTree<String, SingleStringCollector>().findAfter("a", null, -1);
+    }
+
+    @Test(expectedExceptions = ConcurrentModificationException.class)
+    public void iterateWhilePutting() {
+        TernarySearchTree<String, SingleStringCollector> tree = new TernarySearchTree<>();
+        tree.put("one", new SingleStringCollector("one"));
+        Iterator<Map.Entry<String, SingleStringCollector>> iterator = tree.sortedIterator();
+        tree.put("two", new SingleStringCollector("two"));
+        iterator.hasNext();
+    }
+
+    @Test
+    public void likeTreeMap() {
+        Random random = new Random(41);
+        TernarySearchTree<String, SingleStringCollector> tree = new TernarySearchTree<>();
+        TreeMap<String, SingleStringCollector> expected = new TreeMap<>();
+        for (int i = 0; i < 4000; i++) {
+            String word = randomWord(random, 5, 4);
+            if (random.nextInt(4) == 0) {
+                if (tree.remove(word, new SingleStringCollector(word))) {
+                    expected.remove(word);
+                }
+            }
+            else {
+                SingleStringCollector entry = new SingleStringCollector(word);
+                tree.put(word, entry);
+                expected.put(word, entry);
+            }
+            if (i % 500 == 0) {
+                tree.rebalance();
+            }
+            assertEquals(words(tree.range(word, null)).size(), expected.tailMap(word).size());
+        }
+        assertEquals(words(tree.sortedIterator()), new ArrayList<>(expected.keySet()));
+        for (int i = 0; i < 300; i++) {
+            String fromKey = randomWord(random, 5, 4);
+            String toKey = randomWord(random, 5, 4);
+            List<String> range = (fromKey.compareTo(toKey) <= 0)
+                    ? new ArrayList<>(expected.subMap(fromKey, toKey).keySet()) : new ArrayList<String>();
+            assertEquals(words(tree.range(fromKey, toKey)), range, fromKey + " " + toKey);
+
+            // all pages together are the sorted words with the prefix
+            String prefix = randomWord(random, 5, 4).substring(0, 1);
+            List<String> pages = new ArrayList<>();
+            String lastKey = null;
+            List<Map.Entry<String, SingleStringCollector>> page;
+            while (!(page = tree.findAfter(prefix, lastKey, 7)).isEmpty()) {
+                assertTrue(page.size() <= 7);
+                lastKey = page.get(page.size() - 1).getKey();
+                pages.addAll(words(page));
+            }
+            assertEquals(pages, words(tree.sortedIterator(prefix)));
+            assertEquals(pages, new ArrayList<>(expected.subMap(prefix, prefix + Character.MAX_VALUE).keySet()));
+        }
+    }
+
+    private static List<String> words(Iterator<Map.Entry<String, SingleStringCollector>> iterator) {
+        List<String> words = new ArrayList<>();
+        while (iterator.hasNext()) {
+            words.add(iterator.next().getKey());
+        }
+        return words;
+    }
+
+    private static List<String> words(List<Map.Entry<String, SingleStringCollector>> pairs) {
+        return words(pairs.iterator());
+    }
+}
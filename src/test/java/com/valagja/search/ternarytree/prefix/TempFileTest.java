@@ -0,0 +1,32 @@
+package com.valagja.search.ternarytree.prefix;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Base of the tests that write a tree to a file, each test method gets a new temp file
+ */
+abstract class TempFileTest {
+
+    private final String suffix;
+
+    protected Path file;
+
+    TempFileTest(String suffix) {
+        this.suffix = suffix;
+    }
+
+    @BeforeMethod
+    public void createFile() throws IOException {
+        file = Files.createTempFile("tree", suffix);
+    }
+
+    @AfterMethod
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+}
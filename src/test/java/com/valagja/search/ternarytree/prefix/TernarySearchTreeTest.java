@@ -2,10 +2,27 @@ package com.valagja.search.ternarytree.prefix;
 
 import org.testng.annotations.Test;
 
+import java.nio.CharBuffer;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 
+import static java.util.Arrays.asList;
 import static org.testng.Assert.*;
+import static com.valagja.search.ternarytree.prefix.TestWords.values;
+import static com.valagja.search.ternarytree.prefix.TestWords.randomWord;
 
 /**
  * Tests for TernarySearchTree
@@ -169,4 +186,799 @@ public class TernarySearchTreeTest {
         result = ternarySearchTree.find("b");
         assertTrue(result.isEmpty());
     }
+
+    @Test
+    public void findWithLimit() {
+        TernarySearchTree<String, SingleStringCollector> ternarySearchTree = new TernarySearchTree<>();
+        String[] inputs = {"a", "is", "in", "iu", "it", "i", "be", "by", "ist", "isa"};
+        for (String input : inputs) {
+            ternarySearchTree.put(input, new SingleStringCollector(input + " command"));
+        }
+
+        List<SingleStringCollector> all = ternarySearchTree.find("i");
+        assertEquals(7, all.size());
+
+        for (int limit = 0; limit <= all.size() + 1; limit++) {
+            List<SingleStringCollector> result = ternarySearchTree.find("i", limit);
+            assertEquals(all.subList(0, Math.min(limit, all.size())), result);
+        }
+
+        for (int offset = 0; offset <= all.size() + 1; offset++) {
+            for (int limit = 0; limit <= all.size() + 1; limit++) {
+                List<SingleStringCollector> result = ternarySearchTree.find("i", offset, limit);
+                int from = Math.min(offset, all.size());
+                int to = Math.min(offset + limit, all.size());
+                assertEquals(all.subList(from, to), result);
+            }
+        }
+
+        assertTrue(ternarySearchTree.find("x", 5).isEmpty());
+        assertTrue(ternarySearchTree.find("", 5).isEmpty());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void findWithNegativeLimit() {
+        TernarySearchTree<String, SingleStringCollector> ternarySearchTree = new TernarySearchTree<>();
+        ternarySearchTree.find("a", -1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void findWithNegativeOffset() {
+        TernarySearchTree<String, SingleStringCollector> ternarySearchTree = new TernarySearchTree<>();
+        ternarySearchTree.find("a", -1, 1);
+    }
+
+    @Test
+    public void iterateAndStream() {
+        TernarySearchTree<String, SingleStringCollector> ternarySearchTree = new TernarySearchTree<>();
+        String[] inputs = {"a", "is", "in", "iu", "it", "i", "be", "by", "ist", "isa"};
+        for (String input : inputs) {
+            ternarySearchTree.put(input, new SingleStringCollector(input + " command"));
+        }
+
+        for (String prefix : new String[]{"i", "is", "b", "a", "x", "", null}) {
+            List<SingleStringCollector> expected = ternarySearchTree.find(prefix);
+
+            List<SingleStringCollector> iterated = new ArrayList<>();
+            Iterator<SingleStringCollector> iterator = ternarySearchTree.iterator(prefix);
+            while (iterator.hasNext()) {
+                iterated.add(iterator.next());
+            }
+            assertEquals(iterated, expected);
+
+            List<SingleStringCollector> streamed = ternarySearchTree.stream(prefix).collect(Collectors.toList());
+            assertEquals(streamed, expected);
+        }
+
+        assertEquals(ternarySearchTree.stream("i").limit(3).collect(Collectors.toList()),
+                ternarySearchTree.find("i", 3));
+        assertTrue(ternarySearchTree.stream("i").anyMatch(c -> "isa command".equals(c.getValue())));
+        assertFalse(ternarySearchTree.stream("x").findFirst().isPresent());
+    }
+
+    @Test(expectedExceptions = ConcurrentModificationException.class)
+    public void iterateWhilePutting() {
+        TernarySearchTree<String, SingleStringCollector> ternarySearchTree = new TernarySearchTree<>();
+        ternarySearchTree.put("is", new SingleStringCollector("is command"));
+        ternarySearchTree.put("it", new SingleStringCollector("it command"));
+
+        Iterator<SingleStringCollector> iterator = ternarySearchTree.iterator("i");
+        iterator.next();
+        ternarySearchTree.put("in", new SingleStringCollector("in command"));
+        iterator.next();
+    }
+
+    @Test(expectedExceptions = ConcurrentModificationException.class)
+    public void streamWhileRemoving() {
+        TernarySearchTree<String, SingleStringCollector> ternarySearchTree = new TernarySearchTree<>();
+        ternarySearchTree.put("is", new SingleStringCollector("is command"));
+        ternarySearchTree.put("it", new SingleStringCollector("it command"));
+
+        ternarySearchTree.stream("i").forEach(c -> ternarySearchTree.remove("it", new SingleStringCollector("it command")));
+    }
+
+    @Test
+    public void bulkLoad() {
+        Random random = new Random(3);
+        List<Map.Entry<String, SingleStringCollector>> pairs = new ArrayList<>();
+        Set<String> words = new HashSet<>();
+        for (int i = 0; i < 2000; i++) {
+            char[] word = new char[1 + random.nextInt(6)];
+            for (int j = 0; j < word.length; j++) {
+                word[j] = (char) ('a' + random.nextInt(8));
+            }
+            words.add(new String(word));
+            pairs.add(new AbstractMap.SimpleEntry<>(new String(word), new SingleStringCollector(new String(word) + i)));
+        }
+        pairs.add(new AbstractMap.SimpleEntry<>("", new SingleStringCollector("empty")));
+        pairs.add(new AbstractMap.SimpleEntry<String, SingleStringCollector>(null, new SingleStringCollector("null")));
+
+        TernarySearchTree<String, SingleStringCollector> expected = new TernarySearchTree<>();
+        for (Map.Entry<String, SingleStringCollector> pair : pairs) {
+            expected.put(pair.getKey(), new SingleStringCollector(pair.getValue().getValue()));
+        }
+
+        TernarySearchTree<String, SingleStringCollector> empty = new TernarySearchTree<>();
+        BatchStatistics statistics = empty.bulkLoad(pairs);
+        assertEquals(2000, statistics.getWordCount());
+        assertTrue(statistics.getElapsedNanos() >= 0);
+
+        Collections.sort(pairs.subList(0, 2000), Map.Entry.<String, SingleStringCollector>comparingByKey());
+        TernarySearchTree<String, SingleStringCollector> filled = new TernarySearchTree<>();
+        filled.put("d", new SingleStringCollector("d first"));
+        filled.bulkLoad(pairs.stream());
+
+        for (String word : words) {
+            // the last collector of the same word wins
+            assertEquals(values(empty.find(word, 1)), values(expected.find(word, 1)), word);
+            assertEquals(values(filled.find(word, 1)), values(expected.find(word, 1)), word);
+            assertEquals(new HashSet<>(values(empty.find(word))), new HashSet<>(values(expected.find(word))), word);
+            assertEquals(new HashSet<>(values(filled.find(word))), new HashSet<>(values(expected.find(word))), word);
+        }
+    }
+
+    @Test
+    public void putAllAndRemoveAll() {
+        TernarySearchTree<String, SingleStringCollector> tree = new TernarySearchTree<>();
+        tree.put("b", new SingleStringCollector("b"));
+        List<Map.Entry<String, SingleStringCollector>> pairs = new ArrayList<>();
+        for (String word : asList("help", "hello", "hell", "hello", "", "world")) {
+            pairs.add(new AbstractMap.SimpleEntry<>(word, new SingleStringCollector(word)));
+        }
+        BatchStatistics statistics = tree.putAll(pairs);
+        assertEquals(statistics.getWordCount(), 5);
+        assertEquals(statistics.getChangedWordCount(), 4);
+        // hello after hell, hello again and help after hello
+        assertEquals(statistics.getReusedNodeCount(), 4 + 5 + 3);
+        assertEquals(tree.size(), 5);
+        assertEquals(new HashSet<>(values(tree.find("hel"))), new HashSet<>(asList("hell", "hello", "help")));
+
+        statistics = tree.removeAll(pairs.subList(0, 3).stream());
+        assertEquals(statistics.getWordCount(), 3);
+        assertEquals(statistics.getChangedWordCount(), 3);
+        assertEquals(tree.size(), 2);
+        assertTrue(tree.find("h").isEmpty());
+        assertEquals(values(tree.find("w")), asList("world"));
+        assertEquals(tree.removeAll(pairs).getChangedWordCount(), 1);
+        assertEquals(values(tree.find("b")), asList("b"));
+        assertEquals(tree.removeAll(asList(pair("b"))).getChangedWordCount(), 1);
+        assertNull(tree.getRoot());
+    }
+
+    @Test
+    public void putAllAndRemoveAllLikePutAndRemove() {
+        Random random = new Random(59);
+        TernarySearchTree<Integer, ItemCollector<Integer>> expected = new TernarySearchTree<>();
+        TernarySearchTree<Integer, ItemCollector<Integer>> tree = new TernarySearchTree<>();
+        for (int batch = 0; batch < 40; batch++) {
+            List<Map.Entry<String, ItemCollector<Integer>>> pairs = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                pairs.add(new AbstractMap.SimpleEntry<>(randomWord(random), new ItemCollector<>(random.nextInt(3))));
+            }
+            boolean isRemove = batch % 3 == 2;
+            int size = expected.size();
+            for (Map.Entry<String, ItemCollector<Integer>> pair : pairs) {
+                if (isRemove) {
+                    expected.remove(pair.getKey(), new ItemCollector<>(pair.getValue().getValue()));
+                }
+                else {
+                    expected.put(pair.getKey(), new ItemCollector<>(pair.getValue().getValue()));
+                }
+            }
+            BatchStatistics statistics = isRemove ? tree.removeAll(pairs) : tree.putAll(pairs);
+            assertEquals(statistics.getChangedWordCount(), Math.abs(expected.size() - size));
+            assertEquals(tree.size(), expected.size());
+            assertNoEmptyNodes(tree.getRoot());
+            for (String prefix : asList("a", "b", "c", "d", "ab", "dc", "abc")) {
+                assertEquals(tree.countPrefix(prefix), expected.countPrefix(prefix), prefix);
+                assertEquals(tree.findValues(prefix), expected.findValues(prefix), prefix);
+            }
+        }
+    }
+
+    private static Map.Entry<String, SingleStringCollector> pair(String word) {
+        return new AbstractMap.SimpleEntry<>(word, new SingleStringCollector(word));
+    }
+
+    private static void assertNoEmptyNodes(TernaryNode<Integer, ItemCollector<Integer>> root) {
+        // every node ends a word or leads to longer ones
+        Deque<TernaryNode<Integer, ItemCollector<Integer>>> deque = new ArrayDeque<>();
+        if (root != null) {
+            assertNull(root.getParent());
+            deque.push(root);
+        }
+        while (!deque.isEmpty()) {
+            TernaryNode<Integer, ItemCollector<Integer>> node = deque.pop();
+            assertTrue(node.getEntry() != null || node.getEqualKid() != null, "empty node " + node.getKey());
+            for (TernaryNode<Integer, ItemCollector<Integer>> kid : asList(node.getLowerKid(), node.getEqualKid(), node.getHigherKid())) {
+                if (kid != null) {
+                    assertSame(kid.getParent(), node);
+                    deque.push(kid);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void rebalanceSortedWords() {
+        TernarySearchTree<String, SingleStringCollector> ternarySearchTree = new TernarySearchTree<>();
+        for (char c = 'a'; c <= 'z'; c++) {
+            ternarySearchTree.put(c + "x", new SingleStringCollector(c + "x command"));
+        }
+        DepthStatistics before = ternarySearchTree.getDepthStatistics();
+        assertEquals(26, before.getMaxSiblingDepth());
+        assertEquals(27, before.getMaxDepth());
+        assertEquals(52, before.getNodeCount());
+        assertEquals(26, before.getWordCount());
+
+        ternarySearchTree.rebalance();
+        DepthStatistics after = ternarySearchTree.getDepthStatistics();
+        assertEquals(5, after.getMaxSiblingDepth());
+        assertEquals(6, after.getMaxDepth());
+        assertEquals(52, after.getNodeCount());
+        assertEquals(26, after.getWordCount());
+        assertTrue(after.getAverageWordDepth() < before.getAverageWordDepth());
+
+        for (char c = 'a'; c <= 'z'; c++) {
+            assertEquals(values(ternarySearchTree.find(String.valueOf(c))), Collections.singletonList(c + "x command"));
+        }
+    }
+
+    @Test
+    public void bulkLoadIsBalanced() {
+        List<Map.Entry<String, SingleStringCollector>> pairs = new ArrayList<>();
+        for (char c = 'a'; c <= 'z'; c++) {
+            pairs.add(new AbstractMap.SimpleEntry<>(c + "x", new SingleStringCollector(c + "x command")));
+        }
+        TernarySearchTree<String, SingleStringCollector> ternarySearchTree = new TernarySearchTree<>();
+        ternarySearchTree.bulkLoad(pairs);
+        assertEquals(5, ternarySearchTree.getDepthStatistics().getMaxSiblingDepth());
+    }
+
+    @Test
+    public void autoRebalance() {
+        TernarySearchTree<String, SingleStringCollector> ternarySearchTree = new TernarySearchTree<>();
+        ternarySearchTree.setAutoRebalanceDepth(5);
+        for (char c = 'a'; c <= 'z'; c++) {
+            ternarySearchTree.put("x" + c, new SingleStringCollector("x" + c + " command"));
+            assertTrue(ternarySearchTree.getDepthStatistics().getMaxSiblingDepth() <= 5);
+        }
+        assertEquals(26, ternarySearchTree.find("x").size());
+    }
+
+    @Test
+    public void rebalanceWhileRemovingAndPutting() {
+        Random random = new Random(11);
+        Map<String, String> expected = new HashMap<>();
+        TernarySearchTree<String, SingleStringCollector> ternarySearchTree = new TernarySearchTree<>();
+        for (int i = 0; i < 20000; i++) {
+            char[] chars = new char[1 + random.nextInt(4)];
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = (char) ('a' + random.nextInt(10));
+            }
+            String word = new String(chars);
+            if (random.nextBoolean()) {
+                ternarySearchTree.put(word, new SingleStringCollector(word + i));
+                expected.put(word, word + i);
+            }
+            else if (expected.containsKey(word)) {
+                assertTrue(ternarySearchTree.remove(word, new SingleStringCollector(expected.remove(word))));
+            }
+            if (i % 1000 == 0) {
+                ternarySearchTree.rebalance();
+            }
+            if (i == 10000) {
+                ternarySearchTree.setAutoRebalanceDepth(3);
+            }
+        }
+        assertEquals(ternarySearchTree.getDepthStatistics().getWordCount(), expected.size());
+        for (Map.Entry<String, String> entry : expected.entrySet()) {
+            assertEquals(values(ternarySearchTree.find(entry.getKey(), 1)), Collections.singletonList(entry.getValue()));
+        }
+    }
+
+    @Test
+    public void topK() {
+        TernarySearchTree<String, WeightedItemCollector<String>> ternarySearchTree = new TernarySearchTree<>();
+        ternarySearchTree.put("hello", new WeightedItemCollector<>("hello", 3));
+        ternarySearchTree.put("help", new WeightedItemCollector<>("help", 7));
+        ternarySearchTree.put("he", new WeightedItemCollector<>("he", 1));
+        ternarySearchTree.put("hero", new WeightedItemCollector<>("hero", 5));
+        ternarySearchTree.put("world", new WeightedItemCollector<>("world", 9));
+
+        List<WeightedItemCollector<String>> result = ternarySearchTree.topK("he", 3);
+        assertEquals(3, result.size());
+        assertEquals("help", result.get(0).getValue());
+        assertEquals("hero", result.get(1).getValue());
+        assertEquals("hello", result.get(2).getValue());
+
+        // a higher weight for an existing word
+        ternarySearchTree.put("he", new WeightedItemCollector<>("he", 8));
+        assertEquals("he", ternarySearchTree.topK("he", 1).get(0).getValue());
+
+        ternarySearchTree.remove("he", new WeightedItemCollector<>("he", 0));
+        ternarySearchTree.remove("help", new WeightedItemCollector<>("help", 0));
+        result = ternarySearchTree.topK("h", 5);
+        assertEquals(2, result.size());
+        assertEquals("hero", result.get(0).getValue());
+        assertEquals("hello", result.get(1).getValue());
+
+        assertTrue(ternarySearchTree.topK("x", 5).isEmpty());
+        assertTrue(ternarySearchTree.topK("he", 0).isEmpty());
+    }
+
+    @Test
+    public void topKLikeSortedFind() {
+        Random random = new Random(13);
+        TernarySearchTree<String, WeightedItemCollector<String>> ternarySearchTree = new TernarySearchTree<>();
+        List<Map.Entry<String, WeightedItemCollector<String>>> pairs = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            String word = randomWord(random);
+            pairs.add(new AbstractMap.SimpleEntry<>(word, new WeightedItemCollector<>(word, random.nextDouble())));
+        }
+        ternarySearchTree.bulkLoad(pairs);
+        for (int i = 0; i < 5000; i++) {
+            String word = randomWord(random);
+            if (random.nextInt(3) == 0) {
+                ternarySearchTree.remove(word, new WeightedItemCollector<>(word, 0));
+            }
+            else {
+                ternarySearchTree.put(word, new WeightedItemCollector<>(word, random.nextDouble()));
+            }
+            if (i == 2500) {
+                ternarySearchTree.rebalance();
+            }
+            if (i % 100 == 0) {
+                for (String prefix : new String[]{"a", "b", "ab", "ca"}) {
+                    List<WeightedItemCollector<String>> expected = new ArrayList<>(ternarySearchTree.find(prefix));
+                    expected.sort((first, second) -> Double.compare(second.getWeight(), first.getWeight()));
+                    assertEquals(ternarySearchTree.topK(prefix, 5), expected.subList(0, Math.min(5, expected.size())));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void findFuzzy() {
+        TernarySearchTree<String, SingleStringCollector> ternarySearchTree = new TernarySearchTree<>();
+        for (String word : new String[]{"hello", "help", "yellow", "world", "hallo", "ehlo"}) {
+            ternarySearchTree.put(word, new SingleStringCollector(word));
+        }
+
+        List<FuzzyMatch<SingleStringCollector>> result = ternarySearchTree.findFuzzy("helo", 1);
+        assertEquals(fuzzyWords(result), "[hello:1, help:1]");
+        result = ternarySearchTree.findFuzzy("helo", 2);
+        assertEquals(result.size(), 5);
+        assertEquals(result.get(4).getDistance(), 2);
+
+        result = ternarySearchTree.findFuzzy("ehlp", 1);
+        assertEquals(fuzzyWords(result), "[ehlo:1]");
+        result = ternarySearchTree.findFuzzy("ehlp", 1, true);
+        assertEquals(fuzzyWords(result), "[help:1, ehlo:1]");
+
+        assertEquals(ternarySearchTree.findFuzzy("hel", 0).size(), 2);
+        assertTrue(ternarySearchTree.findFuzzy("xyz", 1).isEmpty());
+        assertTrue(ternarySearchTree.findFuzzy("", 1).isEmpty());
+    }
+
+    @Test
+    public void findFuzzyLikeBruteForce() {
+        Random random = new Random(17);
+        TernarySearchTree<String, SingleStringCollector> ternarySearchTree = new TernarySearchTree<>();
+        Set<String> words = new HashSet<>();
+        for (int i = 0; i < 300; i++) {
+            String word = randomWord(random) + randomWord(random);
+            words.add(word);
+            ternarySearchTree.put(word, new SingleStringCollector(word));
+        }
+        for (int i = 0; i < 50; i++) {
+            String prefix = randomWord(random);
+            for (boolean isTranspositionAllowed : new boolean[]{false, true}) {
+                for (int maxEdits = 0; maxEdits <= 2; maxEdits++) {
+                    Map<String, Integer> expected = new HashMap<>();
+                    for (String word : words) {
+                        int distance = Integer.MAX_VALUE;
+                        for (int length = 0; length <= word.length(); length++) {
+                            distance = Math.min(distance, distance(prefix, word.substring(0, length), isTranspositionAllowed));
+                        }
+                        if (distance <= maxEdits) {
+                            expected.put(word, distance);
+                        }
+                    }
+                    Map<String, Integer> actual = new HashMap<>();
+                    int previousDistance = 0;
+                    for (FuzzyMatch<SingleStringCollector> match : ternarySearchTree.findFuzzy(prefix, maxEdits, isTranspositionAllowed)) {
+                        actual.put(match.getWord(), match.getDistance());
+                        assertEquals(match.getEntry().getValue(), match.getWord());
+                        assertTrue(match.getDistance() >= previousDistance);
+                        previousDistance = match.getDistance();
+                    }
+                    assertEquals(actual, expected, prefix);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void findPattern() {
+        TernarySearchTree<String, SingleStringCollector> ternarySearchTree = new TernarySearchTree<>();
+        for (String word : new String[]{"cat", "cot", "cut", "car", "cart", "dog", "a?b", "abb"}) {
+            ternarySearchTree.put(word, new SingleStringCollector(word));
+        }
+
+        assertEquals(new HashSet<>(values(ternarySearchTree.findPattern("c?t"))), new HashSet<>(asList("cat", "cot", "cut")));
+        assertEquals(new HashSet<>(values(ternarySearchTree.findPattern("c[a-o]t"))), new HashSet<>(asList("cat", "cot")));
+        assertEquals(new HashSet<>(values(ternarySearchTree.findPattern("ca*"))), new HashSet<>(asList("cat", "car", "cart")));
+        assertEquals(new HashSet<>(values(ternarySearchTree.findPattern("car*"))), new HashSet<>(asList("car", "cart")));
+        assertEquals(new HashSet<>(values(ternarySearchTree.findPattern("a\\?b"))), new HashSet<>(asList("a?b")));
+        assertEquals(new HashSet<>(values(ternarySearchTree.findPattern("a?b"))), new HashSet<>(asList("a?b", "abb")));
+        assertEquals(values(ternarySearchTree.findPattern("*")).size(), 8);
+        assertTrue(ternarySearchTree.findPattern("c?").isEmpty());
+        assertTrue(ternarySearchTree.findPattern("").isEmpty());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void findPatternWithUnclosedClass() {
+        new TernarySearchTree<String, SingleStringCollector>().findPattern("a[bc");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void findPatternWithInnerStar() {
+        new TernarySearchTree<String, SingleStringCollector>().findPattern("a*b");
+    }
+
+    @Test
+    public void findPatternLikeRegex() {
+        Random random = new Random(19);
+        TernarySearchTree<String, SingleStringCollector> ternarySearchTree = new TernarySearchTree<>();
+        Set<String> words = new HashSet<>();
+        for (int i = 0; i < 300; i++) {
+            String word = randomWord(random) + randomWord(random);
+            words.add(word);
+            ternarySearchTree.put(word, new SingleStringCollector(word));
+        }
+        String[] parts = {"a", "b", "?", "[a-b]", "[cd]", "[b-cd]"};
+        for (int i = 0; i < 200; i++) {
+            StringBuilder pattern = new StringBuilder();
+            StringBuilder regex = new StringBuilder();
+            int length = 1 + random.nextInt(4);
+            for (int j = 0; j < length; j++) {
+                String part = parts[random.nextInt(parts.length)];
+                pattern.append(part);
+                regex.append("?".equals(part) ? "." : part);
+            }
+            if (random.nextBoolean()) {
+                pattern.append('*');
+                regex.append(".*");
+            }
+            Set<String> expected = new HashSet<>();
+            for (String word : words) {
+                if (word.matches(regex.toString())) {
+                    expected.add(word);
+                }
+            }
+            List<String> actual = values(ternarySearchTree.findPattern(pattern.toString()));
+            assertEquals(actual.size(), expected.size(), pattern.toString());
+            assertEquals(new HashSet<>(actual), expected, pattern.toString());
+        }
+    }
+
+    @Test
+    public void findParallelKeepsOrder() {
+        Random random = new Random(17);
+        List<String> words = new ArrayList<>();
+        TernarySearchTree<String, SingleStringCollector> tree = new TernarySearchTree<>();
+        for (int i = 0; i < 60000; i++) {
+            char[] word = new char[4 + random.nextInt(7)];
+            for (int j = 0; j < word.length; j++) {
+                word[j] = (char) ('a' + random.nextInt(4));
+            }
+            words.add(new String(word));
+            tree.put(words.get(i), new SingleStringCollector(words.get(i)));
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertSameAsFind(tree, pool);
+            // the word counts of the subtrees follow remove
+            for (int i = 0; i < 20000; i++) {
+                String word = words.get(random.nextInt(words.size()));
+                tree.remove(word, new SingleStringCollector(word));
+            }
+            assertSameAsFind(tree, pool);
+            tree.rebalance();
+            assertSameAsFind(tree, pool);
+
+            TernarySearchTree<String, SingleStringCollector> loaded = new TernarySearchTree<>();
+            List<Map.Entry<String, SingleStringCollector>> pairs = new ArrayList<>();
+            for (String word : words) {
+                pairs.add(new AbstractMap.SimpleEntry<>(word, new SingleStringCollector(word)));
+            }
+            loaded.bulkLoad(pairs);
+            assertSameAsFind(loaded, pool);
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void countSelectAndRank() {
+        TernarySearchTree<String, SingleStringCollector> tree = new TernarySearchTree<>();
+        assertEquals(tree.size(), 0);
+        for (String word : asList("au", "austria", "aux", "auto", "banana")) {
+            tree.put(word, new SingleStringCollector(word));
+        }
+        assertEquals(tree.size(), 5);
+        assertEquals(tree.countPrefix("au"), 4);
+        assertEquals(tree.countPrefix("aus"), 1);
+        assertEquals(tree.countPrefix("c"), 0);
+        assertEquals(tree.countPrefix(""), 0);
+        assertEquals(tree.select("au", 0), "au");
+        assertEquals(tree.select("au", 3), values(tree.find("au")).get(3));
+        assertEquals(tree.rank("au", "auto"), 3);
+        assertEquals(tree.rank("au", "aut"), -1);
+        assertEquals(tree.rank("au", "banana"), -1);
+        try {
+            tree.select("au", 4);
+            fail("index out of bounds");
+        }
+        catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void countSelectAndRankLikeFind() {
+        Random random = new Random(23);
+        List<String> words = new ArrayList<>();
+        TernarySearchTree<String, SingleStringCollector> tree = new TernarySearchTree<>();
+        for (int i = 0; i < 3000; i++) {
+            char[] word = new char[1 + random.nextInt(6)];
+            for (int j = 0; j < word.length; j++) {
+                word[j] = (char) ('a' + random.nextInt(4));
+            }
+            words.add(new String(word));
+            tree.put(words.get(i), new SingleStringCollector(words.get(i)));
+        }
+        assertSameAsCounts(tree);
+        for (int i = 0; i < 1000; i++) {
+            String word = words.get(random.nextInt(words.size()));
+            tree.remove(word, new SingleStringCollector(word));
+        }
+        assertSameAsCounts(tree);
+        tree.rebalance();
+        assertSameAsCounts(tree);
+
+        TernarySearchTree<String, SingleStringCollector> loaded = new TernarySearchTree<>();
+        List<Map.Entry<String, SingleStringCollector>> pairs = new ArrayList<>();
+        for (String word : words) {
+            pairs.add(new AbstractMap.SimpleEntry<>(word, new SingleStringCollector(word)));
+        }
+        loaded.bulkLoad(pairs);
+        assertSameAsCounts(loaded);
+    }
+
+    private static void assertSameAsCounts(TernarySearchTree<String, SingleStringCollector> tree) {
+        int size = 0;
+        for (String prefix : asList("a", "b", "c", "d")) {
+            size += tree.find(prefix).size();
+        }
+        assertEquals(tree.size(), size);
+        for (String prefix : asList("a", "b", "ab", "dcb", "abcd", "x")) {
+            List<String> expected = values(tree.find(prefix));
+            assertEquals(tree.countPrefix(prefix), expected.size(), prefix);
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(tree.select(prefix, i), expected.get(i), prefix);
+                assertEquals(tree.rank(prefix, expected.get(i)), i, prefix);
+            }
+        }
+    }
+
+    @Test
+    public void charSequenceAndSliceLookups() {
+        TernarySearchTree<String, SingleStringCollector> tree = new TernarySearchTree<>();
+        char[] buffer = "xx austria aux auto".toCharArray();
+        tree.put(buffer, 3, 7, new SingleStringCollector("austria command"));
+        tree.put(CharBuffer.wrap(buffer, 11, 3), new SingleStringCollector("aux command"));
+        tree.put(new StringBuilder("auto"), new SingleStringCollector("auto command"));
+
+        assertEquals(values(tree.find(buffer, 3, 2)), values(tree.find("au")));
+        assertEquals(values(tree.find(CharBuffer.wrap(buffer, 15, 2))), values(tree.find("au")));
+        assertEquals(tree.get(buffer, 11, 3).getValue(), "aux command");
+        assertEquals(tree.get(new StringBuilder("auto")).getValue(), "auto command");
+        assertNull(tree.get(buffer, 3, 2));
+        assertNull(tree.get(buffer, 0, 0));
+        assertNull(tree.get("b"));
+
+        assertTrue(tree.remove(buffer, 11, 3, new SingleStringCollector("aux command")));
+        assertTrue(tree.remove(new StringBuilder("auto"), new SingleStringCollector("auto command")));
+        assertEquals(values(tree.find("au")), asList("austria command"));
+        try {
+            tree.find(buffer, 15, 5);
+            fail("slice out of bounds");
+        }
+        catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void findWithActionLikeFind() {
+        Random random = new Random(29);
+        TernarySearchTree<String, SingleStringCollector> tree = new TernarySearchTree<>();
+        for (int i = 0; i < 3000; i++) {
+            String word = randomWord(random) + randomWord(random);
+            tree.put(word, new SingleStringCollector(word));
+        }
+        char[] buffer = new char[8];
+        for (int i = 0; i < 200; i++) {
+            String prefix = randomWord(random);
+            List<SingleStringCollector> expected = tree.find(prefix);
+            List<SingleStringCollector> actual = new ArrayList<>();
+            assertEquals(tree.find(new StringBuilder(prefix), actual::add), expected.size());
+            assertEquals(actual, expected);
+
+            prefix.getChars(0, prefix.length(), buffer, 2);
+            actual.clear();
+            assertEquals(tree.find(buffer, 2, prefix.length(), actual::add), expected.size());
+            assertEquals(actual, expected);
+        }
+
+        // an action searching again does not disturb the outer search
+        List<String> outer = new ArrayList<>();
+        int[] innerCount = new int[1];
+        tree.find("a", collector -> {
+            outer.add(collector.getValue());
+            innerCount[0] += tree.find("b", inner -> { });
+        });
+        assertEquals(outer, values(tree.find("a")));
+        assertEquals(innerCount[0], outer.size() * tree.countPrefix("b"));
+        assertEquals(tree.find("", collector -> fail()), 0);
+    }
+
+    @Test
+    public void findAllPrefixes() {
+        TernarySearchTree<Integer, ItemCollector<Integer>> tree = new TernarySearchTree<>();
+        // words with the documents they occur in
+        tree.put("hello", new ItemCollector<>(1));
+        tree.put("hello", new ItemCollector<>(2));
+        tree.put("help", new ItemCollector<>(3));
+        tree.put("world", new ItemCollector<>(2));
+        tree.put("work", new ItemCollector<>(3));
+        tree.put("word", new ItemCollector<>(4));
+
+        assertEquals(tree.findAll("hel", "wor"), new HashSet<>(asList(2, 3)));
+        assertEquals(tree.findAll("wor", "hell"), new HashSet<>(asList(2)));
+        assertEquals(tree.findAll("wor"), new HashSet<>(asList(2, 3, 4)));
+        assertTrue(tree.findAll("hell", "work").isEmpty());
+        assertTrue(tree.findAll("hel", "x").isEmpty());
+        assertTrue(tree.findAll("hel", "").isEmpty());
+        assertTrue(tree.findAll().isEmpty());
+        assertEquals(tree.findAll(1, "hel", "wor").size(), 1);
+        assertTrue(tree.findAll(0, "hel").isEmpty());
+    }
+
+    @Test
+    public void findAllLikeIntersection() {
+        Random random = new Random(47);
+        TernarySearchTree<Integer, ItemCollector<Integer>> tree = new TernarySearchTree<>();
+        Map<String, Set<Integer>> documents = new HashMap<>();
+        for (int i = 0; i < 5000; i++) {
+            String word = randomWord(random);
+            int document = random.nextInt(400);
+            tree.put(word, new ItemCollector<>(document));
+            documents.computeIfAbsent(word, key -> new HashSet<>()).add(document);
+        }
+        for (int i = 0; i < 300; i++) {
+            String[] prefixes = new String[1 + random.nextInt(3)];
+            Set<Integer> expected = null;
+            for (int j = 0; j < prefixes.length; j++) {
+                prefixes[j] = randomWord(random);
+                Set<Integer> union = new HashSet<>();
+                for (Map.Entry<String, Set<Integer>> document : documents.entrySet()) {
+                    if (document.getKey().startsWith(prefixes[j])) {
+                        union.addAll(document.getValue());
+                    }
+                }
+                if (expected == null) {
+                    expected = union;
+                }
+                else {
+                    expected.retainAll(union);
+                }
+            }
+            assertEquals(tree.findAll(prefixes), expected, asList(prefixes).toString());
+            Set<Integer> limited = tree.findAll(5, prefixes);
+            assertEquals(limited.size(), Math.min(5, expected.size()));
+            assertTrue(expected.containsAll(limited));
+        }
+    }
+
+    @Test
+    public void findDistinctValues() {
+        TernarySearchTree<Integer, ItemCollector<Integer>> tree = new TernarySearchTree<>();
+        tree.put("word", new ItemCollector<>(1));
+        tree.put("word", new ItemCollector<>(2));
+        tree.put("work", new ItemCollector<>(2));
+        tree.put("world", new ItemCollector<>(1));
+        tree.put("world", new ItemCollector<>(3));
+        tree.put("hello", new ItemCollector<>(4));
+
+        assertEquals(tree.findValues("wo"), new HashSet<>(asList(1, 2, 3)));
+        assertEquals(tree.findValues("h"), new HashSet<>(asList(4)));
+        assertTrue(tree.findValues("x").isEmpty());
+        assertTrue(tree.findValues("").isEmpty());
+        assertEquals(tree.findDistinctValues("wo", 2).size(), 2);
+
+        Set<Integer> reused = new HashSet<>(asList(4));
+        assertEquals(tree.findDistinctValues("wo", 10, reused), 3);
+        assertEquals(reused, new HashSet<>(asList(1, 2, 3, 4)));
+        reused.clear();
+        assertEquals(tree.findDistinctValues("wor", 1, reused), 1);
+    }
+
+    @Test
+    public void findDistinctValuesLikeFind() {
+        Random random = new Random(53);
+        TernarySearchTree<Integer, ItemCollector<Integer>> tree = new TernarySearchTree<>();
+        for (int i = 0; i < 3000; i++) {
+            tree.put(randomWord(random), new ItemCollector<>(random.nextInt(200)));
+        }
+        for (int i = 0; i < 200; i++) {
+            String prefix = randomWord(random);
+            List<Integer> expected = new ArrayList<>();
+            for (ItemCollector<Integer> collector : tree.find(prefix)) {
+                for (Integer value : collector.getValues()) {
+                    if (!expected.contains(value)) {
+                        expected.add(value);
+                    }
+                }
+            }
+            assertEquals(new ArrayList<>(tree.findValues(prefix)), expected, prefix);
+            int limit = random.nextInt(20);
+            assertEquals(new ArrayList<>(tree.findDistinctValues(prefix, limit)),
+                    expected.subList(0, Math.min(limit, expected.size())), prefix);
+        }
+    }
+
+    private static void assertSameAsFind(TernarySearchTree<String, SingleStringCollector> tree, ForkJoinPool pool) {
+        for (String prefix : asList("a", "b", "ab", "dcb", "abcd", "x")) {
+            List<SingleStringCollector> expected = tree.find(prefix);
+            List<SingleStringCollector> actual = tree.findParallel(prefix, pool);
+            assertEquals(actual.size(), expected.size(), prefix);
+            for (int i = 0; i < expected.size(); i++) {
+                if (actual.get(i) != expected.get(i)) {
+                    fail("different entry at " + i + " for prefix " + prefix);
+                }
+            }
+        }
+        assertTrue(tree.findParallel("").isEmpty());
+    }
+
+    private static String fuzzyWords(List<FuzzyMatch<SingleStringCollector>> matches) {
+        List<String> words = new ArrayList<>();
+        for (FuzzyMatch<SingleStringCollector> match : matches) {
+            words.add(match.getWord() + ":" + match.getDistance());
+        }
+        return words.toString();
+    }
+
+    private static int distance(String first, String second, boolean isTranspositionAllowed) {
+        int[][] d = new int[first.length() + 1][second.length() + 1];
+        for (int i = 0; i <= first.length(); i++) {
+            for (int j = 0; j <= second.length(); j++) {
+                if (i == 0 || j == 0) {
+                    d[i][j] = i + j;
+                    continue;
+                }
+                int cost = first.charAt(i - 1) == second.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+                if (isTranspositionAllowed && i > 1 && j > 1
+                        && first.charAt(i - 1) == second.charAt(j - 2) && first.charAt(i - 2) == second.charAt(j - 1)) {
+                    d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+                }
+            }
+        }
+        return d[first.length()][second.length()];
+    }
 }
@@ -0,0 +1,58 @@
+package com.valagja.search.ternarytree.prefix;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Words and values shared by the tests of the trees
+ */
+final class TestWords {
+
+    private TestWords() {
+    }
+
+    /**
+     * Draws a word of 1 to 4 of the letters 'a' to 'd'.
+     *
+     * @param random the source of the word
+     * @return a word
+     */
+    static String randomWord(Random random) {
+        return randomWord(random, 4, 4);
+    }
+
+    /**
+     * Draws a word from a small alphabet, so that the words share prefixes and repeat.
+     *
+     * @param random the source of the word
+     * @param maxLength the maximal length of the word, at least one
+     * @param letterCount the number of letters starting with 'a'
+     * @return a word of 1 to maxLength letters
+     */
+    static String randomWord(Random random, int maxLength, int letterCount) {
+        char[] word = new char[1 + random.nextInt(maxLength)];
+        for (int i = 0; i < word.length; i++) {
+            word[i] = (char) ('a' + random.nextInt(letterCount));
+        }
+        return new String(word);
+    }
+
+    static List<String> values(List<SingleStringCollector> collectors) {
+        List<String> values = new ArrayList<>(collectors.size());
+        for (SingleStringCollector collector : collectors) {
+            values.add(collector.getValue());
+        }
+        return values;
+    }
+
+    static List<Set<Integer>> valueSets(List<ItemCollector<Integer>> collectors) {
+        List<Set<Integer>> values = new ArrayList<>(collectors.size());
+        for (ItemCollector<Integer> collector : collectors) {
+            values.add(new HashSet<>(collector.getValues()));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,143 @@
+package com.valagja.search.ternarytree.prefix;
+
+import org.testng.annotations.Test;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Random;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.*;
+
+/**
+ * Tests for TokenScanner and the prefix matching of TernarySearchTree
+ */
+public class TokenScannerTest {
+
+    @Test
+    public void longestPrefixAndAllPrefixes() {
+        TernarySearchTree<String, SingleStringCollector> tree = tree("/api", "/api/users", "/api/users/me", "/static");
+        String path = "/api/users/42";
+        PrefixMatch<SingleStringCollector> match = tree.longestPrefixOf(path, 0);
+        assertEquals(match.getWord(), "/api/users");
+        assertEquals(match.getEntry().getValue(), "/api/users");
+        assertEquals(match.getEnd(), 10);
+        assertEquals(words(tree.prefixesOf(path, 0)), asList("/api", "/api/users"));
+
+        assertEquals(tree.longestPrefixOf("x/static/a.css", 1).getWord(), "/static");
+        assertEquals(tree.longestPrefixOf("x/static/a.css", 1).getOffset(), 1);
+        assertNull(tree.longestPrefixOf("/ap", 0));
+        assertNull(tree.longestPrefixOf("/api", 4));
+        assertTrue(tree.prefixesOf("users", 0).isEmpty());
+        assertNull(new TernarySearchTree<String, SingleStringCollector>().longestPrefixOf("/api", 0));
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void longestPrefixWithOffsetOutOfBounds() {
+        tree("a").longestPrefixOf("abc", 4);
+    }
+
+    @Test
+    public void scanGreedily() throws IOException {
+        TernarySearchTree<String, SingleStringCollector> tree = tree("new", "new york", "york", "is", "big");
+        String text = "new york is big, newer is not";
+        List<String> expected = asList("new york@0", "is@9", "big@12", "new@17", "is@23");
+        assertEquals(scan(new TokenScanner<>(tree, text)), expected);
+        assertEquals(scan(new TokenScanner<>(tree, CharBuffer.wrap(text))), expected);
+        assertEquals(scan(new TokenScanner<>(tree, new ChunkReader(text, 2))), expected);
+        assertTrue(scan(new TokenScanner<>(tree, "")).isEmpty());
+    }
+
+    @Test
+    public void scanLikeLongestPrefixOf() throws IOException {
+        Random random = new Random(43);
+        TernarySearchTree<String, SingleStringCollector> tree = new TernarySearchTree<>();
+        for (int i = 0; i < 300; i++) {
+            String word = randomText(random, 1 + random.nextInt(6));
+            tree.put(word, new SingleStringCollector(word));
+        }
+        // longer than the buffer of the scanner
+        String text = randomText(random, 20000);
+        List<String> expected = new ArrayList<>();
+        int position = 0;
+        while (position < text.length()) {
+            PrefixMatch<SingleStringCollector> match = tree.longestPrefixOf(text, position);
+            if (match == null) {
+                position++;
+            }
+            else {
+                expected.add(match.getWord() + "@" + match.getOffset());
+                List<PrefixMatch<SingleStringCollector>> all = tree.prefixesOf(text, position);
+                assertEquals(all.get(all.size() - 1).getWord(), match.getWord());
+                position = match.getEnd();
+            }
+        }
+        assertEquals(scan(new TokenScanner<>(tree, new ChunkReader(text, 1000))), expected);
+        assertEquals(scan(new TokenScanner<>(tree, new StringReader(text))), expected);
+    }
+
+    @Test(expectedExceptions = ConcurrentModificationException.class)
+    public void scanWhilePutting() throws IOException {
+        TernarySearchTree<String, SingleStringCollector> tree = tree("a");
+        TokenScanner<String, SingleStringCollector> scanner = new TokenScanner<>(tree, "aaa");
+        scanner.next();
+        tree.put("b", new SingleStringCollector("b"));
+        scanner.next();
+    }
+
+    private static TernarySearchTree<String, SingleStringCollector> tree(String... words) {
+        TernarySearchTree<String, SingleStringCollector> tree = new TernarySearchTree<>();
+        for (String word : words) {
+            tree.put(word, new SingleStringCollector(word));
+        }
+        return tree;
+    }
+
+    private static String randomText(Random random, int length) {
+        char[] text = new char[length];
+        for (int j = 0; j < text.length; j++) {
+            text[j] = (char) ('a' + random.nextInt(3));
+        }
+        return new String(text);
+    }
+
+    private static List<String> scan(TokenScanner<String, SingleStringCollector> scanner) throws IOException {
+        List<String> tokens = new ArrayList<>();
+        PrefixMatch<SingleStringCollector> match;
+        while ((match = scanner.next()) != null) {
+            tokens.add(match.getWord() + "@" + match.getOffset());
+        }
+        return tokens;
+    }
+
+    private static List<String> words(List<PrefixMatch<SingleStringCollector>> matches) {
+        List<String> words = new ArrayList<>();
+        for (PrefixMatch<SingleStringCollector> match : matches) {
+            words.add(match.getWord());
+        }
+        return words;
+    }
+
+    /**
+     * A reader returning at most a few characters per read, like a slow stream.
+     */
+    private static class ChunkReader extends FilterReader {
+        private final int chunkSize;
+
+        private ChunkReader(String text, int chunkSize) {
+            super(new StringReader(text));
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            return super.read(buffer, offset, Math.min(length, chunkSize));
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.valagja.search.ternarytree.prefix;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static java.util.Arrays.asList;
+import static org.testng.Assert.*;
+import static com.valagja.search.ternarytree.prefix.TestWords.values;
+
+/**
+ * Tests for saving and loading snapshots of TernarySearchTree
+ */
+public class TreeSnapshotTest extends TempFileTest {
+
+    public TreeSnapshotTest() {
+        super(".snapshot");
+    }
+
+    @Test
+    public void saveAndLoad() throws IOException {
+        Random random = new Random(23);
+        TernarySearchTree<String, SingleStringCollector> tree = new TernarySearchTree<>();
+        for (int i = 0; i < 5000; i++) {
+            char[] word = new char[1 + random.nextInt(8)];
+            for (int j = 0; j < word.length; j++) {
+                word[j] = (char) ('a' + random.nextInt(6));
+            }
+            tree.put(new String(word), new SingleStringCollector(new String(word) + " command"));
+        }
+        tree.put("\u00e4\u00f6\u00fc", new SingleStringCollector(null));
+        tree.save(file, new SingleStringCollectorSerializer());
+
+        TernarySearchTree<String, SingleStringCollector> loaded = TernarySearchTree.load(file, new SingleStringCollectorSerializer());
+        for (String prefix : asList("a", "b", "fe", "abc", "x")) {
+            assertEquals(values(loaded.find(prefix)), values(tree.find(prefix)), prefix);
+            assertEquals(values(loaded.findParallel(prefix)), values(tree.find(prefix)), prefix);
+        }
+        assertEquals(loaded.find("\u00e4").size(), 1);
+        assertNull(loaded.find("\u00e4").get(0).getValue());
+        assertEquals(loaded.getDepthStatistics().getNodeCount(), tree.getDepthStatistics().getNodeCount());
+
+        // the loaded tree can be changed like any other
+        assertTrue(loaded.remove("\u00e4\u00f6\u00fc", new SingleStringCollector(null)));
+        loaded.put("zebra", new SingleStringCollector("zebra command"));
+        assertEquals(values(loaded.find("z")), asList("zebra command"));
+    }
+
+    @Test
+    public void saveAndLoadIntCollectors() throws IOException {
+        TernarySearchTree<Integer, IntCollector> tree = new TernarySearchTree<>();
+        tree.put("one", new IntCollector(1, 11, 111));
+        tree.put("two", new IntCollector(2));
+        tree.save(file, new IntCollectorSerializer());
+
+        TernarySearchTree<Integer, IntCollector> loaded = TernarySearchTree.load(file, new IntCollectorSerializer());
+        assertEquals(loaded.find("o").get(0).toArray(), new int[]{1, 11, 111});
+        assertEquals(loaded.find("tw").get(0).toArray(), new int[]{2});
+    }
+
+    @Test
+    public void saveAndLoadEmptyTree() throws IOException {
+        new TernarySearchTree<String, SingleStringCollector>().save(file, new SingleStringCollectorSerializer());
+        TernarySearchTree<String, SingleStringCollector> loaded = TernarySearchTree.load(file, new SingleStringCollectorSerializer());
+        assertTrue(loaded.find("a").isEmpty());
+        assertEquals(loaded.getDepthStatistics().getNodeCount(), 0);
+    }
+
+    @Test(expectedExceptions = IOException.class, expectedExceptionsMessageRegExp = ".*checksum.*")
+    public void detectCorruption() throws IOException {
+        TernarySearchTree<String, SingleStringCollector> tree = new TernarySearchTree<>();
+        tree.put("hello", new SingleStringCollector("hello command"));
+        tree.save(file, new SingleStringCollectorSerializer());
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            // the last character of the value
+            raf.seek(raf.length() - 1);
+            int last = raf.read();
+            raf.seek(raf.length() - 1);
+            raf.write(last ^ 1);
+        }
+        TernarySearchTree.load(file, new SingleStringCollectorSerializer());
+    }
+
+    @Test(expectedExceptions = IOException.class, expectedExceptionsMessageRegExp = ".*checksum.*")
+    public void detectCorruptLength() throws IOException {
+        TernarySearchTree<String, SingleStringCollector> tree = new TernarySearchTree<>();
+        tree.put("hello", new SingleStringCollector("hello command"));
+        tree.save(file, new SingleStringCollectorSerializer());
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            // the length of the value, followed by its 13 characters
+            raf.seek(raf.length() - 2 * 13 - 4);
+            raf.writeInt(Integer.MAX_VALUE);
+        }
+        TernarySearchTree.load(file, new SingleStringCollectorSerializer());
+    }
+
+    @Test
+    public void readCorruptLengthWithoutAllocatingIt() throws IOException {
+        for (CollectorSerializer<?> serializer : asList(new SingleStringCollectorSerializer(), new IntCollectorSerializer())) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(Integer.MAX_VALUE);
+            out.writeInt(42);
+            try {
+                serializer.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+                fail("end of input expected");
+            }
+            catch (EOFException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class, expectedExceptionsMessageRegExp = ".*version 2")
+    public void rejectUnknownVersion() throws IOException {
+        new TernarySearchTree<String, SingleStringCollector>().save(file, new SingleStringCollectorSerializer());
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(4);
+            raf.writeInt(2);
+        }
+        TernarySearchTree.load(file, new SingleStringCollectorSerializer());
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void rejectOtherFiles() throws IOException {
+        Files.write(file, "not a tree".getBytes("UTF-8"));
+        TernarySearchTree.load(file, new SingleStringCollectorSerializer());
+    }
+}